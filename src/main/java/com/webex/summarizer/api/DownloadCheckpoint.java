@@ -0,0 +1,36 @@
+package com.webex.summarizer.api;
+
+import com.webex.summarizer.model.Message;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Progress of a full room download, kept so that an interrupted download can continue with the
+ * first page it had not completed instead of starting over.
+ */
+public interface DownloadCheckpoint {
+
+    /**
+     * Whether earlier attempts completed any pages to continue from
+     */
+    boolean isResumable();
+
+    /**
+     * Messages of the pages completed by earlier attempts, newest first; empty if there were none
+     */
+    List<Message> getCompletedMessages() throws IOException;
+
+    /**
+     * The {@code beforeMessage} cursor of the first page not downloaded yet, or null to start with the newest page
+     */
+    String getNextBeforeMessageId();
+
+    /**
+     * Record a completed page
+     *
+     * @param messages The messages of the page, newest first
+     * @param nextBeforeMessageId The cursor of the page after it
+     */
+    void pageCompleted(List<Message> messages, String nextBeforeMessageId) throws IOException;
+}
@@ -0,0 +1,116 @@
+package com.webex.summarizer.api;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OkHttp interceptor that caps how many requests run against the same host at once.
+ * <p>
+ * OkHttp's dispatcher only limits asynchronous calls, while the WebEx services make blocking calls
+ * from many worker threads. A slot is held until the response body has been read and closed, so the
+ * cap covers the whole transfer and not just the wait for response headers.
+ */
+public class HostConcurrencyInterceptor implements Interceptor {
+
+    private final int maxRequestsPerHost;
+    private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+
+    public HostConcurrencyInterceptor(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Max requests per host must be at least 1: " + maxRequestsPerHost);
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Semaphore permits = permitsByHost.computeIfAbsent(host, h -> new Semaphore(maxRequestsPerHost, true));
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection slot to " + host);
+        }
+
+        AtomicBoolean released = new AtomicBoolean(false);
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            release.run();
+            return response;
+        }
+        return response.newBuilder().body(new ReleasingResponseBody(body, release)).build();
+    }
+
+    /**
+     * Number of requests currently running against a host
+     */
+    public int getActiveRequests(String host) {
+        Semaphore permits = permitsByHost.get(host);
+        return permits == null ? 0 : maxRequestsPerHost - permits.availablePermits();
+    }
+
+    /**
+     * Response body that gives the host slot back once it is closed
+     */
+    private static class ReleasingResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        ReleasingResponseBody(ResponseBody delegate, Runnable release) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
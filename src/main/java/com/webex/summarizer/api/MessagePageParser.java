@@ -0,0 +1,72 @@
+package com.webex.summarizer.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.webex.summarizer.model.Message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a page of the WebEx messages API straight from the response stream.
+ * <p>
+ * Messages are bound one at a time while the {@code items} array is being tokenized, so a page is
+ * never held as a response string or a {@code JsonNode} tree next to the resulting messages.
+ * Fields other than {@code items} are skipped.
+ */
+public class MessagePageParser {
+
+    private static final String ITEMS_FIELD = "items";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader messageReader;
+
+    public MessagePageParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.messageReader = objectMapper.readerFor(Message.class);
+    }
+
+    /**
+     * Parse a page of messages, keeping the order of the response
+     *
+     * @param in The response body; it is read to the end of the page but not closed
+     */
+    public List<Message> parse(InputStream in) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            // The caller owns the stream, so closing the parser must not close it
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object for a message page but got " + parser.currentToken());
+            }
+
+            List<Message> messages = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (ITEMS_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+                    readItems(parser, messages);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return messages;
+        }
+    }
+
+    private void readItems(JsonParser parser, List<Message> messages) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Unexpected end of message page");
+            }
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            messages.add(messageReader.readValue(parser));
+        }
+    }
+}
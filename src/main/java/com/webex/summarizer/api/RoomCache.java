@@ -0,0 +1,346 @@
+package com.webex.summarizer.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webex.summarizer.model.Room;
+import com.webex.summarizer.util.ConfigLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of room metadata, kept in memory and in a file under the storage directory. Each token gets its own
+ * file, since the rooms one account can see say nothing about another's.
+ * <p>
+ * Entries younger than the TTL are used without asking WebEx. Older entries are revalidated with the
+ * ETag WebEx returned for them, so an unchanged room costs a 304 response instead of a full one.
+ * The room list is cached the same way, and listing rooms also fills the per-room entries.
+ */
+public class RoomCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomCache.class);
+    private static final String FILE_PREFIX = ".rooms-";
+    private static final String FILE_SUFFIX = ".json";
+    public static final int DEFAULT_TTL_MINUTES = 60;
+
+    /**
+     * A cached room and when it was last confirmed by WebEx
+     */
+    public static class Entry {
+        private Room room;
+        private String etag;
+        private long fetchedAt;
+
+        public Room getRoom() {
+            return room;
+        }
+
+        public void setRoom(Room room) {
+            this.room = room;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public void setEtag(String etag) {
+            this.etag = etag;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        public void setFetchedAt(long fetchedAt) {
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * A page of the room list, with the ETag WebEx returned for it
+     */
+    public static class ListPage {
+        private String url;
+        private String etag;
+
+        public ListPage() {
+        }
+
+        public ListPage(String url, String etag) {
+            this.url = url;
+            this.etag = etag;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public void setEtag(String etag) {
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Contents of the cache file
+     */
+    public static class Contents {
+        private Map<String, Entry> rooms = new HashMap<>();
+        private List<String> roomList;
+        private long roomListFetchedAt;
+        private List<ListPage> roomListPages;
+        private ZonedDateTime activityWatermark;
+
+        public Map<String, Entry> getRooms() {
+            return rooms;
+        }
+
+        public void setRooms(Map<String, Entry> rooms) {
+            this.rooms = rooms;
+        }
+
+        public List<String> getRoomList() {
+            return roomList;
+        }
+
+        public void setRoomList(List<String> roomList) {
+            this.roomList = roomList;
+        }
+
+        public long getRoomListFetchedAt() {
+            return roomListFetchedAt;
+        }
+
+        public void setRoomListFetchedAt(long roomListFetchedAt) {
+            this.roomListFetchedAt = roomListFetchedAt;
+        }
+
+        public List<ListPage> getRoomListPages() {
+            return roomListPages;
+        }
+
+        public void setRoomListPages(List<ListPage> roomListPages) {
+            this.roomListPages = roomListPages;
+        }
+
+        /**
+         * Newest room activity covered by the last complete delta sync
+         */
+        public ZonedDateTime getActivityWatermark() {
+            return activityWatermark;
+        }
+
+        public void setActivityWatermark(ZonedDateTime activityWatermark) {
+            this.activityWatermark = activityWatermark;
+        }
+    }
+
+    private final Path file;
+    private final long ttlMillis;
+    private final ObjectMapper objectMapper;
+    // Read on first use
+    private Contents contents;
+
+    public RoomCache(Path file, Duration ttl, ObjectMapper objectMapper) {
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Open the cache of a token in a storage directory, with the TTL from webex.rooms.cache-ttl-minutes
+     */
+    public static RoomCache open(String storageDir, String token, ConfigLoader configLoader, ObjectMapper objectMapper) {
+        int ttlMinutes = configLoader.getIntProperty("webex.rooms.cache-ttl-minutes", DEFAULT_TTL_MINUTES);
+        return new RoomCache(Paths.get(storageDir, fileName(token)), Duration.ofMinutes(Math.max(0, ttlMinutes)), objectMapper);
+    }
+
+    /**
+     * Name of the cache file of a token, derived from a hash so the token itself is not written to disk
+     */
+    public static String fileName(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(FILE_PREFIX);
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.append(FILE_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A room confirmed within the TTL
+     *
+     * @return The room, or null if it is not cached or needs to be revalidated
+     */
+    public synchronized Room getRoom(String roomId) {
+        Entry entry = contents().getRooms().get(roomId);
+        return entry != null && isFresh(entry.getFetchedAt()) ? entry.getRoom() : null;
+    }
+
+    /**
+     * The cached entry of a room, however old, for revalidating it
+     */
+    public synchronized Entry getEntry(String roomId) {
+        return contents().getRooms().get(roomId);
+    }
+
+    public synchronized void putRoom(Room room, String etag) throws IOException {
+        contents().getRooms().put(room.getId(), createEntry(room, etag));
+        save();
+    }
+
+    /**
+     * Mark a cached room as confirmed now, after WebEx reported it unchanged
+     */
+    public synchronized void renew(String roomId) throws IOException {
+        Entry entry = contents().getRooms().get(roomId);
+        if (entry != null) {
+            entry.setFetchedAt(System.currentTimeMillis());
+            save();
+        }
+    }
+
+    /**
+     * The room list fetched within the TTL
+     *
+     * @return A copy of the list, or null if it has to be fetched again
+     */
+    public synchronized List<Room> getRoomList() {
+        return isFresh(contents().getRoomListFetchedAt()) ? getCachedRoomList() : null;
+    }
+
+    /**
+     * The cached room list however old, for revalidating it
+     *
+     * @return A copy of the list, or null if no complete list is cached
+     */
+    public synchronized List<Room> getCachedRoomList() {
+        Contents cached = contents();
+        if (cached.getRoomList() == null) {
+            return null;
+        }
+
+        List<Room> rooms = new ArrayList<>(cached.getRoomList().size());
+        for (String roomId : cached.getRoomList()) {
+            Entry entry = cached.getRooms().get(roomId);
+            if (entry == null) {
+                return null;
+            }
+            rooms.add(entry.getRoom());
+        }
+        return rooms;
+    }
+
+    /**
+     * The pages the cached room list was fetched from, with their ETags, or null
+     */
+    public synchronized List<ListPage> getRoomListPages() {
+        return contents().getRoomListPages();
+    }
+
+    /**
+     * Mark the cached room list as confirmed now, after WebEx reported it unchanged
+     */
+    public synchronized void renewRoomList() throws IOException {
+        if (contents().getRoomList() != null) {
+            contents().setRoomListFetchedAt(System.currentTimeMillis());
+            save();
+        }
+    }
+
+    public synchronized void putRoomList(List<Room> rooms, List<ListPage> pages) throws IOException {
+        List<String> roomIds = new ArrayList<>(rooms.size());
+        for (Room room : rooms) {
+            putListedRoom(room);
+            roomIds.add(room.getId());
+        }
+        contents().setRoomList(roomIds);
+        contents().setRoomListFetchedAt(System.currentTimeMillis());
+        contents().setRoomListPages(pages);
+        save();
+    }
+
+    /**
+     * Update the entries of rooms from a partial listing, leaving the cached room list as it is
+     */
+    public synchronized void putRooms(List<Room> rooms) throws IOException {
+        for (Room room : rooms) {
+            putListedRoom(room);
+        }
+        save();
+    }
+
+    private void putListedRoom(Room room) {
+        Entry existing = contents().getRooms().get(room.getId());
+        // Listing does not return ETags, so keep the one from the last single-room request
+        contents().getRooms().put(room.getId(), createEntry(room, existing != null ? existing.getEtag() : null));
+    }
+
+    public synchronized ZonedDateTime getActivityWatermark() {
+        return contents().getActivityWatermark();
+    }
+
+    public synchronized void setActivityWatermark(ZonedDateTime activityWatermark) throws IOException {
+        contents().setActivityWatermark(activityWatermark);
+        save();
+    }
+
+    private boolean isFresh(long fetchedAt) {
+        return System.currentTimeMillis() - fetchedAt < ttlMillis;
+    }
+
+    private static Entry createEntry(Room room, String etag) {
+        Entry entry = new Entry();
+        entry.setRoom(room);
+        entry.setEtag(etag);
+        entry.setFetchedAt(System.currentTimeMillis());
+        return entry;
+    }
+
+    private Contents contents() {
+        if (contents == null) {
+            contents = new Contents();
+            if (Files.exists(file)) {
+                try {
+                    contents = objectMapper.readValue(file.toFile(), Contents.class);
+                } catch (IOException e) {
+                    // The cache only saves requests, so a damaged file is simply rebuilt
+                    logger.warn("Ignoring unreadable room cache {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return contents;
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        // Write to a temporary file first so a crash never leaves a truncated cache behind
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), "rooms", ".tmp");
+        objectMapper.writeValue(tempFile.toFile(), contents);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,112 @@
+package com.webex.summarizer.api;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.webex.summarizer.auth.WebExAuthenticator;
+import com.webex.summarizer.util.ConfigLoader;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the HTTP client and JSON mapper shared by the WebEx services.
+ * <p>
+ * One client per process keeps a single connection pool, so parallel room syncs reuse warm TLS
+ * connections (multiplexed over HTTP/2 where WebEx offers it) instead of opening new ones per service.
+ * Responses are requested gzip-compressed and decompressed transparently by OkHttp. OkHttp's
+ * dispatcher limits only apply to asynchronous calls, so blocking calls are capped per host by
+ * {@link HostConcurrencyInterceptor}.
+ */
+public class WebExClientFactory {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 300;
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+
+    private static volatile WebExClientFactory defaultFactory;
+
+    private final OkHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Create a factory with the connection settings from the config
+     */
+    public WebExClientFactory(ConfigLoader configLoader) {
+        this(configLoader.getIntProperty("webex.http.max-idle-connections", DEFAULT_MAX_IDLE_CONNECTIONS),
+                configLoader.getIntProperty("webex.http.keep-alive-seconds", DEFAULT_KEEP_ALIVE_SECONDS),
+                configLoader.getIntProperty("webex.http.max-requests", DEFAULT_MAX_REQUESTS),
+                configLoader.getIntProperty("webex.http.max-requests-per-host", DEFAULT_MAX_REQUESTS_PER_HOST));
+    }
+
+    public WebExClientFactory(int maxIdleConnections, int keepAliveSeconds, int maxRequests, int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        this.httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .addInterceptor(new HostConcurrencyInterceptor(maxRequestsPerHost))
+                .build();
+        this.objectMapper = createObjectMapper();
+    }
+
+    /**
+     * Create a factory around an existing client, e.g. one with additional interceptors
+     */
+    public WebExClientFactory(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+        this.objectMapper = createObjectMapper();
+    }
+
+    /**
+     * The factory used by services that are not given one, built with the default settings
+     */
+    public static WebExClientFactory getDefault() {
+        WebExClientFactory factory = defaultFactory;
+        if (factory == null) {
+            synchronized (WebExClientFactory.class) {
+                factory = defaultFactory;
+                if (factory == null) {
+                    factory = new WebExClientFactory(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_SECONDS,
+                            DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+                    defaultFactory = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Mapper for WebEx API responses; it is thread-safe and shared by all services of this factory
+     */
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    public WebExRoomService createRoomService(WebExAuthenticator authenticator) {
+        return new WebExRoomService(authenticator, this);
+    }
+
+    public WebExMessageService createMessageService(WebExAuthenticator authenticator, WebExRoomService roomService) {
+        return new WebExMessageService(authenticator, roomService, this);
+    }
+
+    private static ObjectMapper createObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return objectMapper;
+    }
+}
@@ -1,107 +1,313 @@
 package com.webex.summarizer.api;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Conversation;
 import com.webex.summarizer.model.Message;
 import com.webex.summarizer.model.Room;
 import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class WebExMessageService {
     
     private static final Logger logger = LoggerFactory.getLogger(WebExMessageService.class);
     private static final String API_BASE_URL = "https://webexapis.com/v1";
     private static final int MAX_MESSAGES_PER_REQUEST = 1000;
+    // Pages fetched ahead of the consumer; bounds memory when collecting falls behind the network
+    private static final int PREFETCH_PAGES = 4;
+    
+    private static final ExecutorService PAGE_FETCHERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "webex-page-fetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * A page handed from the fetch stage to the collecting stage
+     */
+    private static final class Page {
+        final List<Message> messages;
+        final String nextBeforeMessageId;
+        final Exception error;
+        final boolean last;
+        
+        Page(List<Message> messages, String nextBeforeMessageId, Exception error, boolean last) {
+            this.messages = messages;
+            this.nextBeforeMessageId = nextBeforeMessageId;
+            this.error = error;
+            this.last = last;
+        }
+    }
     
     private final WebExAuthenticator authenticator;
     private final WebExRoomService roomService;
-    private final OkHttpClient httpClient;
+    private final WebExRequestExecutor requestExecutor;
     private final ObjectMapper objectMapper;
+    private final MessagePageParser pageParser;
     
     public WebExMessageService(WebExAuthenticator authenticator, WebExRoomService roomService) {
+        this(authenticator, roomService, WebExClientFactory.getDefault());
+    }
+    
+    /**
+     * Create the service on the HTTP client and mapper of a factory, so that connection pools and
+     * per-host limits are shared with other services
+     */
+    public WebExMessageService(WebExAuthenticator authenticator, WebExRoomService roomService, WebExClientFactory clients) {
         this.authenticator = authenticator;
         this.roomService = roomService;
-        this.httpClient = new OkHttpClient();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        this.objectMapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.requestExecutor = new WebExRequestExecutor(clients.getHttpClient());
+        this.objectMapper = clients.getObjectMapper();
+        this.pageParser = new MessagePageParser(objectMapper);
     }
     
     public Conversation downloadConversation(String roomId) throws IOException {
+        return downloadConversation(roomId, null, null);
+    }
+    
+    /**
+     * Download the messages of a room posted within a time range.
+     * Paging starts at the end of the range and stops at the first page that reaches its start,
+     * so the cost depends on the length of the range rather than on the age of the room.
+     * 
+     * @param from Only messages created at or after this time, or null for no lower bound
+     * @param to Only messages created before this time, or null for no upper bound
+     * @return The conversation with the messages in range, newest first; its date range is set when bounded
+     */
+    public Conversation downloadConversation(String roomId, ZonedDateTime from, ZonedDateTime to) throws IOException {
         if (!authenticator.isAuthenticated()) {
             throw new IllegalStateException("Not authenticated");
         }
         
         Room room = roomService.getRoom(roomId);
-        List<Message> allMessages = new ArrayList<>();
-        String oldestMessageId = null;
-        boolean hasMore = true;
+        List<Message> allMessages = downloadMessages(roomId, null, from, to, null, null);
         
-        while (hasMore) {
-            HttpUrl.Builder urlBuilder = HttpUrl.parse(API_BASE_URL + "/messages").newBuilder()
-                    .addQueryParameter("roomId", roomId)
-                    .addQueryParameter("max", String.valueOf(MAX_MESSAGES_PER_REQUEST));
-
-            // Add beforeMessage parameter for pagination if we have the oldest message
-            if (oldestMessageId != null) {
-                urlBuilder.addQueryParameter("beforeMessage", oldestMessageId);
-            }
-            
-            Request request = new Request.Builder()
-                    .url(urlBuilder.build())
-                    .header("Authorization", "Bearer " + authenticator.getAccessToken())
-                    .build();
+        Conversation conversation = new Conversation();
+        conversation.setRoom(room);
+        conversation.setMessages(allMessages);
+        conversation.setDateFrom(from);
+        conversation.setDateTo(to);
+        return conversation;
+    }
+    
+    /**
+     * Download the whole history of a room, recording each page in a checkpoint.
+     * If an earlier attempt was interrupted, paging continues after its last completed page, and the
+     * messages posted since that attempt are downloaded on top.
+     * 
+     * @param checkpoint Progress of earlier attempts; the caller discards it once the conversation is saved
+     */
+    public Conversation downloadConversation(String roomId, DownloadCheckpoint checkpoint) throws IOException {
+        if (!authenticator.isAuthenticated()) {
+            throw new IllegalStateException("Not authenticated");
+        }
+        
+        Room room = roomService.getRoom(roomId);
+        List<Message> allMessages;
+        if (!checkpoint.isResumable()) {
+            allMessages = downloadMessages(roomId, null, null, null, null, checkpoint);
+        } else {
+            List<Message> completed = checkpoint.getCompletedMessages();
+            logger.info("Resuming download of room {} after {} messages", roomId, completed.size());
+            Message newest = completed.get(0);
+            List<Message> newer = downloadMessages(roomId, newest.getId(), newest.getCreated(), null, null, null);
+            List<Message> older = downloadMessages(roomId, null, null, null, checkpoint.getNextBeforeMessageId(), checkpoint);
             
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    throw new IOException("Unexpected code " + response);
+            allMessages = new ArrayList<>(newer.size() + completed.size() + older.size());
+            Set<String> seenIds = new HashSet<>();
+            for (List<Message> part : Arrays.asList(newer, completed, older)) {
+                for (Message message : part) {
+                    if (message.getId() == null || seenIds.add(message.getId())) {
+                        allMessages.add(message);
+                    }
+                }
+            }
+        }
+        
+        Conversation conversation = new Conversation();
+        conversation.setRoom(room);
+        conversation.setMessages(allMessages);
+        return conversation;
+    }
+    
+    /**
+     * Download only the messages posted after the newest message already stored for a room.
+     * Paging stops as soon as a page reaches the stored watermark.
+     * 
+     * @param roomId The room to download from
+     * @param lastMessageId ID of the newest stored message
+     * @param lastMessageCreated Creation time of the newest stored message
+     * @return The new messages, newest first
+     */
+    public List<Message> downloadMessagesSince(String roomId, String lastMessageId, ZonedDateTime lastMessageCreated) throws IOException {
+        if (!authenticator.isAuthenticated()) {
+            throw new IllegalStateException("Not authenticated");
+        }
+        
+        return downloadMessages(roomId, lastMessageId, lastMessageCreated, null, null, null);
+    }
+    
+    /**
+     * Page backwards through a room's messages, newest first.
+     * <p>
+     * A fetcher thread requests the next page as soon as the current one has been parsed and its
+     * oldest message is known, and hands pages over through a bounded queue. Collecting the messages
+     * therefore overlaps with the next round trip instead of adding to it.
+     * 
+     * @param stopAtMessageId Stop before this message, or null to download the whole history
+     * @param stopAtCreated Stop at messages created before this time, or null to download the whole history
+     * @param before Start with the messages created before this time, or null to start with the newest
+     * @param beforeMessageId Start with the messages older than this one, or null to start with the newest
+     * @param checkpoint Records every page but the last once it is collected, or null
+     */
+    private List<Message> downloadMessages(String roomId, String stopAtMessageId, ZonedDateTime stopAtCreated,
+                                           ZonedDateTime before, String beforeMessageId,
+                                           DownloadCheckpoint checkpoint) throws IOException {
+        BlockingQueue<Page> pages = new ArrayBlockingQueue<>(PREFETCH_PAGES);
+        Future<?> fetcher = PAGE_FETCHERS.submit(
+                () -> fetchPages(roomId, stopAtMessageId, stopAtCreated, before, beforeMessageId, pages));
+        
+        try {
+            List<Message> allMessages = new ArrayList<>();
+            Set<String> seenIds = new HashSet<>();
+            while (true) {
+                Page page = pages.take();
+                if (page.error != null) {
+                    throw new IOException("Failed to download messages: " + page.error.getMessage(), page.error);
                 }
                 
-                String responseBody = response.body().string();
-                JsonNode rootNode = objectMapper.readTree(responseBody);
-                JsonNode itemsNode = rootNode.path("items");
-                
-                List<Message> messages = new ArrayList<>();
-                for (JsonNode itemNode : itemsNode) {
-                    Message message = objectMapper.treeToValue(itemNode, Message.class);
-                    messages.add(message);
+                for (Message message : page.messages) {
+                    // Guard against a message showing up on two pages if the room changes while paging
+                    if (message.getId() == null || seenIds.add(message.getId())) {
+                        allMessages.add(message);
+                    }
                 }
+                logger.info("Downloaded {} messages so far", allMessages.size());
                 
-                int messagesReceived = messages.size();
+                // The last page is not recorded; the finished download is saved by the caller instead
+                if (checkpoint != null && !page.last) {
+                    checkpoint.pageCompleted(page.messages, page.nextBeforeMessageId);
+                }
                 
-                // Check if we got fewer messages than requested (indicating we're at the end)
-                // or if we got no messages
-                if (messagesReceived == 0 || messagesReceived < MAX_MESSAGES_PER_REQUEST) {
-                    hasMore = false;
-                    logger.info("Reached end of messages with {} messages in this batch", messagesReceived);
-                } else if (!messages.isEmpty()) {
-                    // Get the ID of the oldest message for the next pagination request
-                    // Assuming messages are sorted by creation time in descending order
-                    oldestMessageId = messages.get(messages.size() - 1).getId();
-                    logger.info("Downloaded batch of {} messages, continuing with beforeMessage={}", 
-                              messagesReceived, oldestMessageId);
+                if (page.last) {
+                    return allMessages;
                 }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading messages");
+        } finally {
+            // Stops the fetcher if collecting failed before the last page
+            fetcher.cancel(true);
+        }
+    }
+    
+    /**
+     * Fetch stage of {@link #downloadMessages}: fetch pages until the end of the history or the
+     * watermark, and queue them trimmed to the new messages. Errors are queued as the last page.
+     */
+    private void fetchPages(String roomId, String stopAtMessageId, ZonedDateTime stopAtCreated, ZonedDateTime before,
+                            String beforeMessageId, BlockingQueue<Page> pages) {
+        try {
+            try {
+                String oldestMessageId = beforeMessageId;
+                boolean hasMore = true;
                 
-                allMessages.addAll(messages);
-                logger.info("Downloaded {} messages so far", allMessages.size());
+                while (hasMore) {
+                    // The time bound only positions the first page, later pages continue from its oldest message
+                    List<Message> messages = fetchPage(roomId, oldestMessageId, oldestMessageId == null ? before : null);
+                    int messagesReceived = messages.size();
+                    
+                    List<Message> newMessages = messages;
+                    for (int i = 0; i < messagesReceived; i++) {
+                        if (isAtWatermark(messages.get(i), stopAtMessageId, stopAtCreated)) {
+                            newMessages = messages.subList(0, i);
+                            break;
+                        }
+                    }
+                    
+                    if (newMessages.size() < messagesReceived) {
+                        hasMore = false;
+                        logger.info("Reached already stored messages or the start of the requested range");
+                    } else if (messagesReceived == 0 || messagesReceived < MAX_MESSAGES_PER_REQUEST) {
+                        // Check if we got fewer messages than requested (indicating we're at the end)
+                        // or if we got no messages
+                        hasMore = false;
+                        logger.info("Reached end of messages with {} messages in this batch", messagesReceived);
+                    } else {
+                        // Get the ID of the oldest message for the next pagination request
+                        // Assuming messages are sorted by creation time in descending order
+                        oldestMessageId = messages.get(messages.size() - 1).getId();
+                        logger.info("Downloaded batch of {} messages, continuing with beforeMessage={}", 
+                                  messagesReceived, oldestMessageId);
+                    }
+                    
+                    pages.put(new Page(newMessages, oldestMessageId, null, !hasMore));
+                }
+            } catch (IOException | RuntimeException e) {
+                pages.put(new Page(Collections.emptyList(), null, e, true));
             }
+        } catch (InterruptedException e) {
+            // Cancelled because the collecting side gave up
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static boolean isAtWatermark(Message message, String stopAtMessageId, ZonedDateTime stopAtCreated) {
+        if (stopAtMessageId != null && stopAtMessageId.equals(message.getId())) {
+            return true;
+        }
+        // Messages posted in the same instant as the watermark are kept; merging drops duplicates
+        return stopAtCreated != null && message.getCreated() != null && message.getCreated().isBefore(stopAtCreated);
+    }
+    
+    /**
+     * Fetch one page of messages, newest first
+     * 
+     * @param beforeMessageId Only return messages older than this one, or null for the newest page
+     * @param before Only return messages created before this time, or null for the newest page
+     */
+    private List<Message> fetchPage(String roomId, String beforeMessageId, ZonedDateTime before) throws IOException {
+        HttpUrl.Builder urlBuilder = HttpUrl.parse(API_BASE_URL + "/messages").newBuilder()
+                .addQueryParameter("roomId", roomId)
+                .addQueryParameter("max", String.valueOf(MAX_MESSAGES_PER_REQUEST));
+
+        // Add beforeMessage parameter for pagination if we have the oldest message
+        if (beforeMessageId != null) {
+            urlBuilder.addQueryParameter("beforeMessage", beforeMessageId);
+        } else if (before != null) {
+            urlBuilder.addQueryParameter("before", before.withZoneSameInstant(ZoneOffset.UTC).format(DateTimeFormatter.ISO_INSTANT));
         }
         
-        Conversation conversation = new Conversation();
-        conversation.setRoom(room);
-        conversation.setMessages(allMessages);
-        return conversation;
+        Request request = new Request.Builder()
+                .url(urlBuilder.build())
+                .header("Authorization", "Bearer " + authenticator.getAccessToken())
+                .build();
+        
+        try (Response response = requestExecutor.execute(request)) {
+            // Bind messages while the body streams in instead of buffering the page as a string and a tree
+            return pageParser.parse(response.body().byteStream());
+        }
     }
-}
\ No newline at end of file
+}
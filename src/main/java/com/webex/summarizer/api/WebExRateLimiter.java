@@ -0,0 +1,120 @@
+package com.webex.summarizer.api;
+
+import com.webex.summarizer.util.ConfigLoader;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out WebEx API requests made with the same access token.
+ * <p>
+ * WebEx enforces its rate limits per token, so every service and thread using a token shares one
+ * limiter. Besides the steady request rate, a 429 response pauses all requests with the token until
+ * its {@code Retry-After} delay has passed.
+ */
+public class WebExRateLimiter {
+
+    public static final int DEFAULT_REQUESTS_PER_SECOND = 5;
+
+    private static final Map<String, WebExRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private long intervalNanos;
+    private long nextPermitNanos = System.nanoTime();
+
+    private long requestCount;
+    private long throttledCount;
+    private long retryCount;
+    private long totalWaitNanos;
+
+    WebExRateLimiter(int requestsPerSecond) {
+        setRequestsPerSecond(requestsPerSecond);
+    }
+
+    /**
+     * The limiter shared by all requests made with a token
+     */
+    public static WebExRateLimiter forToken(String token) {
+        return LIMITERS.computeIfAbsent(token == null ? "" : token, t -> new WebExRateLimiter(DEFAULT_REQUESTS_PER_SECOND));
+    }
+
+    public void applyConfig(ConfigLoader configLoader) {
+        setRequestsPerSecond(configLoader.getIntProperty("webex.http.requests-per-second", DEFAULT_REQUESTS_PER_SECOND));
+    }
+
+    /**
+     * @param requestsPerSecond The steady request rate, or 0 to only slow down when WebEx throttles
+     */
+    public synchronized void setRequestsPerSecond(int requestsPerSecond) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("Requests per second must not be negative: " + requestsPerSecond);
+        }
+        this.intervalNanos = requestsPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+    }
+
+    /**
+     * Wait until a request may be sent
+     */
+    public void acquire() throws InterruptedIOException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now >= nextPermitNanos) {
+                    nextPermitNanos = now + intervalNanos;
+                    requestCount++;
+                    return;
+                }
+                waitNanos = nextPermitNanos - now;
+                totalWaitNanos += waitNanos;
+            }
+            // Check again after waiting, a 429 may have pushed the next permit back meanwhile
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the WebEx rate limit");
+            }
+        }
+    }
+
+    /**
+     * Hold back all requests with this token after WebEx throttled one
+     *
+     * @param delayMillis How long WebEx asked to wait
+     */
+    public synchronized void onThrottled(long delayMillis) {
+        throttledCount++;
+        nextPermitNanos = Math.max(nextPermitNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    synchronized void onRetry() {
+        retryCount++;
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Number of responses that were 429 Too Many Requests
+     */
+    public synchronized long getThrottledCount() {
+        return throttledCount;
+    }
+
+    public synchronized long getRetryCount() {
+        return retryCount;
+    }
+
+    public synchronized long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("requests=%d, throttled=%d, retries=%d, rateLimitWait=%dms",
+                requestCount, throttledCount, retryCount, TimeUnit.NANOSECONDS.toMillis(totalWaitNanos));
+    }
+}
@@ -0,0 +1,147 @@
+package com.webex.summarizer.api;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends WebEx API requests within the token's rate limit and retries the ones that can succeed later.
+ * <p>
+ * 429 responses are retried after the delay from their {@code Retry-After} header, which also holds
+ * back every other request with the same token. 5xx responses and network errors are retried with
+ * jittered exponential backoff. Retries wait outside the HTTP client, so they hold no connection slot.
+ */
+public class WebExRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebExRequestExecutor.class);
+
+    private static final int DEFAULT_MAX_RETRIES = 5;
+    private static final long DEFAULT_BASE_BACKOFF_MILLIS = 1000;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 60_000;
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final OkHttpClient httpClient;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public WebExRequestExecutor(OkHttpClient httpClient) {
+        this(httpClient, DEFAULT_MAX_RETRIES, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    WebExRequestExecutor(OkHttpClient httpClient, int maxRetries, long baseBackoffMillis, long maxBackoffMillis) {
+        this.httpClient = httpClient;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Execute a request, retrying throttled and transient failures
+     *
+     * @return The successful response, or a 304 for a conditional request; the caller must close it
+     * @throws IOException If the request failed with a non-retryable status or ran out of retries
+     */
+    public Response execute(Request request) throws IOException {
+        WebExRateLimiter rateLimiter = WebExRateLimiter.forToken(tokenOf(request));
+
+        for (int attempt = 0; ; attempt++) {
+            rateLimiter.acquire();
+
+            Response response;
+            try {
+                response = httpClient.newCall(request).execute();
+            } catch (IOException e) {
+                if (attempt >= maxRetries || e instanceof InterruptedIOException && Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                rateLimiter.onRetry();
+                long delay = backoffMillis(attempt);
+                logger.info("WebEx request to {} failed ({}), retrying in {} ms (attempt {} of {})",
+                        request.url().encodedPath(), e.getMessage(), delay, attempt + 1, maxRetries);
+                sleep(delay);
+                continue;
+            }
+
+            if (response.isSuccessful() || response.code() == 304) {
+                return response;
+            }
+
+            int code = response.code();
+            boolean throttled = code == 429;
+            long delay = throttled ? retryAfterMillis(response, attempt) : backoffMillis(attempt);
+            String description = response.toString();
+            response.close();
+
+            if (throttled) {
+                rateLimiter.onThrottled(delay);
+            }
+            if (!(throttled || code >= 500) || attempt >= maxRetries) {
+                throw new IOException("Unexpected code " + description);
+            }
+
+            rateLimiter.onRetry();
+            logger.info("WebEx returned {} for {}, retrying in {} ms (attempt {} of {})",
+                    code, request.url().encodedPath(), delay, attempt + 1, maxRetries);
+            if (!throttled) {
+                // Throttled retries wait in the rate limiter together with the other requests
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * The delay WebEx asked for, in seconds or as an HTTP date, or exponential backoff without the header
+     */
+    long retryAfterMillis(Response response, int attempt) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, Duration.between(ZonedDateTime.now(), retryAt).toMillis());
+                } catch (DateTimeParseException ignored) {
+                    logger.warn("Ignoring invalid Retry-After header: {}", retryAfter);
+                }
+            }
+        }
+        return backoffMillis(attempt);
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay up to the capped exponential bound
+     */
+    private long backoffMillis(int attempt) {
+        long bound = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private static String tokenOf(Request request) {
+        String authorization = request.header("Authorization");
+        if (authorization == null) {
+            return "";
+        }
+        return authorization.startsWith(BEARER_PREFIX) ? authorization.substring(BEARER_PREFIX.length()) : authorization;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off from WebEx");
+        }
+    }
+}
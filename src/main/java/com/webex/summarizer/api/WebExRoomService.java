@@ -2,89 +2,250 @@ package com.webex.summarizer.api;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Room;
 import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class WebExRoomService {
     
     private static final Logger logger = LoggerFactory.getLogger(WebExRoomService.class);
     private static final String API_BASE_URL = "https://webexapis.com/v1";
+    // One entry of a Link header pointing at the next page, e.g. <https://...>; rel="next"
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"?next\"?");
     
     private final WebExAuthenticator authenticator;
-    private final OkHttpClient httpClient;
+    private final WebExRequestExecutor requestExecutor;
     private final ObjectMapper objectMapper;
+    // Optional, without it every lookup goes to WebEx
+    private RoomCache roomCache;
     
     public WebExRoomService(WebExAuthenticator authenticator) {
+        this(authenticator, WebExClientFactory.getDefault());
+    }
+    
+    /**
+     * Create the service on the HTTP client and mapper of a factory, so that connection pools and
+     * per-host limits are shared with other services
+     */
+    public WebExRoomService(WebExAuthenticator authenticator, WebExClientFactory clients) {
         this.authenticator = authenticator;
-        this.httpClient = new OkHttpClient();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.requestExecutor = new WebExRequestExecutor(clients.getHttpClient());
+        this.objectMapper = clients.getObjectMapper();
     }
     
+    public void setRoomCache(RoomCache roomCache) {
+        this.roomCache = roomCache;
+    }
+    
+    /**
+     * List all rooms, following the pages WebEx links to, or from the cache if they were listed within its TTL
+     */
     public List<Room> listRooms() throws IOException {
+        return listRooms(false);
+    }
+    
+    /**
+     * List all rooms, following the pages WebEx links to
+     *
+     * @param revalidate Ask WebEx whether a cached list is still current even within the TTL, with a
+     *                   conditional request for each of its pages
+     */
+    public List<Room> listRooms(boolean revalidate) throws IOException {
         if (!authenticator.isAuthenticated()) {
             throw new IllegalStateException("Not authenticated");
         }
         
+        List<Room> cached = null;
+        if (roomCache != null) {
+            if (!revalidate) {
+                List<Room> fresh = roomCache.getRoomList();
+                if (fresh != null) {
+                    logger.debug("Using {} cached rooms", fresh.size());
+                    return fresh;
+                }
+            }
+            cached = roomCache.getCachedRoomList();
+            if (cached != null && isUnchanged(roomCache.getRoomListPages())) {
+                logger.debug("Room list unchanged since it was cached");
+                roomCache.renewRoomList();
+                return cached;
+            }
+        }
+        
         // Build URL with query params - set max to 1000 (the API maximum) to get more rooms at once
         HttpUrl.Builder urlBuilder = HttpUrl.parse(API_BASE_URL + "/rooms").newBuilder();
         urlBuilder.addQueryParameter("max", "1000");  // Maximum allowed by WebEx API
         
-        Request request = new Request.Builder()
-                .url(urlBuilder.build())
-                .header("Authorization", "Bearer " + authenticator.getAccessToken())
-                .build();
+        RoomPages pages = fetchRoomPages(urlBuilder.build(), null);
+        if (roomCache != null) {
+            roomCache.putRoomList(pages.rooms, pages.pages);
+        }
+        return pages.rooms;
+    }
+    
+    /**
+     * List the rooms with activity since a watermark, most recently active first.
+     * The rooms are requested sorted by last activity, so paging stops at the first room older than the watermark.
+     *
+     * @param since Newest activity seen by an earlier listing, or null to list every room
+     */
+    public List<Room> listRoomsActiveSince(ZonedDateTime since) throws IOException {
+        if (!authenticator.isAuthenticated()) {
+            throw new IllegalStateException("Not authenticated");
+        }
+        
+        HttpUrl.Builder urlBuilder = HttpUrl.parse(API_BASE_URL + "/rooms").newBuilder();
+        urlBuilder.addQueryParameter("sortBy", "lastactivity");
+        urlBuilder.addQueryParameter("max", "1000");
         
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
+        List<Room> rooms = fetchRoomPages(urlBuilder.build(), since).rooms;
+        if (roomCache != null) {
+            roomCache.putRooms(rooms);
+        }
+        return rooms;
+    }
+    
+    /**
+     * Rooms of a listing and the pages they were fetched from
+     */
+    private static class RoomPages {
+        final List<Room> rooms = new ArrayList<>();
+        final List<RoomCache.ListPage> pages = new ArrayList<>();
+    }
+    
+    /**
+     * Ask WebEx whether every page of a cached listing is unchanged, with a conditional request per page.
+     * A change on any page, including rooms joined on a later one, means the list has to be fetched again.
+     */
+    private boolean isUnchanged(List<RoomCache.ListPage> pages) {
+        if (pages == null || pages.isEmpty() || pages.stream().anyMatch(page -> page.getEtag() == null)) {
+            return false;
+        }
+        for (RoomCache.ListPage page : pages) {
+            Request request = new Request.Builder()
+                    .url(page.getUrl())
+                    .header("Authorization", "Bearer " + authenticator.getAccessToken())
+                    .header("If-None-Match", page.getEtag())
+                    .build();
+            try (Response response = requestExecutor.execute(request)) {
+                if (response.code() != 304) {
+                    return false;
+                }
+            } catch (IOException e) {
+                // Page links of an old listing may have expired, so list the rooms from the start instead
+                logger.debug("Could not revalidate room list page {}: {}", page.getUrl(), e.getMessage());
+                return false;
             }
+        }
+        return true;
+    }
+    
+    /**
+     * Fetch room pages until the last page, or until a room was last active before {@code activeSince}
+     */
+    private RoomPages fetchRoomPages(HttpUrl url, ZonedDateTime activeSince) throws IOException {
+        RoomPages pages = new RoomPages();
+        List<Room> rooms = pages.rooms;
+        while (url != null) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .header("Authorization", "Bearer " + authenticator.getAccessToken())
+                    .build();
             
-            String responseBody = response.body().string();
-            JsonNode rootNode = objectMapper.readTree(responseBody);
-            JsonNode itemsNode = rootNode.path("items");
-            
-            List<Room> rooms = new ArrayList<>();
-            for (JsonNode itemNode : itemsNode) {
-                Room room = objectMapper.treeToValue(itemNode, Room.class);
-                rooms.add(room);
+            try (Response response = requestExecutor.execute(request)) {
+                pages.pages.add(new RoomCache.ListPage(url.toString(), response.header("ETag")));
+                String responseBody = response.body().string();
+                JsonNode rootNode = objectMapper.readTree(responseBody);
+                JsonNode itemsNode = rootNode.path("items");
+                
+                for (JsonNode itemNode : itemsNode) {
+                    Room room = objectMapper.treeToValue(itemNode, Room.class);
+                    if (activeSince != null && room.getLastActivity() != null
+                            && room.getLastActivity().isBefore(activeSince)) {
+                        return pages;
+                    }
+                    rooms.add(room);
+                }
+                
+                url = nextPageUrl(response);
+            }
+            if (url != null) {
+                logger.debug("Fetched {} rooms, following the next page link", rooms.size());
+            }
+        }
+        return pages;
+    }
+    
+    /**
+     * The next page WebEx links to in the Link header, or null on the last page.
+     * Links that leave the API host are not followed, since the request would carry the access token.
+     */
+    static HttpUrl nextPageUrl(Response response) {
+        for (String header : response.headers("Link")) {
+            Matcher matcher = NEXT_LINK.matcher(header);
+            if (matcher.find()) {
+                HttpUrl next = HttpUrl.parse(matcher.group(1));
+                HttpUrl base = HttpUrl.parse(API_BASE_URL);
+                if (next == null || !next.scheme().equals(base.scheme()) || !next.host().equals(base.host())
+                        || next.port() != base.port()) {
+                    logger.warn("Not following next page link outside {}: {}", API_BASE_URL, matcher.group(1));
+                    return null;
+                }
+                return next;
             }
-            
-            return rooms;
         }
+        return null;
     }
     
+    /**
+     * Look up a room, from the cache while it is fresh and with a conditional request once it is stale
+     */
     public Room getRoom(String roomId) throws IOException {
         if (!authenticator.isAuthenticated()) {
             throw new IllegalStateException("Not authenticated");
         }
         
+        RoomCache.Entry cached = null;
+        if (roomCache != null) {
+            Room fresh = roomCache.getRoom(roomId);
+            if (fresh != null) {
+                return fresh;
+            }
+            cached = roomCache.getEntry(roomId);
+        }
+        
         String url = API_BASE_URL + "/rooms/" + roomId;
-        Request request = new Request.Builder()
+        Request.Builder requestBuilder = new Request.Builder()
                 .url(url)
-                .header("Authorization", "Bearer " + authenticator.getAccessToken())
-                .build();
+                .header("Authorization", "Bearer " + authenticator.getAccessToken());
+        if (cached != null && cached.getEtag() != null) {
+            requestBuilder.header("If-None-Match", cached.getEtag());
+        }
         
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
+        try (Response response = requestExecutor.execute(requestBuilder.build())) {
+            if (response.code() == 304 && cached != null) {
+                logger.debug("Room {} unchanged since it was cached", roomId);
+                roomCache.renew(roomId);
+                return cached.getRoom();
             }
             
             String responseBody = response.body().string();
-            return objectMapper.readValue(responseBody, Room.class);
+            Room room = objectMapper.readValue(responseBody, Room.class);
+            if (roomCache != null) {
+                roomCache.putRoom(room, response.header("ETag"));
+            }
+            return room;
         }
     }
 }
\ No newline at end of file
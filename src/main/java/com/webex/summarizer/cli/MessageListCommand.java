@@ -1,11 +1,15 @@
 package com.webex.summarizer.cli;
 
+import com.webex.summarizer.api.RoomCache;
+import com.webex.summarizer.api.WebExClientFactory;
 import com.webex.summarizer.api.WebExMessageService;
+import com.webex.summarizer.api.WebExRateLimiter;
 import com.webex.summarizer.api.WebExRoomService;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Conversation;
 import com.webex.summarizer.model.Message;
 import com.webex.summarizer.storage.ConversationStorage;
+import com.webex.summarizer.storage.MessageReader;
 import com.webex.summarizer.util.ConfigLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +20,7 @@ import picocli.CommandLine.Option;
 import java.io.File;
 import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -63,9 +68,9 @@ public class MessageListCommand implements Callable<Integer> {
                 outputDir = configLoader.getProperty("storage.directory", "conversations");
             }
             
-            ConversationStorage storage = new ConversationStorage(outputDir);
+            ConversationStorage storage = ConversationStorage.open(outputDir, configLoader);
             
-            Conversation conversation;
+            Callable<MessageReader> messages;
             
             if (filePath != null) {
                 // Load conversation from file
@@ -74,8 +79,8 @@ public class MessageListCommand implements Callable<Integer> {
                     return 1;
                 }
                 
-                System.out.println("Loading conversation from " + filePath);
-                conversation = storage.loadConversation(filePath);
+                System.out.println("Reading conversation from " + filePath);
+                messages = () -> storage.openMessages(filePath);
             } else if (roomId != null) {
                 // Download conversation from WebEx
                 // Get token from command line or config file
@@ -89,23 +94,27 @@ public class MessageListCommand implements Callable<Integer> {
                 
                 // Initialize authenticator and API services
                 WebExAuthenticator authenticator = new WebExAuthenticator(token);
-                WebExRoomService roomService = new WebExRoomService(authenticator);
-                WebExMessageService messageService = new WebExMessageService(authenticator, roomService);
+                WebExRateLimiter.forToken(token).applyConfig(configLoader);
+                WebExClientFactory clients = new WebExClientFactory(configLoader);
+                WebExRoomService roomService = clients.createRoomService(authenticator);
+                roomService.setRoomCache(RoomCache.open(outputDir, authenticator.getAccessToken(), configLoader, clients.getObjectMapper()));
+                WebExMessageService messageService = clients.createMessageService(authenticator, roomService);
                 
                 System.out.println("Downloading conversation from room " + roomId + "...");
-                conversation = messageService.downloadConversation(roomId);
+                Conversation conversation = messageService.downloadConversation(roomId);
                 
                 if (saveToFile) {
                     storage.saveConversation(conversation);
                     System.out.println("Conversation saved to file in " + outputDir);
                 }
+                messages = () -> MessageReader.of(conversation);
             } else {
                 System.err.println("Please specify either a room ID (--room) or a file path (--file).");
                 return 1;
             }
             
             // Display conversation messages
-            displayMessages(conversation, limit);
+            displayMessages(messages, limit);
             return 0;
             
         } catch (Exception e) {
@@ -115,29 +124,51 @@ public class MessageListCommand implements Callable<Integer> {
         }
     }
     
-    private void displayMessages(Conversation conversation, Integer messagesPerPage) {
-        List<Message> allMessages = conversation.getMessages();
-        int totalMessages = allMessages.size();
-        
+    /**
+     * Messages of one page, read while counting all messages of the conversation
+     */
+    private static class Page {
+        final List<Message> messages = new ArrayList<>();
+        Conversation conversation;
+        int totalMessages;
+    }
+    
+    /**
+     * Read the messages of a page, keeping only those on the page
+     */
+    private static Page readPage(Callable<MessageReader> source, int startIndex, int pageSize) throws Exception {
+        Page result = new Page();
+        try (MessageReader reader = source.call()) {
+            while (reader.hasNext()) {
+                Message message = reader.next();
+                if (result.totalMessages >= startIndex && result.messages.size() < pageSize) {
+                    result.messages.add(message);
+                }
+                result.totalMessages++;
+            }
+            result.conversation = reader.getConversation();
+        }
+        return result;
+    }
+    
+    private void displayMessages(Callable<MessageReader> source, Integer messagesPerPage) throws Exception {
         // Determine pagination parameters
         int pageSize = (messagesPerPage != null && messagesPerPage > 0) ? messagesPerPage : 1000;
-        int totalPages = totalMessages > 0 ? (int) Math.ceil((double) totalMessages / pageSize) : 1;
-        
-        // Validate page number
         if (page < 1) page = 1;
-        if (page > totalPages) page = totalPages;
         
-        // Calculate start and end indices for the current page
-        int startIndex = (page - 1) * pageSize;
-        
-        // Validate indices to prevent IndexOutOfBoundsException
-        if (startIndex < 0) startIndex = 0;
-        if (startIndex >= totalMessages) startIndex = Math.max(0, totalMessages - pageSize);
+        Page result = readPage(source, (page - 1) * pageSize, pageSize);
+        int totalMessages = result.totalMessages;
+        int totalPages = totalMessages > 0 ? (int) Math.ceil((double) totalMessages / pageSize) : 1;
         
-        int endIndex = Math.min(startIndex + pageSize, totalMessages);
+        // The total is only known after reading, so a page past the end is read again as the last page
+        if (page > totalPages) {
+            page = totalPages;
+            result = readPage(source, (page - 1) * pageSize, pageSize);
+        }
         
-        // Get messages for the current page
-        List<Message> pageMessages = totalMessages > 0 ? allMessages.subList(startIndex, endIndex) : List.of();
+        int startIndex = (page - 1) * pageSize;
+        Conversation conversation = result.conversation;
+        List<Message> pageMessages = result.messages;
         
         // Print conversation header with styling
         System.out.println("\n╔══════════════════════════════════════════════════════════════════════════════╗");
@@ -0,0 +1,54 @@
+package com.webex.summarizer.cli;
+
+import com.webex.summarizer.storage.ConversationStorage;
+import com.webex.summarizer.storage.StorageFormat;
+import com.webex.summarizer.util.ConfigLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.util.concurrent.Callable;
+
+@Command(name = "migrate-storage", description = "Convert stored conversation files to another storage format and to the configured compression", mixinStandardHelpOptions = true)
+public class MigrateStorageCommand implements Callable<Integer> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrateStorageCommand.class);
+
+    @Option(names = {"-c", "--config"}, description = "Path to config file")
+    private String configPath = "config.properties";
+
+    @Option(names = {"-o", "--output-dir"}, description = "Directory of the stored conversations")
+    private String outputDir;
+
+    @Option(names = {"--format"}, description = "Target format: json or smile (default: storage.format from config)")
+    private String formatName;
+
+    @Override
+    public Integer call() throws Exception {
+        try {
+            ConfigLoader configLoader = new ConfigLoader(configPath);
+
+            if (outputDir == null) {
+                outputDir = configLoader.getProperty("storage.directory", "conversations");
+            }
+
+            String configuredFormat = configLoader.getProperty("storage.format", "json");
+            StorageFormat target = StorageFormat.fromName(formatName != null ? formatName : configuredFormat);
+
+            ConversationStorage storage = ConversationStorage.open(outputDir, configLoader);
+            int migrated = storage.migrate(target);
+            System.out.println("Converted " + migrated + " conversation files in " + outputDir + " to " + target.getName() + ".");
+
+            if (!target.getName().equalsIgnoreCase(configuredFormat)) {
+                System.out.println("Set storage.format=" + target.getName() + " in " + configPath
+                        + " to write new conversations in the same format.");
+            }
+            return 0;
+        } catch (Exception e) {
+            logger.error("Failed to migrate storage: {}", e.getMessage(), e);
+            System.err.println("Failed to migrate storage: " + e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.webex.summarizer.cli;
 
+import com.webex.summarizer.api.RoomCache;
+import com.webex.summarizer.api.WebExClientFactory;
+import com.webex.summarizer.api.WebExRateLimiter;
 import com.webex.summarizer.api.WebExRoomService;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Room;
@@ -31,6 +34,9 @@ public class RoomListCommand implements Callable<Integer> {
     @Option(names = {"--type"}, description = "Filter rooms by type (direct, group)")
     private String roomType;
 
+    @Option(names = {"--refresh"}, description = "Ignore the cached room metadata and fetch it from WebEx again")
+    private boolean refresh = false;
+
     @Override
     public Integer call() throws Exception {
         try {
@@ -47,9 +53,17 @@ public class RoomListCommand implements Callable<Integer> {
             
             // Initialize authenticator with token
             WebExAuthenticator authenticator = new WebExAuthenticator(token);
+            WebExRateLimiter.forToken(token).applyConfig(configLoader);
             
-            // Initialize room service
-            WebExRoomService roomService = new WebExRoomService(authenticator);
+            // Initialize room service, with the room cache kept next to the stored conversations
+            WebExClientFactory clients = new WebExClientFactory(configLoader);
+            WebExRoomService roomService = clients.createRoomService(authenticator);
+            if (refresh) {
+                // A TTL of zero treats every entry as stale, so the cache is refilled from WebEx
+                configLoader.setProperty("webex.rooms.cache-ttl-minutes", "0");
+            }
+            roomService.setRoomCache(RoomCache.open(configLoader.getProperty("storage.directory", "conversations"),
+                    token, configLoader, clients.getObjectMapper()));
             
             if (roomId != null) {
                 // Show details for a specific room
@@ -61,6 +75,7 @@ public class RoomListCommand implements Callable<Integer> {
                     System.out.printf("Title:       %s\n", room.getTitle());
                     System.out.printf("Type:        %s\n", room.getType());
                     System.out.printf("Created:     %s\n", room.getCreated());
+                    System.out.printf("Activity:    %s\n", room.getLastActivity() != null ? room.getLastActivity() : "Unknown");
                     System.out.printf("Is Locked:   %s\n", room.getIsLocked() != null ? room.getIsLocked() : "Unknown");
                     System.out.println("─────────────────────────────────────────────────────────");
                 } catch (IOException e) {
@@ -1,6 +1,9 @@
 package com.webex.summarizer.cli;
 
+import com.webex.summarizer.api.RoomCache;
+import com.webex.summarizer.api.WebExClientFactory;
 import com.webex.summarizer.api.WebExMessageService;
+import com.webex.summarizer.api.WebExRateLimiter;
 import com.webex.summarizer.api.WebExRoomService;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Conversation;
@@ -9,6 +12,8 @@ import com.webex.summarizer.search.ConversationSearch;
 import com.webex.summarizer.search.QuestionAnswerer;
 import com.webex.summarizer.summarizer.LlmSummarizer;
 import com.webex.summarizer.storage.ConversationStorage;
+import com.webex.summarizer.storage.MessageReader;
+import com.webex.summarizer.storage.PartialDownload;
 import com.webex.summarizer.util.ConfigLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Command(name = "search", description = "Search WebEx conversations and get AI-generated answers to questions", mixinStandardHelpOptions = true)
 public class SearchCommand implements Callable<Integer> {
@@ -74,6 +80,9 @@ public class SearchCommand implements Callable<Integer> {
     @Option(names = {"-m", "--model"}, description = "AWS Bedrock model ID to use")
     private String modelId;
     
+    @Option(names = {"--no-stream"}, description = "Wait for the complete answer instead of printing it as it is generated")
+    private boolean noStream = false;
+    
     @Override
     public Integer call() throws Exception {
         try {
@@ -84,15 +93,23 @@ public class SearchCommand implements Callable<Integer> {
                 outputDir = configLoader.getProperty("storage.directory", "conversations");
             }
             
-            ConversationStorage storage = new ConversationStorage(outputDir);
+            ConversationStorage storage = ConversationStorage.open(outputDir, configLoader);
             ConversationSearch searcher = new ConversationSearch();
             
-            // Either load from file or download from room ID
+            // Parse dates if provided
+            ZonedDateTime startDate = parseStartDate(startDateStr);
+            ZonedDateTime endDate = parseEndDate(endDateStr);
+            
+            // Either read from file or download from room ID
             Conversation conversation = null;
             
             if (filePath != null) {
-                // Load from file
-                conversation = loadConversation(filePath, storage);
+                // Messages are read from the file as they are needed
+                if (!Paths.get(filePath).toFile().exists()) {
+                    System.err.println("File not found: " + filePath);
+                    return 1;
+                }
+                System.out.println("Reading conversation from " + filePath);
             } else if (roomId != null) {
                 // Download from WebEx
                 WebExAuthenticator authenticator = initializeAuthenticator(configLoader);
@@ -101,27 +118,28 @@ public class SearchCommand implements Callable<Integer> {
                     return 1;
                 }
                 
-                conversation = downloadConversation(roomId, authenticator, storage);
+                WebExClientFactory clients = new WebExClientFactory(configLoader);
+                RoomCache roomCache = RoomCache.open(outputDir, authenticator.getAccessToken(), configLoader, clients.getObjectMapper());
+                conversation = downloadConversation(roomId, authenticator, clients, roomCache, storage,
+                        startDate, endDate);
             } else {
                 System.err.println("Please specify either a room ID (--room) or a file path (--file).");
                 return 1;
             }
-            
-            if (conversation == null) {
-                return 1;
-            }
 
-            // Parse dates if provided
-            ZonedDateTime startDate = parseStartDate(startDateStr);
-            ZonedDateTime endDate = parseEndDate(endDateStr);
-            
             // Search for messages
             if (searchQuery != null && !searchQuery.isEmpty()) {
-                performSearch(conversation, searcher, searchQuery, startDate, endDate);
+                try (MessageReader messages = conversation != null
+                        ? MessageReader.of(conversation) : storage.openMessages(filePath)) {
+                    performSearch(messages, searcher, searchQuery, startDate, endDate);
+                }
             }
             
             // Answer a question
             if (question != null && !question.isEmpty()) {
+                if (conversation == null) {
+                    conversation = loadConversation(filePath, storage, startDate, endDate);
+                }
                 answerQuestion(conversation, question, searcher, configLoader, startDate, endDate);
             }
             
@@ -140,26 +158,46 @@ public class SearchCommand implements Callable<Integer> {
         }
     }
     
-    private Conversation loadConversation(String filePath, ConversationStorage storage) throws IOException {
-        if (!Paths.get(filePath).toFile().exists()) {
-            System.err.println("File not found: " + filePath);
-            return null;
+    /**
+     * Load the messages of a conversation file that fall in the date range being searched
+     */
+    private Conversation loadConversation(String filePath, ConversationStorage storage, ZonedDateTime startDate,
+                                          ZonedDateTime endDate) throws IOException {
+        if (startDate == null && endDate == null) {
+            return storage.loadConversation(filePath);
         }
-        
-        System.out.println("Loading conversation from " + filePath);
-        return storage.loadConversation(filePath);
+        return storage.loadConversation(filePath, message ->
+                (startDate == null || !message.getCreated().isBefore(startDate))
+                        && (endDate == null || !message.getCreated().isAfter(endDate)));
     }
     
-    private Conversation downloadConversation(String roomId, WebExAuthenticator authenticator, ConversationStorage storage) throws IOException {
+    /**
+     * Download the messages of a room, limited to the date range being searched
+     * 
+     * @param startDate Start of the range, or null to download from the beginning
+     * @param endDate Last instant of the range, or null to download up to the newest message
+     */
+    private Conversation downloadConversation(String roomId, WebExAuthenticator authenticator, WebExClientFactory clients,
+                                              RoomCache roomCache, ConversationStorage storage, ZonedDateTime startDate,
+                                              ZonedDateTime endDate) throws IOException {
         // Initialize API services
-        WebExRoomService roomService = new WebExRoomService(authenticator);
-        WebExMessageService messageService = new WebExMessageService(authenticator, roomService);
+        WebExRoomService roomService = clients.createRoomService(authenticator);
+        roomService.setRoomCache(roomCache);
+        WebExMessageService messageService = clients.createMessageService(authenticator, roomService);
         
         System.out.println("Downloading conversation from room " + roomId + "...");
-        Conversation conversation = messageService.downloadConversation(roomId);
+        ZonedDateTime before = endDate != null ? endDate.plusNanos(1) : null;
+        // Full histories are checkpointed per page, so an interrupted download resumes on the next run
+        PartialDownload checkpoint = startDate == null && before == null ? storage.openPartialDownload(roomId) : null;
+        Conversation conversation = checkpoint != null
+                ? messageService.downloadConversation(roomId, checkpoint)
+                : messageService.downloadConversation(roomId, startDate, before);
         
         // Save the conversation to file
         storage.saveConversation(conversation);
+        if (checkpoint != null) {
+            checkpoint.delete();
+        }
         System.out.println("Conversation downloaded successfully with " + 
                 conversation.getMessages().size() + " messages and saved to file.");
         
@@ -167,19 +205,14 @@ public class SearchCommand implements Callable<Integer> {
     }
     
     private void performSearch(
-            Conversation conversation, 
+            MessageReader messages, 
             ConversationSearch searcher, 
             String query, 
             ZonedDateTime startDate, 
             ZonedDateTime endDate) {
-        List<Message> matchingMessages;
-        
-        // Search with or without date filtering
-        if (startDate != null || endDate != null) {
-            matchingMessages = searcher.searchMessages(conversation, query, startDate, endDate);
-        } else {
-            matchingMessages = searcher.searchMessages(conversation, query);
-        }
+        // Matches are collected with their context while the messages are read
+        List<ConversationSearch.Match> matchingMessages = searcher.searchMessages(
+                messages, query, startDate, endDate, contextSize);
         
         // Display results with enhanced formatting
         System.out.println("\n");
@@ -197,14 +230,13 @@ public class SearchCommand implements Callable<Integer> {
         
         // Display each match with context
         for (int i = 0; i < matchingMessages.size(); i++) {
-            Message match = matchingMessages.get(i);
+            Message match = matchingMessages.get(i).getMessage();
             
             System.out.println("\n┏━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━┓");
             System.out.println("┃ 🔎 Match " + (i + 1) + " of " + matchingMessages.size() + " (with context)                                         ┃");
             System.out.println("┗━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━┛");
             
-            // Get context around this match
-            List<Message> contextMessages = searcher.getMessageContext(conversation, match, contextSize);
+            List<Message> contextMessages = matchingMessages.get(i).getContext();
             
             // Display each message in the context
             for (int j = 0; j < contextMessages.size(); j++) {
@@ -261,6 +293,7 @@ public class SearchCommand implements Callable<Integer> {
         String model = modelId != null ? modelId : configLoader.getProperty("aws.bedrock.model", "anthropic.claude-v2");
         
         LlmSummarizer summarizer = new LlmSummarizer(profile, region, model);
+        summarizer.applyConfig(configLoader);
         
         // Set up progress reporting
         summarizer.setProgressListener(new LlmSummarizer.SummarizationProgressListener() {
@@ -346,17 +379,34 @@ public class SearchCommand implements Callable<Integer> {
         System.out.println("\n🔍 Analyzing " + conversation.getMessages().size() + " messages to generate an answer...");
         System.out.println("\n⏳ Please wait while I process your question...");
         
+        // Print the answer as it is generated, starting with the question header
+        String answerHeader = "\n" +
+                "❓ Question: " + question + "\n" +
+                "━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n" +
+                "\n" +
+                "💬 Answer:\n\n";
+        AtomicBoolean streamed = new AtomicBoolean(false);
+        if (!noStream) {
+            summarizer.setStreamListener(text -> {
+                if (streamed.compareAndSet(false, true)) {
+                    // Move off the progress line before the header
+                    System.out.print("\n" + answerHeader);
+                }
+                System.out.print(text);
+                System.out.flush();
+            });
+        }
+        
         // Generate the answer using LLM directly on the entire conversation
         String answer = summarizer.answerQuestion(conversation, question);
         
-        // Format and display the answer
+        // Format and display the answer (only the closing part if it was streamed)
         StringBuilder formattedAnswer = new StringBuilder();
+        if (!streamed.get()) {
+            formattedAnswer.append(answerHeader);
+            formattedAnswer.append(answer);
+        }
         formattedAnswer.append("\n");
-        formattedAnswer.append("❓ Question: ").append(question).append("\n");
-        formattedAnswer.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-        formattedAnswer.append("\n");
-        formattedAnswer.append("💬 Answer:\n\n");
-        formattedAnswer.append(answer).append("\n");
         formattedAnswer.append("\n");
         formattedAnswer.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
         
@@ -602,6 +652,7 @@ public class SearchCommand implements Callable<Integer> {
             }
         }
         
+        WebExRateLimiter.forToken(webexToken).applyConfig(configLoader);
         return new WebExAuthenticator(webexToken);
     }
     
@@ -1,11 +1,16 @@
 package com.webex.summarizer.cli;
 
+import com.webex.summarizer.api.RoomCache;
+import com.webex.summarizer.api.WebExClientFactory;
 import com.webex.summarizer.api.WebExMessageService;
+import com.webex.summarizer.api.WebExRateLimiter;
 import com.webex.summarizer.api.WebExRoomService;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Conversation;
 import com.webex.summarizer.model.Message;
 import com.webex.summarizer.storage.ConversationStorage;
+import com.webex.summarizer.storage.LlmResultCache;
+import com.webex.summarizer.storage.PartialDownload;
 import com.webex.summarizer.summarizer.LlmSummarizer;
 import com.webex.summarizer.util.ConfigLoader;
 import com.webex.summarizer.util.SummaryFormatter;
@@ -19,9 +24,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
@@ -55,6 +62,18 @@ public class SummaryCommand implements Callable<Integer> {
     @Option(names = {"-m", "--model"}, description = "AWS Bedrock model ID to use")
     private String modelId;
     
+    @Option(names = {"--concurrency"}, description = "Maximum number of chunk requests sent to Bedrock in parallel (default: aws.bedrock.concurrency or 64)")
+    private Integer concurrency;
+    
+    @Option(names = {"--no-cache"}, description = "Do not reuse or store cached chunk summaries")
+    private boolean noCache = false;
+    
+    @Option(names = {"--no-stream"}, description = "Wait for the complete summary instead of printing it as it is generated")
+    private boolean noStream = false;
+    
+    @Option(names = {"--incremental"}, description = "Only summarize messages added since the last stored summary and merge them into it")
+    private boolean incremental = false;
+    
     @Option(names = {"--list-summaries"}, description = "List all conversations with summaries")
     private boolean listSummaries = false;
     
@@ -65,6 +84,14 @@ public class SummaryCommand implements Callable<Integer> {
     private String endDateStr;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    
+    // Parsed --from/--to dates, shared by the download and the message filter
+    private LocalDate startDate;
+    private LocalDate endDate;
+    // Number of messages stored in the file, when only those in the date range were loaded
+    private int storedMessageCount = -1;
+    // File or room store the conversation was loaded from or saved to, where its summary is stored
+    private String sourcePath;
 
     @Override
     public Integer call() throws Exception {
@@ -76,13 +103,21 @@ public class SummaryCommand implements Callable<Integer> {
                 outputDir = configLoader.getProperty("storage.directory", "conversations");
             }
             
-            ConversationStorage storage = new ConversationStorage(outputDir);
+            ConversationStorage storage = ConversationStorage.open(outputDir, configLoader);
 
             if (listSummaries) {
                 listSummariesAction(storage);
                 return 0;
             }
             
+            if (incremental && (startDateStr != null || endDateStr != null)) {
+                System.err.println("--incremental cannot be combined with --from/--to date filters.");
+                return 1;
+            }
+            
+            startDate = parseDateOption(startDateStr, "start");
+            endDate = parseDateOption(endDateStr, "end");
+            
             Conversation conversation = null;
             
             // Initialize authenticator if needed for room operations
@@ -98,6 +133,7 @@ public class SummaryCommand implements Callable<Integer> {
                 }
                 
                 authenticator = new WebExAuthenticator(token);
+                WebExRateLimiter.forToken(token).applyConfig(configLoader);
             }
             
             // Initialize summarizer
@@ -107,7 +143,9 @@ public class SummaryCommand implements Callable<Integer> {
             if (filePath != null) {
                 conversation = loadConversation(filePath, storage);
             } else if (roomId != null && authenticator != null) {
-                conversation = downloadConversation(roomId, authenticator, storage);
+                WebExClientFactory clients = new WebExClientFactory(configLoader);
+                RoomCache roomCache = RoomCache.open(outputDir, authenticator.getAccessToken(), configLoader, clients.getObjectMapper());
+                conversation = downloadConversation(roomId, authenticator, clients, roomCache, storage);
             } else {
                 System.err.println("Please specify either a room ID (--room) or a file path (--file).");
                 return 1;
@@ -140,6 +178,16 @@ public class SummaryCommand implements Callable<Integer> {
         String model = modelId != null ? modelId : configLoader.getProperty("aws.bedrock.model", "anthropic.claude-v2");
         
         LlmSummarizer summarizer = new LlmSummarizer(profile, region, model);
+        summarizer.applyConfig(configLoader);
+        if (concurrency != null) {
+            summarizer.setMaxConcurrency(concurrency);
+        }
+        
+        // Cache chunk summaries next to the stored conversations
+        if (!noCache) {
+            long cacheMaxBytes = configLoader.getIntProperty("summarizer.cache.max-mb", 256) * 1024L * 1024L;
+            summarizer.setResultCache(new LlmResultCache(Paths.get(outputDir, ".llm-cache").toString(), cacheMaxBytes));
+        }
         logger.info("LLM Summarizer initialized with AWS Bedrock (profile: {}, region: {}, model: {})",
                     profile, region, model);
         
@@ -153,19 +201,46 @@ public class SummaryCommand implements Callable<Integer> {
         }
         
         System.out.println("Loading conversation from " + filePath);
-        return storage.loadConversation(filePath);
+        sourcePath = filePath;
+        if (startDate == null && filterEndDate() == null) {
+            return storage.loadConversation(filePath);
+        }
+        
+        // Only keep the messages in the date range while reading, instead of loading the whole history
+        int[] stored = {0};
+        Conversation conversation = storage.loadConversation(filePath, message -> {
+            stored[0]++;
+            return isInDateRange(message);
+        });
+        storedMessageCount = stored[0];
+        return conversation;
     }
     
-    private Conversation downloadConversation(String roomId, WebExAuthenticator authenticator, ConversationStorage storage) throws IOException {
+    private Conversation downloadConversation(String roomId, WebExAuthenticator authenticator, WebExClientFactory clients,
+                                              RoomCache roomCache, ConversationStorage storage) throws IOException {
         // Initialize API services
-        WebExRoomService roomService = new WebExRoomService(authenticator);
-        WebExMessageService messageService = new WebExMessageService(authenticator, roomService);
+        WebExRoomService roomService = clients.createRoomService(authenticator);
+        roomService.setRoomCache(roomCache);
+        WebExMessageService messageService = clients.createMessageService(authenticator, roomService);
+        
+        // Only download the requested date range. Messages are filtered by their own calendar date
+        // afterwards, so the range gets a day of margin for messages near midnight in other time zones.
+        ZoneId zone = ZoneId.systemDefault();
+        ZonedDateTime from = startDate != null ? startDate.minusDays(1).atStartOfDay(zone) : null;
+        ZonedDateTime to = endDate != null ? endDate.plusDays(2).atStartOfDay(zone) : null;
         
         System.out.println("Downloading conversation from room " + roomId + "...");
-        Conversation conversation = messageService.downloadConversation(roomId);
+        // Full histories are checkpointed per page, so an interrupted download resumes on the next run
+        PartialDownload checkpoint = from == null && to == null ? storage.openPartialDownload(roomId) : null;
+        Conversation conversation = checkpoint != null
+                ? messageService.downloadConversation(roomId, checkpoint)
+                : messageService.downloadConversation(roomId, from, to);
         
         // Save the conversation to file
-        storage.saveConversation(conversation);
+        sourcePath = storage.saveConversation(conversation);
+        if (checkpoint != null) {
+            checkpoint.delete();
+        }
         System.out.println("Conversation downloaded successfully with " + 
                 conversation.getMessages().size() + " messages and saved to file.");
         
@@ -211,7 +286,7 @@ public class SummaryCommand implements Callable<Integer> {
             }
             
             // Save the empty summary
-            storage.saveSummary(conversation, noMessagesMessage);
+            storage.saveSummary(conversation, noMessagesMessage, sourcePath);
             
             // Display a simple formatted summary
             SummaryFormatter.printFormattedSummary(noMessagesMessage);
@@ -246,21 +321,102 @@ public class SummaryCommand implements Callable<Integer> {
             }
         });
         
+        // Print the final summary as it is generated
+        SummaryFormatter.StreamingPrinter streamingPrinter = null;
+        if (!noStream) {
+            streamingPrinter = new SummaryFormatter.StreamingPrinter();
+            summarizer.setStreamListener(streamingPrinter::accept);
+        }
+        
         System.out.println("\nGenerating summary...");
-        String summary = summarizer.generateSummary(conversation);
+        String summary = incremental
+                ? generateIncrementalSummary(conversation, summarizer, storage)
+                : summarizer.generateSummary(conversation);
+        
+        if (streamingPrinter != null) {
+            streamingPrinter.finish();
+        }
         
         // Move to next line after progress reporting
         System.out.println("\n");
         
+        // Record the high-water mark only when the summary covers the whole room
+        if (conversation.getDateFrom() == null && conversation.getDateTo() == null) {
+            markSummarized(conversation);
+        } else {
+            conversation.setSummarizedUntilMessageId(null);
+            conversation.setSummarizedUntil(null);
+        }
+        
         // Save the summary
-        storage.saveSummary(conversation, summary);
+        storage.saveSummary(conversation, summary, sourcePath);
         
-        // Display the formatted summary using our helper method
-        displayFormattedSummary(summary);
+        // Display the formatted summary unless it was already streamed
+        if (streamingPrinter == null || !streamingPrinter.hasOutput()) {
+            displayFormattedSummary(summary);
+        }
         
         return 0;
     }
     
+    /**
+     * Summarize only the messages newer than the high-water mark of the last stored summary
+     * and merge them into that summary. Falls back to a full summary if none exists.
+     */
+    private String generateIncrementalSummary(Conversation conversation, LlmSummarizer summarizer, ConversationStorage storage) throws IOException {
+        Conversation previous = conversation;
+        if (conversation.getSummary() == null || conversation.getSummarizedUntil() == null) {
+            previous = storage.findLatestSummarizedConversation(conversation.getRoom().getId());
+        }
+        
+        if (previous == null) {
+            System.out.println("No previous summary found for this room, summarizing the full conversation.");
+            return summarizer.generateSummary(conversation);
+        }
+        
+        ZonedDateTime summarizedUntil = previous.getSummarizedUntil();
+        String summarizedUntilMessageId = previous.getSummarizedUntilMessageId();
+        
+        List<Message> newMessages = messagesAfter(conversation.getMessages(), summarizedUntil, summarizedUntilMessageId);
+        
+        System.out.println("Previous summary covers messages until " +
+                summarizedUntil.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) +
+                ", " + newMessages.size() + " new messages since then");
+        
+        if (newMessages.isEmpty()) {
+            System.out.println("Summary is already up to date.");
+            return previous.getSummary();
+        }
+        
+        return summarizer.updateSummary(conversation, previous.getSummary(), newMessages);
+    }
+    
+    /**
+     * Messages not yet covered by a summary with the given high-water mark.
+     * Messages sharing the high-water mark timestamp are included so none are missed. Messages without
+     * a creation time are left out, as {@link #markSummarized(Conversation)} cannot mark them either.
+     */
+    static List<Message> messagesAfter(List<Message> messages, ZonedDateTime summarizedUntil,
+                                       String summarizedUntilMessageId) {
+        return messages.stream()
+            .filter(message -> message.getCreated() != null && !message.getCreated().isBefore(summarizedUntil))
+            .filter(message -> summarizedUntilMessageId == null || !summarizedUntilMessageId.equals(message.getId()))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Set the summary high-water mark to the newest message of the conversation
+     */
+    private void markSummarized(Conversation conversation) {
+        conversation.getMessages().stream()
+            .filter(message -> message.getCreated() != null)
+            .max(Comparator.comparing(Message::getCreated))
+            .ifPresent(newest -> {
+                conversation.setSummarizedUntilMessageId(newest.getId());
+                conversation.setSummarizedUntil(newest.getCreated());
+            });
+    }
+    
     /**
      * Format and display a summary with enhanced visual presentation
      */
@@ -286,7 +442,8 @@ public class SummaryCommand implements Callable<Integer> {
         int count = 0;
         for (File file : files) {
             try {
-                Conversation conversation = storage.loadConversation(file.getAbsolutePath());
+                // Only the summary and room are needed, so no messages are kept
+                Conversation conversation = storage.loadConversation(file.getAbsolutePath(), message -> false);
                 boolean hasSummary = conversation.getSummary() != null && !conversation.getSummary().isEmpty();
                 
                 System.out.printf("%-40s | %-20s | %-10s\n",
@@ -318,6 +475,38 @@ public class SummaryCommand implements Callable<Integer> {
         return str.substring(0, maxLength - 3) + "...";
     }
     
+    /**
+     * Parse a --from/--to option in yyyy-MM-dd format
+     * 
+     * @param bound "start" or "end", used in the error message
+     * @return The date, or null if the option is not set or invalid
+     */
+    private LocalDate parseDateOption(String dateStr, String bound) {
+        if (dateStr == null || dateStr.isEmpty()) {
+            return null;
+        }
+        
+        try {
+            // Check if date is in correct format
+            if (dateStr.matches("\\d{4}-\\d{2}-\\d{2}")) {
+                return LocalDate.parse(dateStr, DATE_FORMATTER);
+            } else if (dateStr.matches("\\d{4}-\\d{1,2}-\\d{1,2}")) {
+                // Try to parse dates like 2025-5-28 or 2025-05-5 by reformatting
+                String[] parts = dateStr.split("-");
+                String year = parts[0];
+                String month = parts[1].length() == 1 ? "0" + parts[1] : parts[1];
+                String day = parts[2].length() == 1 ? "0" + parts[2] : parts[2];
+                return LocalDate.parse(year + "-" + month + "-" + day, DATE_FORMATTER);
+            } else {
+                throw new DateTimeParseException("Format error", dateStr, 0);
+            }
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid " + bound + " date format. Please use yyyy-MM-dd (example: 2025-05-28). Using no "
+                    + bound + " date filter.");
+            return null;
+        }
+    }
+    
     /**
      * Filter messages in the conversation based on start and end dates
      * Note: WebEx API returns timestamps as epoch seconds which are converted to
@@ -326,85 +515,34 @@ public class SummaryCommand implements Callable<Integer> {
      * @param conversation The conversation to filter
      */
     private void filterMessagesByDate(Conversation conversation) {
-        LocalDate startDate = null;
-        LocalDate endDate = null;
+        LocalDate filterEndDate = filterEndDate();
         
-        // Parse start date
-        if (startDateStr != null && !startDateStr.isEmpty()) {
-            try {
-                // Check if date is in correct format
-                if (startDateStr.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                    startDate = LocalDate.parse(startDateStr, DATE_FORMATTER);
-                } else if (startDateStr.matches("\\d{4}-\\d{1,2}-\\d{1,2}")) {
-                    // Try to parse dates like 2025-5-28 or 2025-05-5 by reformatting
-                    String[] parts = startDateStr.split("-");
-                    String year = parts[0];
-                    String month = parts[1].length() == 1 ? "0" + parts[1] : parts[1];
-                    String day = parts[2].length() == 1 ? "0" + parts[2] : parts[2];
-                    startDate = LocalDate.parse(year + "-" + month + "-" + day, DATE_FORMATTER);
-                } else {
-                    throw new DateTimeParseException("Format error", startDateStr, 0);
-                }
-                
-                conversation.setDateFrom(startDate.atStartOfDay(ZonedDateTime.now().getZone()));
-                System.out.println("Filtering messages from " + startDate.format(DATE_FORMATTER));
-            } catch (DateTimeParseException e) {
-                System.err.println("Invalid start date format. Please use yyyy-MM-dd (example: 2025-05-28). Using no start date filter.");
-            }
+        if (startDate != null) {
+            conversation.setDateFrom(startDate.atStartOfDay(ZonedDateTime.now().getZone()));
+            System.out.println("Filtering messages from " + startDate.format(DATE_FORMATTER));
         }
         
-        // Parse end date
-        // If end date is provided, parse it. Otherwise, use current date if start date is specified
-        if (endDateStr != null && !endDateStr.isEmpty()) {
-            try {
-                // Check if date is in correct format
-                if (endDateStr.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                    endDate = LocalDate.parse(endDateStr, DATE_FORMATTER);
-                } else if (endDateStr.matches("\\d{4}-\\d{1,2}-\\d{1,2}")) {
-                    // Try to parse dates like 2025-5-28 or 2025-05-5 by reformatting
-                    String[] parts = endDateStr.split("-");
-                    String year = parts[0];
-                    String month = parts[1].length() == 1 ? "0" + parts[1] : parts[1];
-                    String day = parts[2].length() == 1 ? "0" + parts[2] : parts[2];
-                    endDate = LocalDate.parse(year + "-" + month + "-" + day, DATE_FORMATTER);
-                } else {
-                    throw new DateTimeParseException("Format error", endDateStr, 0);
-                }
-                
-                conversation.setDateTo(endDate.plusDays(1).atStartOfDay(ZonedDateTime.now().getZone()));
-                System.out.println("Filtering messages until " + endDate.format(DATE_FORMATTER));
-            } catch (DateTimeParseException e) {
-                System.err.println("Invalid end date format. Please use yyyy-MM-dd (example: 2025-05-28). Using no end date filter.");
-            }
-        } else if (startDate != null) {
-            // If only start date is specified, use current date as end date
-            endDate = LocalDate.now();
+        // If end date is provided, use it. Otherwise, use current date if start date is specified
+        if (endDate != null) {
             conversation.setDateTo(endDate.plusDays(1).atStartOfDay(ZonedDateTime.now().getZone()));
+            System.out.println("Filtering messages until " + endDate.format(DATE_FORMATTER));
+        } else if (startDate != null && (endDateStr == null || endDateStr.isEmpty())) {
+            // If only start date is specified, use current date as end date
+            conversation.setDateTo(filterEndDate.plusDays(1).atStartOfDay(ZonedDateTime.now().getZone()));
             System.out.println("Filtering messages until current date");
         }
         
         // If no valid dates, return without filtering
-        if (startDate == null && endDate == null) {
+        if (startDate == null && filterEndDate == null) {
             return;
         }
         
-        final LocalDate finalStartDate = startDate;
-        final LocalDate finalEndDate = endDate;
-        
         // Save original message count for reporting
-        int originalCount = conversation.getMessages().size();
+        int originalCount = storedMessageCount >= 0 ? storedMessageCount : conversation.getMessages().size();
         
         // Filter messages by date
         List<Message> filteredMessages = conversation.getMessages().stream()
-            .filter(message -> {
-                ZonedDateTime created = message.getCreated();
-                LocalDate messageDate = created.toLocalDate();
-                
-                boolean afterStartDate = finalStartDate == null || !messageDate.isBefore(finalStartDate);
-                boolean beforeEndDate = finalEndDate == null || !messageDate.isAfter(finalEndDate);
-                
-                return afterStartDate && beforeEndDate;
-            })
+            .filter(this::isInDateRange)
             .collect(Collectors.toList());
         
         // Update the conversation with filtered messages
@@ -420,4 +558,25 @@ public class SummaryCommand implements Callable<Integer> {
             System.out.println("No messages exist in this conversation within the date range you specified.");
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Last day of the date filter: the --to date, or the current date if only --from is given
+     */
+    private LocalDate filterEndDate() {
+        if (endDate != null) {
+            return endDate;
+        }
+        return startDate != null && (endDateStr == null || endDateStr.isEmpty()) ? LocalDate.now() : null;
+    }
+    
+    /**
+     * Whether a message was created on a day within the date filter
+     */
+    private boolean isInDateRange(Message message) {
+        LocalDate messageDate = message.getCreated().toLocalDate();
+        LocalDate filterEndDate = filterEndDate();
+        boolean afterStartDate = startDate == null || !messageDate.isBefore(startDate);
+        boolean beforeEndDate = filterEndDate == null || !messageDate.isAfter(filterEndDate);
+        return afterStartDate && beforeEndDate;
+    }
+}
@@ -0,0 +1,266 @@
+package com.webex.summarizer.cli;
+
+import com.webex.summarizer.api.RoomCache;
+import com.webex.summarizer.api.WebExClientFactory;
+import com.webex.summarizer.api.WebExMessageService;
+import com.webex.summarizer.api.WebExRateLimiter;
+import com.webex.summarizer.api.WebExRoomService;
+import com.webex.summarizer.auth.WebExAuthenticator;
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+import com.webex.summarizer.model.Room;
+import com.webex.summarizer.storage.ConversationCatalog;
+import com.webex.summarizer.storage.ConversationStorage;
+import com.webex.summarizer.storage.PartialDownload;
+import com.webex.summarizer.util.ConfigLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Command(name = "sync", description = "Download only new messages for rooms, in parallel, and merge them into the stored conversations", mixinStandardHelpOptions = true)
+public class SyncCommand implements Callable<Integer> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncCommand.class);
+    private static final int DEFAULT_WORKERS = 4;
+    // The download date of an empty room is taken from the local clock, which may be ahead of the server's
+    private static final Duration CLOCK_SKEW_MARGIN = Duration.ofMinutes(5);
+
+    @Option(names = {"-c", "--config"}, description = "Path to config file")
+    private String configPath = "config.properties";
+
+    @Option(names = {"-o", "--output-dir"}, description = "Output directory for downloaded conversations")
+    private String outputDir;
+
+    @Option(names = {"--token"}, description = "WebEx API token to use")
+    private String token;
+
+    @Option(names = {"--room"}, description = "WebEx room ID to sync (can be repeated)")
+    private List<String> roomIds = new ArrayList<>();
+
+    @Option(names = {"--all"}, description = "Sync every room the token has access to")
+    private boolean allRooms = false;
+
+    @Option(names = {"--changed"}, description = "With --all, only sync rooms with activity since the last complete --changed sync")
+    private boolean changedOnly = false;
+
+    @Option(names = {"--full"}, description = "Ignore the stored watermark and download the full history again")
+    private boolean full = false;
+
+    @Option(names = {"--workers"}, description = "Number of rooms to sync in parallel (default: webex.sync.workers from config)")
+    private Integer workers;
+
+    @Option(names = {"--max-per-host"}, description = "Maximum concurrent HTTP requests per host (default: webex.http.max-requests-per-host from config)")
+    private Integer maxRequestsPerHost;
+
+    /**
+     * Outcome of syncing one room
+     */
+    private static class RoomResult {
+        final String title;
+        final int newMessages;
+        final long storedMessages;
+        final boolean fullDownload;
+
+        RoomResult(String title, int newMessages, long storedMessages, boolean fullDownload) {
+            this.title = title;
+            this.newMessages = newMessages;
+            this.storedMessages = storedMessages;
+            this.fullDownload = fullDownload;
+        }
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        try {
+            if (changedOnly && !allRooms) {
+                System.err.println("--changed can only be used together with --all.");
+                return 1;
+            }
+
+            ConfigLoader configLoader = new ConfigLoader(configPath);
+
+            if (outputDir == null) {
+                outputDir = configLoader.getProperty("storage.directory", "conversations");
+            }
+
+            if (token == null) {
+                token = configLoader.getProperty("webex.token");
+                if (token == null || token.isEmpty()) {
+                    System.err.println("No WebEx token found. Please provide a token with --token or set webex.token in config.properties.");
+                    return 1;
+                }
+            }
+
+            if (roomIds.isEmpty() && !allRooms) {
+                System.err.println("Please specify rooms to sync with --room or use --all.");
+                return 1;
+            }
+
+            int workerCount = workers != null ? workers
+                    : configLoader.getIntProperty("webex.sync.workers", DEFAULT_WORKERS);
+            int perHost = maxRequestsPerHost != null ? maxRequestsPerHost
+                    : configLoader.getIntProperty("webex.http.max-requests-per-host", WebExClientFactory.DEFAULT_MAX_REQUESTS_PER_HOST);
+            if (workerCount < 1 || perHost < 1) {
+                System.err.println("Workers and max requests per host must be at least 1.");
+                return 1;
+            }
+
+            // All workers share one client, so the per-host cap applies across rooms
+            WebExClientFactory clients = new WebExClientFactory(
+                    configLoader.getIntProperty("webex.http.max-idle-connections", WebExClientFactory.DEFAULT_MAX_IDLE_CONNECTIONS),
+                    configLoader.getIntProperty("webex.http.keep-alive-seconds", WebExClientFactory.DEFAULT_KEEP_ALIVE_SECONDS),
+                    configLoader.getIntProperty("webex.http.max-requests", WebExClientFactory.DEFAULT_MAX_REQUESTS),
+                    perHost);
+            WebExAuthenticator authenticator = new WebExAuthenticator(token);
+            WebExRateLimiter rateLimiter = WebExRateLimiter.forToken(token);
+            rateLimiter.applyConfig(configLoader);
+            WebExRoomService roomService = clients.createRoomService(authenticator);
+            RoomCache roomCache = RoomCache.open(outputDir, authenticator.getAccessToken(), configLoader, clients.getObjectMapper());
+            roomService.setRoomCache(roomCache);
+            WebExMessageService messageService = clients.createMessageService(authenticator, roomService);
+            ConversationStorage storage = ConversationStorage.open(outputDir, configLoader);
+
+            List<String> targets = new ArrayList<>(roomIds);
+            ZonedDateTime activityWatermark = null;
+            if (allRooms) {
+                List<Room> rooms;
+                if (changedOnly) {
+                    activityWatermark = roomCache.getActivityWatermark();
+                    rooms = roomService.listRoomsActiveSince(activityWatermark);
+                    System.out.println(activityWatermark != null
+                            ? rooms.size() + " rooms with activity since " + activityWatermark
+                            : "No previous --changed sync, syncing all " + rooms.size() + " rooms");
+                } else {
+                    // Syncing everything should not miss rooms joined within the cache TTL
+                    rooms = roomService.listRooms(true);
+                }
+                for (Room room : rooms) {
+                    if (!targets.contains(room.getId())) {
+                        targets.add(room.getId());
+                    }
+                    if (room.getLastActivity() != null
+                            && (activityWatermark == null || room.getLastActivity().isAfter(activityWatermark))) {
+                        activityWatermark = room.getLastActivity();
+                    }
+                }
+            }
+
+            System.out.println("Syncing " + targets.size() + " rooms with " + workerCount + " workers (max "
+                    + perHost + " requests per host)...");
+            int failed = syncRooms(targets, Math.min(workerCount, targets.size()), messageService, storage);
+            if (allRooms && changedOnly && failed == 0 && activityWatermark != null) {
+                // Only advance after a complete run, so rooms that failed are picked up again next time
+                roomCache.setActivityWatermark(activityWatermark);
+            }
+            System.out.println("WebEx API: " + rateLimiter.getRequestCount() + " requests, "
+                    + rateLimiter.getThrottledCount() + " throttled, " + rateLimiter.getRetryCount() + " retried, "
+                    + rateLimiter.getTotalWaitMillis() + " ms waiting for the rate limit");
+            return failed == 0 ? 0 : 1;
+        } catch (Exception e) {
+            logger.error("Failed to sync rooms: {}", e.getMessage(), e);
+            System.err.println("Failed to sync rooms: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Sync rooms on a pool of workers, reporting progress and throughput as rooms finish
+     *
+     * @return The number of rooms that failed
+     */
+    private int syncRooms(List<String> targets, int workerCount, WebExMessageService messageService,
+                          ConversationStorage storage) throws InterruptedException {
+        int totalRooms = targets.size();
+        AtomicInteger completedRooms = new AtomicInteger();
+        AtomicInteger failedRooms = new AtomicInteger();
+        AtomicLong totalMessages = new AtomicLong();
+        long startNanos = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workerCount), runnable -> {
+            Thread thread = new Thread(runnable, "room-sync-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String roomId : targets) {
+                futures.add(executor.submit(() -> {
+                    String line;
+                    try {
+                        RoomResult result = syncRoom(roomId, messageService, storage);
+                        totalMessages.addAndGet(result.newMessages);
+                        line = result.title + ": " + (result.fullDownload
+                                ? "downloaded " + result.newMessages + " messages"
+                                : result.newMessages + " new messages (" + result.storedMessages + " stored)");
+                    } catch (IOException | RuntimeException e) {
+                        failedRooms.incrementAndGet();
+                        logger.error("Failed to sync room {}: {}", roomId, e.getMessage(), e);
+                        line = "Failed to sync room " + roomId + ": " + e.getMessage();
+                    }
+                    int done = completedRooms.incrementAndGet();
+                    System.out.println("[" + done + "/" + totalRooms + "] " + line + " - "
+                            + formatThroughput(done, totalMessages.get(), System.nanoTime() - startNanos));
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // Room failures are handled inside the task, so this is unexpected
+            throw new IllegalStateException("Room sync worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        System.out.println("\nSynced " + (totalRooms - failedRooms.get()) + " of " + totalRooms + " rooms, "
+                + totalMessages.get() + " new messages in " + String.format("%.1f", elapsedNanos / 1e9) + "s ("
+                + formatThroughput(totalRooms, totalMessages.get(), elapsedNanos) + ")");
+        return failedRooms.get();
+    }
+
+    private static String formatThroughput(int rooms, long messages, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos / 1e9, 0.001);
+        return String.format("%.1f messages/sec, %.1f rooms/min", messages / seconds, rooms * 60 / seconds);
+    }
+
+    /**
+     * Bring the stored conversation of one room up to date
+     */
+    private RoomResult syncRoom(String roomId, WebExMessageService messageService, ConversationStorage storage) throws IOException {
+        ConversationCatalog.Entry syncState = full ? null : storage.getSyncState(roomId);
+
+        if (syncState == null) {
+            // Nothing to continue from, so download the whole history once
+            PartialDownload checkpoint = storage.openPartialDownload(roomId);
+            Conversation conversation = messageService.downloadConversation(roomId, checkpoint);
+            storage.saveConversation(conversation);
+            checkpoint.delete();
+            int messageCount = conversation.getMessages().size();
+            return new RoomResult(conversation.getRoom().getTitle(), messageCount, messageCount, true);
+        }
+
+        ZonedDateTime since = syncState.getLastMessageCreated();
+        if (since == null) {
+            // The room had no messages when it was downloaded, so only messages posted since then are new
+            since = syncState.getDownloadDate().minus(CLOCK_SKEW_MARGIN);
+        }
+        List<Message> newMessages = messageService.downloadMessagesSince(roomId, syncState.getLastMessageId(), since);
+        ConversationStorage.MergeResult merged = storage.mergeNewMessages(roomId, newMessages);
+        return new RoomResult(merged.getRoom().getTitle(), merged.getAddedMessages(), merged.getStoredMessages(), false);
+    }
+}
@@ -1,12 +1,17 @@
 package com.webex.summarizer.cli;
 
+import com.webex.summarizer.api.RoomCache;
+import com.webex.summarizer.api.WebExClientFactory;
 import com.webex.summarizer.api.WebExMessageService;
+import com.webex.summarizer.api.WebExRateLimiter;
 import com.webex.summarizer.api.WebExRoomService;
 import com.webex.summarizer.auth.WebExAuthenticator;
 import com.webex.summarizer.model.Conversation;
 import com.webex.summarizer.model.Message;
 import com.webex.summarizer.model.Room;
 import com.webex.summarizer.storage.ConversationStorage;
+import com.webex.summarizer.storage.LlmResultCache;
+import com.webex.summarizer.storage.PartialDownload;
 import com.webex.summarizer.summarizer.LlmSummarizer;
 import com.webex.summarizer.util.ConfigLoader;
 import com.webex.summarizer.util.SummaryFormatter;
@@ -35,7 +40,9 @@ import java.util.concurrent.Callable;
             RoomListCommand.class,
             MessageListCommand.class,
             SummaryCommand.class,
-            SearchCommand.class
+            SearchCommand.class,
+            SyncCommand.class,
+            MigrateStorageCommand.class
         })
 public class WebExSummarizerCli implements Callable<Integer> {
     
@@ -106,7 +113,7 @@ public class WebExSummarizerCli implements Callable<Integer> {
                 outputDir = configLoader.getProperty("storage.directory", "conversations");
             }
             
-            storage = new ConversationStorage(outputDir);
+            storage = ConversationStorage.open(outputDir, configLoader);
             
             if (auth) {
                 performAuthentication();
@@ -145,10 +152,13 @@ public class WebExSummarizerCli implements Callable<Integer> {
         
         // Initialize authenticator with token
         authenticator = new WebExAuthenticator(token);
+        WebExRateLimiter.forToken(token).applyConfig(configLoader);
         
         // Initialize API services
-        roomService = new WebExRoomService(authenticator);
-        messageService = new WebExMessageService(authenticator, roomService);
+        WebExClientFactory clients = new WebExClientFactory(configLoader);
+        roomService = clients.createRoomService(authenticator);
+        roomService.setRoomCache(RoomCache.open(outputDir, authenticator.getAccessToken(), configLoader, clients.getObjectMapper()));
+        messageService = clients.createMessageService(authenticator, roomService);
         
         // Initialize summarizer if needed
         if (summarize) {
@@ -165,6 +175,9 @@ public class WebExSummarizerCli implements Callable<Integer> {
             String model = modelId != null ? modelId : configLoader.getProperty("aws.bedrock.model", "anthropic.claude-v2");
             
             summarizer = new LlmSummarizer(profile, region, model);
+            summarizer.applyConfig(configLoader);
+            long cacheMaxBytes = configLoader.getIntProperty("summarizer.cache.max-mb", 256) * 1024L * 1024L;
+            summarizer.setResultCache(new LlmResultCache(Paths.get(outputDir, ".llm-cache").toString(), cacheMaxBytes));
             logger.info("LLM Summarizer initialized with AWS Bedrock (profile: {}, region: {}, model: {})",
                         profile, region, model);
         }
@@ -220,16 +233,19 @@ public class WebExSummarizerCli implements Callable<Integer> {
     private void downloadRoomConversation(String roomId) {
         try {
             System.out.println("Downloading conversation from room " + roomId + "...");
-            Conversation conversation = messageService.downloadConversation(roomId);
+            // Pages are checkpointed, so running the command again resumes an interrupted download
+            PartialDownload checkpoint = storage.openPartialDownload(roomId);
+            Conversation conversation = messageService.downloadConversation(roomId, checkpoint);
             
-            storage.saveConversation(conversation);
+            String storedPath = storage.saveConversation(conversation);
+            checkpoint.delete();
             System.out.println("Conversation downloaded successfully with " + 
                     conversation.getMessages().size() + " messages.");
             
             if (summarize) {
                 System.out.println("Generating summary...");
                 String summary = summarizer.generateSummary(conversation);
-                storage.saveSummary(conversation, summary);
+                storage.saveSummary(conversation, summary, storedPath);
                 
                 // Format and display the summary using the enhanced formatter
                 displayFormattedSummary(summary);
@@ -265,7 +281,7 @@ public class WebExSummarizerCli implements Callable<Integer> {
             
             System.out.println("Generating summary...");
             String summary = summarizer.generateSummary(conversation);
-            storage.saveSummary(conversation, summary);
+            storage.saveSummary(conversation, summary, filePath);
             
             // Format and display the summary using the enhanced formatter
             displayFormattedSummary(summary);
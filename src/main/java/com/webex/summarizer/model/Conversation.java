@@ -10,6 +10,9 @@ public class Conversation {
     private String summary;
     private ZonedDateTime dateFrom;
     private ZonedDateTime dateTo;
+    // High-water mark: the newest message covered by the summary
+    private String summarizedUntilMessageId;
+    private ZonedDateTime summarizedUntil;
 
     public Conversation() {
         this.downloadDate = ZonedDateTime.now();
@@ -35,6 +38,10 @@ public class Conversation {
         return downloadDate;
     }
 
+    public void setDownloadDate(ZonedDateTime downloadDate) {
+        this.downloadDate = downloadDate;
+    }
+
     public String getSummary() {
         return summary;
     }
@@ -58,4 +65,20 @@ public class Conversation {
     public void setDateTo(ZonedDateTime dateTo) {
         this.dateTo = dateTo;
     }
-}
\ No newline at end of file
+
+    public String getSummarizedUntilMessageId() {
+        return summarizedUntilMessageId;
+    }
+
+    public void setSummarizedUntilMessageId(String summarizedUntilMessageId) {
+        this.summarizedUntilMessageId = summarizedUntilMessageId;
+    }
+
+    public ZonedDateTime getSummarizedUntil() {
+        return summarizedUntil;
+    }
+
+    public void setSummarizedUntil(ZonedDateTime summarizedUntil) {
+        this.summarizedUntil = summarizedUntil;
+    }
+}
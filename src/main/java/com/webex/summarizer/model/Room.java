@@ -8,6 +8,7 @@ public class Room {
     private String type; // "direct" or "group"
     private String teamId;
     private ZonedDateTime created;
+    private ZonedDateTime lastActivity;
     private String creatorId;
     private Boolean isLocked;
 
@@ -51,6 +52,14 @@ public class Room {
         this.created = created;
     }
 
+    public ZonedDateTime getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(ZonedDateTime lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
     public String getCreatorId() {
         return creatorId;
     }
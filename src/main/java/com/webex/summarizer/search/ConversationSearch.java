@@ -7,7 +7,10 @@ import org.slf4j.LoggerFactory;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,6 +22,32 @@ public class ConversationSearch {
     private static final Logger logger = LoggerFactory.getLogger(ConversationSearch.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
+    /**
+     * A message that matched a search, with the messages around it
+     */
+    public static class Match {
+        private final Message message;
+        private final List<Message> context;
+        private int remainingAfter;
+        
+        Match(Message message, List<Message> context, int remainingAfter) {
+            this.message = message;
+            this.context = context;
+            this.remainingAfter = remainingAfter;
+        }
+        
+        public Message getMessage() {
+            return message;
+        }
+        
+        /**
+         * The matching message with the messages before and after it, in conversation order
+         */
+        public List<Message> getContext() {
+            return context;
+        }
+    }
+    
     /**
      * Search for messages in a conversation that match the given query
      * 
@@ -77,6 +106,66 @@ public class ConversationSearch {
         return matchingMessages;
     }
     
+    /**
+     * Search messages as they are read, collecting the context of each match on the way.
+     * Only the matches, their context and the last few messages are held, however long the conversation is.
+     * 
+     * @param messages The messages to search through, in conversation order
+     * @param query The search query
+     * @param startDate The start date for filtering messages (inclusive), or null
+     * @param endDate The end date for filtering messages (inclusive), or null
+     * @param contextSize Number of messages to include before and after each match (each)
+     * @return The matches in conversation order
+     */
+    public List<Match> searchMessages(Iterator<Message> messages, String query, ZonedDateTime startDate,
+                                      ZonedDateTime endDate, int contextSize) {
+        String queryLower = query.toLowerCase();
+        int size = Math.max(0, contextSize);
+        Deque<Message> previous = new ArrayDeque<>();
+        List<Match> waitingForContext = new ArrayList<>();
+        List<Match> matches = new ArrayList<>();
+        
+        while (messages.hasNext()) {
+            Message message = messages.next();
+            
+            for (Iterator<Match> waiting = waitingForContext.iterator(); waiting.hasNext(); ) {
+                Match match = waiting.next();
+                match.context.add(message);
+                if (--match.remainingAfter == 0) {
+                    waiting.remove();
+                }
+            }
+            
+            if (matches(message, queryLower, startDate, endDate)) {
+                List<Message> context = new ArrayList<>(previous);
+                context.add(message);
+                Match match = new Match(message, context, size);
+                matches.add(match);
+                if (size > 0) {
+                    waitingForContext.add(match);
+                }
+            }
+            
+            previous.addLast(message);
+            if (previous.size() > size) {
+                previous.removeFirst();
+            }
+        }
+        
+        logger.info("Found {} messages matching query: '{}'", matches.size(), query);
+        return matches;
+    }
+    
+    private static boolean matches(Message message, String queryLower, ZonedDateTime startDate, ZonedDateTime endDate) {
+        if (message.getText() == null) {
+            return false;
+        }
+        ZonedDateTime created = message.getCreated();
+        boolean afterStartDate = startDate == null || !created.isBefore(startDate);
+        boolean beforeEndDate = endDate == null || !created.isAfter(endDate);
+        return afterStartDate && beforeEndDate && message.getText().toLowerCase().contains(queryLower);
+    }
+    
     /**
      * Get messages surrounding a specific message to provide context
      * 
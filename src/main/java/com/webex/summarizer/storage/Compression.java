@@ -0,0 +1,145 @@
+package com.webex.summarizer.storage;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of stored conversation files.
+ * <p>
+ * {@code gzip} compresses best, {@code lz4} is several times faster to write and read at a lower
+ * ratio. Compressed input is recognized by its magic bytes, so reading does not depend on the
+ * configured codec or on file names.
+ */
+public enum Compression {
+    NONE("none", ""),
+    GZIP("gzip", ".gz"),
+    LZ4("lz4", ".lz4");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+    // LZ4 frame magic number 0x184D2204, little endian
+    private static final byte[] LZ4_MAGIC = {0x04, 0x22, 0x4d, 0x18};
+
+    private final String name;
+    private final String extension;
+
+    Compression(String name, String extension) {
+        this.name = name;
+        this.extension = extension;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Suffix added to the names of compressed files, including the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public static Compression fromName(String name) {
+        for (Compression compression : values()) {
+            if (compression.name.equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression '" + name + "', expected none, gzip or lz4");
+    }
+
+    /**
+     * Wrap a stream so that everything written to it is compressed; closing it finishes the compressed data
+     *
+     * @param level gzip level 1-9, or LZ4 high compression level 1-17; -1 or 0 use the codec's fast default
+     */
+    public OutputStream compress(OutputStream out, int level) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE) {
+                    {
+                        def.setLevel(level > 0 ? Math.min(level, 9) : Deflater.DEFAULT_COMPRESSION);
+                    }
+                };
+            case LZ4:
+                if (level <= 0) {
+                    return new LZ4FrameOutputStream(out);
+                }
+                return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB, -1L,
+                        LZ4Factory.fastestInstance().highCompressor(Math.min(level, 17)),
+                        XXHashFactory.fastestInstance().hash32(), LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Wrap a stream so that it reads decompressed data, whichever codec wrote it
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        switch (detect(buffered)) {
+            case GZIP:
+                return new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
+            case LZ4:
+                return new BufferedInputStream(new LZ4FrameInputStream(buffered), BUFFER_SIZE);
+            default:
+                return buffered;
+        }
+    }
+
+    /**
+     * Detect the compression of a file from its magic bytes
+     */
+    public static Compression detect(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return detect(in);
+        }
+    }
+
+    private static Compression detect(InputStream in) throws IOException {
+        in.mark(LZ4_MAGIC.length);
+        byte[] header = in.readNBytes(LZ4_MAGIC.length);
+        in.reset();
+        if (startsWith(header, GZIP_MAGIC)) {
+            return GZIP;
+        }
+        return startsWith(header, LZ4_MAGIC) ? LZ4 : NONE;
+    }
+
+    private static boolean startsWith(byte[] header, byte[] magic) {
+        if (header.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A file name without the suffix of any compression
+     */
+    public static String stripExtension(String fileName) {
+        for (Compression compression : values()) {
+            if (compression != NONE && fileName.endsWith(compression.extension)) {
+                return fileName.substring(0, fileName.length() - compression.extension.length());
+            }
+        }
+        return fileName;
+    }
+}
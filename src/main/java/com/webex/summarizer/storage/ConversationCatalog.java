@@ -0,0 +1,242 @@
+package com.webex.summarizer.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the stored conversation files by room.
+ * For each room it records every file saved for it, the newest complete snapshot and the newest message
+ * in it, which is the watermark incremental syncs continue from, and the file holding the newest summary.
+ */
+public class ConversationCatalog {
+
+    /**
+     * Catalog entry for one room
+     */
+    public static class Entry {
+        private String latestFile;
+        private String lastMessageId;
+        private ZonedDateTime lastMessageCreated;
+        private ZonedDateTime downloadDate;
+        private List<String> files;
+        private String summaryFile;
+        private ZonedDateTime summarizedUntil;
+
+        /**
+         * File name, relative to the storage directory, of the newest complete snapshot of the room
+         */
+        public String getLatestFile() {
+            return latestFile;
+        }
+
+        public void setLatestFile(String latestFile) {
+            this.latestFile = latestFile;
+        }
+
+        public String getLastMessageId() {
+            return lastMessageId;
+        }
+
+        public void setLastMessageId(String lastMessageId) {
+            this.lastMessageId = lastMessageId;
+        }
+
+        public ZonedDateTime getLastMessageCreated() {
+            return lastMessageCreated;
+        }
+
+        public void setLastMessageCreated(ZonedDateTime lastMessageCreated) {
+            this.lastMessageCreated = lastMessageCreated;
+        }
+
+        /**
+         * When the newest snapshot was downloaded, which is the watermark of a room that had no messages
+         */
+        public ZonedDateTime getDownloadDate() {
+            return downloadDate;
+        }
+
+        public void setDownloadDate(ZonedDateTime downloadDate) {
+            this.downloadDate = downloadDate;
+        }
+
+        /**
+         * File names of all conversations saved for the room, oldest first
+         */
+        public List<String> getFiles() {
+            return files;
+        }
+
+        public void setFiles(List<String> files) {
+            this.files = files;
+        }
+
+        /**
+         * File name of the conversation with the newest summary high-water mark
+         */
+        public String getSummaryFile() {
+            return summaryFile;
+        }
+
+        public void setSummaryFile(String summaryFile) {
+            this.summaryFile = summaryFile;
+        }
+
+        public ZonedDateTime getSummarizedUntil() {
+            return summarizedUntil;
+        }
+
+        public void setSummarizedUntil(ZonedDateTime summarizedUntil) {
+            this.summarizedUntil = summarizedUntil;
+        }
+    }
+
+    private final Path catalogFile;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries;
+
+    public ConversationCatalog(Path catalogFile, ObjectMapper objectMapper) throws IOException {
+        this.catalogFile = catalogFile;
+        this.objectMapper = objectMapper;
+        this.entries = Files.exists(catalogFile)
+                ? objectMapper.readValue(catalogFile.toFile(), new TypeReference<HashMap<String, Entry>>() {})
+                : new HashMap<>();
+    }
+
+    public boolean exists() {
+        return Files.exists(catalogFile);
+    }
+
+    /**
+     * Whether the catalog was written before it tracked every file of a room, and has to be rebuilt
+     */
+    public synchronized boolean isOutdated() {
+        return entries.values().stream().anyMatch(entry -> entry.getFiles() == null);
+    }
+
+    /**
+     * Look up a room
+     *
+     * @return The room's entry, or null if no snapshot of the room is known
+     */
+    public synchronized Entry get(String roomId) {
+        return entries.get(roomId);
+    }
+
+    /**
+     * Record a saved conversation file, and persist the catalog
+     *
+     * @param complete Whether the file holds the room's full history, which makes it the newest snapshot
+     */
+    public synchronized void update(Conversation conversation, String fileName, boolean complete) throws IOException {
+        Entry entry = entryFor(conversation, fileName);
+        if (complete) {
+            setLatest(entry, conversation, fileName);
+        } else if (fileName.equals(entry.getLatestFile())) {
+            // The snapshot was overwritten with part of the history, so it no longer holds a watermark
+            setLatest(entry, null, null);
+        }
+        save();
+    }
+
+    /**
+     * Record a summary written to a conversation file, and persist the catalog.
+     * Only the summary fields of the file changed, so the room's snapshot and watermark stay as they are.
+     */
+    public synchronized void updateSummary(Conversation conversation, String fileName) throws IOException {
+        Entry entry = entries.computeIfAbsent(conversation.getRoom().getId(), roomId -> new Entry());
+        if (entry.getFiles() == null) {
+            entry.setFiles(new ArrayList<>());
+        }
+        if (!entry.getFiles().contains(fileName)) {
+            entry.getFiles().add(fileName);
+        }
+        if (conversation.getSummarizedUntil() != null && (entry.getSummarizedUntil() == null
+                || !conversation.getSummarizedUntil().isBefore(entry.getSummarizedUntil()))) {
+            entry.setSummaryFile(fileName);
+            entry.setSummarizedUntil(conversation.getSummarizedUntil());
+        } else if (fileName.equals(entry.getSummaryFile()) && conversation.getSummarizedUntil() == null) {
+            entry.setSummaryFile(null);
+            entry.setSummarizedUntil(null);
+        }
+        save();
+    }
+
+    /**
+     * Record a file while rebuilding the catalog, keeping the existing snapshot and summary if they are newer.
+     * Files have to be offered oldest first.
+     */
+    synchronized void offer(Conversation conversation, String fileName, boolean complete) {
+        Entry entry = entryFor(conversation, fileName);
+        if (complete) {
+            Message newest = newestMessage(conversation);
+            if (entry.getLatestFile() == null || (newest != null && (entry.getLastMessageCreated() == null
+                    || newest.getCreated().isAfter(entry.getLastMessageCreated())))) {
+                setLatest(entry, conversation, fileName);
+            }
+        }
+        if (conversation.getSummary() != null && conversation.getSummarizedUntil() != null
+                && (entry.getSummarizedUntil() == null || conversation.getSummarizedUntil().isAfter(entry.getSummarizedUntil()))) {
+            entry.setSummaryFile(fileName);
+            entry.setSummarizedUntil(conversation.getSummarizedUntil());
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * The entry of a conversation's room, with the file added to the room's files
+     */
+    private Entry entryFor(Conversation conversation, String fileName) {
+        Entry entry = entries.computeIfAbsent(conversation.getRoom().getId(), roomId -> new Entry());
+        if (entry.getFiles() == null) {
+            entry.setFiles(new ArrayList<>());
+        }
+        // Rewriting a file in place makes it the newest file of the room again
+        entry.getFiles().remove(fileName);
+        entry.getFiles().add(fileName);
+        return entry;
+    }
+
+    private static void setLatest(Entry entry, Conversation conversation, String fileName) {
+        entry.setLatestFile(fileName);
+        Message newest = conversation != null ? newestMessage(conversation) : null;
+        entry.setLastMessageId(newest != null ? newest.getId() : null);
+        entry.setLastMessageCreated(newest != null ? newest.getCreated() : null);
+        entry.setDownloadDate(conversation != null ? conversation.getDownloadDate() : null);
+    }
+
+    synchronized void save() throws IOException {
+        // Write to a temporary file first so a crash never leaves a truncated catalog behind
+        Path tempFile = Files.createTempFile(catalogFile.getParent(), "catalog", ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tempFile.toFile(), entries);
+        Files.move(tempFile, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Message newestMessage(Conversation conversation) {
+        Message newest = null;
+        if (conversation.getMessages() == null) {
+            return null;
+        }
+        for (Message message : conversation.getMessages()) {
+            if (message.getCreated() != null && (newest == null || message.getCreated().isAfter(newest.getCreated()))) {
+                newest = message;
+            }
+        }
+        return newest;
+    }
+}
@@ -0,0 +1,114 @@
+package com.webex.summarizer.storage;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the messages of a conversation file with the streaming parser, binding one array element at a time.
+ * The other fields of the conversation are small and are kept as a tree until the conversation is asked for.
+ */
+class ConversationFileReader implements MessageReader {
+
+    private static final String MESSAGES_FIELD = "messages";
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private final ObjectNode metadata;
+    private boolean inMessages;
+    private Message next;
+
+    /**
+     * @param in Uncompressed conversation data, which is closed with the reader
+     * @param objectMapper Mapper for the format of the data
+     */
+    ConversationFileReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(in);
+        this.metadata = objectMapper.createObjectNode();
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a conversation object");
+            }
+            next = readNext();
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Message next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Message message = next;
+        try {
+            next = readNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read message", e);
+        }
+        return message;
+    }
+
+    @Override
+    public Conversation getConversation() {
+        try {
+            return objectMapper.treeToValue(metadata, Conversation.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read conversation", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Advance to the next element of the messages array, collecting the fields passed on the way
+     *
+     * @return The message, or null at the end of the conversation
+     */
+    private Message readNext() throws IOException {
+        while (true) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new EOFException("Conversation data ends unexpectedly");
+            }
+            if (inMessages) {
+                if (token == JsonToken.END_ARRAY) {
+                    inMessages = false;
+                    continue;
+                }
+                return objectMapper.readValue(parser, Message.class);
+            }
+            if (token == JsonToken.END_OBJECT) {
+                return null;
+            }
+
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+            if (MESSAGES_FIELD.equals(field) && token == JsonToken.START_ARRAY) {
+                inMessages = true;
+            } else {
+                metadata.set(field, objectMapper.readTree(parser));
+            }
+        }
+    }
+}
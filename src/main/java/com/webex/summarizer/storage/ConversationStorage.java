@@ -1,36 +1,98 @@
 package com.webex.summarizer.storage;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+import com.webex.summarizer.model.Room;
+import com.webex.summarizer.util.ConfigLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 public class ConversationStorage {
     
     private static final Logger logger = LoggerFactory.getLogger(ConversationStorage.class);
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final String CATALOG_FILE = ".catalog.json";
+    private static final String PARTIAL_DIR = ".partial";
+    private static final String SEGMENTS_DIR = ".segments";
     
+    // Storage metadata, checkpoints and room stores are always JSON
     private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
     private final String storageDir;
+    // Keep full room histories in append-only segment stores instead of snapshot files
+    private final boolean segmented;
+    // Format and compression of newly written conversation files
+    private final StorageFormat format;
+    private final Compression compression;
+    private final int compressionLevel;
+    // Loaded on first use, since building it for an existing store reads every file
+    private ConversationCatalog catalog;
     
     public ConversationStorage(String storageDir) {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this(storageDir, false);
+    }
+    
+    public ConversationStorage(String storageDir, boolean segmented) {
+        this(storageDir, segmented, StorageFormat.JSON);
+    }
+    
+    public ConversationStorage(String storageDir, boolean segmented, StorageFormat format) {
+        this(storageDir, segmented, format, Compression.NONE, -1);
+    }
+    
+    public ConversationStorage(String storageDir, boolean segmented, StorageFormat format,
+                               Compression compression, int compressionLevel) {
+        this.objectMapper = StorageFormat.JSON.createMapper();
+        this.smileMapper = StorageFormat.SMILE.createMapper();
         this.storageDir = storageDir;
+        this.segmented = segmented;
+        this.format = format;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
         
         // Create storage directory if it doesn't exist
         createStorageDirectory();
     }
     
+    /**
+     * Open a storage directory with the backend selected by storage.backend: {@code snapshot} writes
+     * a new file per download, {@code segmented} appends to one store per room. Conversation files are
+     * written in the storage.format format and compressed with storage.compression.
+     */
+    public static ConversationStorage open(String storageDir, ConfigLoader configLoader) {
+        String backend = configLoader.getProperty("storage.backend", "snapshot");
+        if (!"snapshot".equals(backend) && !"segmented".equals(backend)) {
+            throw new IllegalArgumentException("Unknown storage.backend '" + backend + "', expected snapshot or segmented");
+        }
+        StorageFormat format = StorageFormat.fromName(configLoader.getProperty("storage.format", "json"));
+        Compression compression = Compression.fromName(configLoader.getProperty("storage.compression", "none"));
+        int compressionLevel = configLoader.getIntProperty("storage.compression.level", -1);
+        return new ConversationStorage(storageDir, "segmented".equals(backend), format, compression, compressionLevel);
+    }
+    
     private void createStorageDirectory() {
         File dir = new File(storageDir);
         if (!dir.exists()) {
@@ -43,48 +105,457 @@ public class ConversationStorage {
         }
     }
     
-    public void saveConversation(Conversation conversation) throws IOException {
+    /**
+     * Save a downloaded conversation, as a new file or into the room's store
+     * 
+     * @return The path of the file or room store it was saved to
+     */
+    public String saveConversation(Conversation conversation) throws IOException {
+        boolean complete = isCompleteSnapshot(conversation);
+        // Date-filtered downloads are not part of a room's history, so they stay separate files
+        String filename = segmented && complete ? saveToRoomStore(conversation) : writeNewFile(conversation);
+        getCatalog().update(conversation, filename, complete);
+        return Paths.get(storageDir, filename).toString();
+    }
+    
+    /**
+     * Add the messages of a full download that the room's store does not have, or has in an older version
+     * 
+     * @return The store's name relative to the storage directory
+     */
+    private String saveToRoomStore(Conversation conversation) throws IOException {
+        String roomId = conversation.getRoom().getId();
+        SegmentedRoomStore store = openRoomStore(roomId);
+        
+        // A full download is compared with the stored history, so edits and missing older messages are kept
+        List<Message> newMessages = store.appendChanged(conversation.getMessages());
+        // A download carries no summary, so only the room and download date replace the stored ones
+        Conversation metadata = conversation;
+        if (store.exists()) {
+            metadata = store.loadMetadata();
+            metadata.setRoom(conversation.getRoom());
+            metadata.setDownloadDate(conversation.getDownloadDate());
+        }
+        store.saveMetadata(metadata);
+        logger.info("Stored {} new or changed messages of room {} in {}", newMessages.size(), roomId, roomStoreName(roomId));
+        return roomStoreName(roomId);
+    }
+    
+    private String writeNewFile(Conversation conversation) throws IOException {
         String roomId = conversation.getRoom().getId();
         String roomName = sanitizeFileName(conversation.getRoom().getTitle());
         String timestamp = LocalDateTime.now().format(DATE_FORMAT);
         
-        String filename = String.format("%s_%s_%s.json", roomName, roomId, timestamp);
+        String filename = String.format("%s_%s_%s%s%s", roomName, roomId, timestamp, format.getExtension(),
+                compression.getExtension());
         Path filePath = Paths.get(storageDir, filename);
         
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(filePath.toFile(), conversation);
+        writeFile(filePath, conversation, format, compression);
         logger.info("Conversation saved to: {}", filePath);
+        return filename;
+    }
+    
+    /**
+     * Result of merging newly downloaded messages into a room's newest snapshot
+     */
+    public static class MergeResult {
+        private final Room room;
+        private final int addedMessages;
+        private final long storedMessages;
+        
+        MergeResult(Room room, int addedMessages, long storedMessages) {
+            this.room = room;
+            this.addedMessages = addedMessages;
+            this.storedMessages = storedMessages;
+        }
+        
+        public Room getRoom() {
+            return room;
+        }
+        
+        /**
+         * Number of merged messages that were not already stored
+         */
+        public int getAddedMessages() {
+            return addedMessages;
+        }
+        
+        /**
+         * Number of messages stored for the room after the merge
+         */
+        public long getStoredMessages() {
+            return storedMessages;
+        }
+    }
+    
+    /**
+     * Get the sync watermark of a room: its newest complete snapshot and the newest message in it, or
+     * the snapshot's download date if the room had no messages
+     * 
+     * @return The room's catalog entry, or null if the room has not been downloaded yet or its snapshot is missing
+     */
+    public ConversationCatalog.Entry getSyncState(String roomId) throws IOException {
+        ConversationCatalog.Entry entry = getCatalog().get(roomId);
+        // Rooms with only date-filtered files have an entry, but nothing to continue from
+        if (entry == null || entry.getLatestFile() == null) {
+            return null;
+        }
+        // Empty snapshots recorded before the catalog kept download dates have no watermark either
+        if (entry.getLastMessageCreated() == null && entry.getDownloadDate() == null) {
+            return null;
+        }
+        if (!Files.exists(Paths.get(storageDir, entry.getLatestFile()))) {
+            logger.warn("Catalog points to missing file {} for room {}", entry.getLatestFile(), roomId);
+            return null;
+        }
+        return entry;
+    }
+    
+    /**
+     * Load the newest complete snapshot of a room
+     * 
+     * @return The conversation, or null if the room has not been downloaded yet
+     */
+    public Conversation loadLatestConversation(String roomId) throws IOException {
+        ConversationCatalog.Entry entry = getSyncState(roomId);
+        return entry != null ? loadConversation(Paths.get(storageDir, entry.getLatestFile()).toString()) : null;
+    }
+    
+    /**
+     * Merge newly downloaded messages into the newest snapshot of a room, in place. Room stores only
+     * append the messages past their watermark without reading the stored history; snapshot files are
+     * loaded and rewritten.
+     * 
+     * @param newMessages Messages downloaded since the snapshot's watermark, newest first
+     */
+    public MergeResult mergeNewMessages(String roomId, List<Message> newMessages) throws IOException {
+        ConversationCatalog.Entry entry = getSyncState(roomId);
+        if (entry == null) {
+            throw new IllegalStateException("No stored snapshot for room " + roomId);
+        }
+        
+        Path filePath = Paths.get(storageDir, entry.getLatestFile());
+        if (Files.isDirectory(filePath)) {
+            SegmentedRoomStore store = openRoomStore(filePath);
+            Conversation metadata = store.loadMetadata();
+            List<Message> added = store.appendNew(newMessages);
+            if (!added.isEmpty()) {
+                metadata.setDownloadDate(ZonedDateTime.now());
+                store.saveMetadata(metadata);
+                // The catalog takes its watermark from the newest of the added messages
+                metadata.setMessages(added);
+                getCatalog().update(metadata, entry.getLatestFile(), true);
+                logger.info("Merged {} new messages into {}", added.size(), filePath);
+            }
+            return new MergeResult(metadata.getRoom(), added.size(), store.getMessageCount());
+        }
+        
+        Conversation conversation = loadConversation(filePath.toString());
+        Set<String> storedIds = new HashSet<>();
+        for (Message message : conversation.getMessages()) {
+            storedIds.add(message.getId());
+        }
+        
+        // Stored messages are newest first, so the new ones go in front
+        List<Message> merged = new ArrayList<>();
+        for (Message message : newMessages) {
+            if (storedIds.add(message.getId())) {
+                merged.add(message);
+            }
+        }
+        int added = merged.size();
+        if (added > 0) {
+            merged.addAll(conversation.getMessages());
+            conversation.setMessages(merged);
+            conversation.setDownloadDate(ZonedDateTime.now());
+            // Rewrite the snapshot through a temporary file so an interrupted sync keeps the old one
+            rewriteFile(filePath, conversation, "sync");
+            getCatalog().update(conversation, entry.getLatestFile(), true);
+            logger.info("Merged {} new messages into {}", added, filePath);
+        }
+        return new MergeResult(conversation.getRoom(), added, conversation.getMessages().size());
+    }
+    
+    /**
+     * Open the download checkpoint of a room, which is empty unless an earlier download was interrupted
+     */
+    public PartialDownload openPartialDownload(String roomId) throws IOException {
+        return new PartialDownload(Paths.get(storageDir, PARTIAL_DIR, roomDirectoryName(roomId)), objectMapper);
+    }
+    
+    private SegmentedRoomStore openRoomStore(String roomId) {
+        return openRoomStore(Paths.get(storageDir, roomStoreName(roomId)));
+    }
+    
+    private SegmentedRoomStore openRoomStore(Path directory) {
+        return new SegmentedRoomStore(directory, objectMapper, SegmentedRoomStore.DEFAULT_SEGMENT_BYTES,
+                SegmentedRoomStore.DEFAULT_MAX_REPLACED_PERCENT, compression, compressionLevel);
+    }
+    
+    private String roomStoreName(String roomId) {
+        String name = Paths.get(SEGMENTS_DIR, roomDirectoryName(roomId)).toString();
+        // Stores created before room IDs were encoded keep their directory
+        String legacyName = Paths.get(SEGMENTS_DIR, roomId.replaceAll("[^a-zA-Z0-9_-]", "_")).toString();
+        if (!Files.exists(Paths.get(storageDir, name)) && Files.exists(Paths.get(storageDir, legacyName))) {
+            return legacyName;
+        }
+        return name;
+    }
+    
+    private static String roomDirectoryName(String roomId) {
+        // Room IDs are base64 and may contain characters that are not safe in file names. Re-encoding
+        // them as URL-safe base64 keeps IDs that differ only in those characters apart.
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(roomId.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private synchronized ConversationCatalog getCatalog() throws IOException {
+        if (catalog == null) {
+            catalog = new ConversationCatalog(Paths.get(storageDir, CATALOG_FILE), objectMapper);
+            if (!catalog.exists() || catalog.isOutdated()) {
+                rebuildCatalog();
+            }
+        }
+        return catalog;
+    }
+    
+    /**
+     * Index the conversation files of a store that was written before the catalog existed
+     */
+    private void rebuildCatalog() throws IOException {
+        File[] files = listConversationFiles();
+        files = files != null ? files : new File[0];
+        // Offer files in the order they were written, so the catalog knows each room's newest file
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+        catalog.clear();
+        Path root = Paths.get(storageDir);
+        int indexed = 0;
+        for (File file : files) {
+            try {
+                Conversation conversation = loadConversation(file.getAbsolutePath());
+                if (conversation.getRoom() != null) {
+                    String name = root.relativize(file.toPath()).toString();
+                    catalog.offer(conversation, name, isCompleteSnapshot(conversation));
+                    indexed++;
+                }
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable conversation file {}: {}", file, e.getMessage());
+            }
+        }
+        catalog.save();
+        logger.info("Built conversation catalog from {} files", indexed);
     }
     
+    /**
+     * Whether a conversation holds a room's full history rather than a date-filtered part of it
+     */
+    private static boolean isCompleteSnapshot(Conversation conversation) {
+        return conversation.getDateFrom() == null && conversation.getDateTo() == null
+                && conversation.getMessages() != null;
+    }
+    
+    /**
+     * Load a conversation file, or a room store directory as listed by {@link #listConversationFiles()}
+     */
     public Conversation loadConversation(String filePath) throws IOException {
-        return objectMapper.readValue(new File(filePath), Conversation.class);
+        File file = new File(filePath);
+        if (file.isDirectory()) {
+            return openRoomStore(file.toPath()).load();
+        }
+        try (InputStream in = Compression.decompress(Files.newInputStream(file.toPath()))) {
+            return mapperFor(StorageFormat.detect(in)).readValue(in, Conversation.class);
+        }
+    }
+    
+    /**
+     * Load a conversation with only the messages that pass a filter. The other messages are read one
+     * at a time and dropped, so memory use depends on the messages kept rather than on the whole history.
+     */
+    public Conversation loadConversation(String filePath, Predicate<Message> filter) throws IOException {
+        File file = new File(filePath);
+        if (file.isDirectory()) {
+            return openRoomStore(file.toPath()).load(filter);
+        }
+        try (MessageReader reader = openMessages(filePath)) {
+            List<Message> messages = new ArrayList<>();
+            while (reader.hasNext()) {
+                Message message = reader.next();
+                if (filter.test(message)) {
+                    messages.add(message);
+                }
+            }
+            Conversation conversation = reader.getConversation();
+            conversation.setMessages(messages);
+            return conversation;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Open a conversation file or room store directory to read its messages one at a time
+     */
+    public MessageReader openMessages(String filePath) throws IOException {
+        File file = new File(filePath);
+        if (file.isDirectory()) {
+            return openRoomStore(file.toPath()).openMessages();
+        }
+        InputStream in = Compression.decompress(Files.newInputStream(file.toPath()));
+        try {
+            return new ConversationFileReader(in, mapperFor(StorageFormat.detect(in)));
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Replace a conversation file through a temporary file, keeping the file's format and compression
+     */
+    private void rewriteFile(Path filePath, Conversation conversation, String tempPrefix) throws IOException {
+        Path tempFile = Files.createTempFile(filePath.toAbsolutePath().getParent(), tempPrefix, ".tmp");
+        writeFile(tempFile, conversation, StorageFormat.detect(filePath), Compression.detect(filePath));
+        Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void writeFile(Path filePath, Conversation conversation, StorageFormat fileFormat,
+                           Compression fileCompression) throws IOException {
+        // Closing the stream, which Jackson does after writing, finishes the compressed data
+        OutputStream out = fileCompression.compress(Files.newOutputStream(filePath), compressionLevel);
+        fileFormat.writer(mapperFor(fileFormat)).writeValue(out, conversation);
     }
     
+    private ObjectMapper mapperFor(StorageFormat fileFormat) {
+        return fileFormat == StorageFormat.SMILE ? smileMapper : objectMapper;
+    }
+    
+    /**
+     * Convert every conversation file that is not in the target format or the configured compression,
+     * and re-index the catalog. Converted files keep their name apart from the extensions, and their
+     * modification time.
+     * 
+     * @return The number of converted files
+     */
+    public int migrate(StorageFormat target) throws IOException {
+        File[] files = listConversationFiles();
+        int migrated = 0;
+        for (File file : files != null ? files : new File[0]) {
+            if (file.isDirectory() || (StorageFormat.detect(file.toPath()) == target
+                    && Compression.detect(file.toPath()) == compression)) {
+                continue;
+            }
+            
+            Conversation conversation = loadConversation(file.getAbsolutePath());
+            String name = Compression.stripExtension(file.getName());
+            String baseName = name.substring(0, name.lastIndexOf('.'));
+            Path migratedFile = Paths.get(storageDir, baseName + target.getExtension() + compression.getExtension());
+            
+            Path tempFile = Files.createTempFile(Paths.get(storageDir), "migrate", ".tmp");
+            writeFile(tempFile, conversation, target, compression);
+            // The catalog orders a room's files by modification time, so keep it
+            Files.setLastModifiedTime(tempFile, Files.getLastModifiedTime(file.toPath()));
+            Files.move(tempFile, migratedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (!migratedFile.equals(file.toPath())) {
+                Files.delete(file.toPath());
+            }
+            migrated++;
+            logger.info("Migrated {} to {}", file, migratedFile);
+        }
+        
+        if (migrated > 0) {
+            // File names changed, so index them again
+            synchronized (this) {
+                catalog = new ConversationCatalog(Paths.get(storageDir, CATALOG_FILE), objectMapper);
+                rebuildCatalog();
+            }
+        }
+        return migrated;
+    }
+    
+    /**
+     * List the conversation files, followed by the directories of room stores
+     */
     public File[] listConversationFiles() {
         File dir = new File(storageDir);
-        return dir.listFiles((d, name) -> name.endsWith(".json"));
+        // Files starting with a dot hold storage metadata such as the catalog
+        File[] files = dir.listFiles((d, name) -> !name.startsWith(".") && isConversationFileName(Compression.stripExtension(name)));
+        File[] stores = new File(dir, SEGMENTS_DIR).listFiles(store -> new File(store, SegmentedRoomStore.METADATA_FILE).exists());
+        if (files == null || stores == null || stores.length == 0) {
+            return files;
+        }
+        
+        File[] all = Arrays.copyOf(files, files.length + stores.length);
+        System.arraycopy(stores, 0, all, files.length, stores.length);
+        return all;
+    }
+    
+    private static boolean isConversationFileName(String name) {
+        return name.endsWith(StorageFormat.JSON.getExtension()) || name.endsWith(StorageFormat.SMILE.getExtension());
     }
     
     private String sanitizeFileName(String name) {
         return name.replaceAll("[\\\\/:*?\"<>|]", "_").trim();
     }
     
-    public void saveSummary(Conversation conversation, String summary) throws IOException {
-        // Update the conversation with the summary
+    /**
+     * Store a summary with the conversation it was generated from. Only the summary and its high-water mark
+     * are written, so a summary of a filtered or older load never replaces the stored messages.
+     * 
+     * @param filePath The file or room store the conversation was loaded from or saved to, or null to save
+     *                 the conversation as a new download first
+     */
+    public void saveSummary(Conversation conversation, String summary, String filePath) throws IOException {
         conversation.setSummary(summary);
+        if (filePath == null) {
+            filePath = saveConversation(conversation);
+        }
         
-        // Find the existing file for this conversation
-        File[] files = listConversationFiles();
-        for (File file : files) {
-            Conversation existingConversation = loadConversation(file.getAbsolutePath());
-            if (existingConversation.getRoom().getId().equals(conversation.getRoom().getId())) {
-                // Update the existing file with the new summary
-                objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, conversation);
-                logger.info("Updated conversation with summary: {}", file.getAbsolutePath());
-                return;
-            }
+        Path path = Paths.get(filePath);
+        Conversation stored;
+        if (Files.isDirectory(path)) {
+            SegmentedRoomStore store = openRoomStore(path);
+            stored = store.loadMetadata();
+            copySummary(conversation, stored);
+            store.saveMetadata(stored);
+            logger.info("Updated room store with summary: {}", path);
+        } else {
+            stored = loadConversation(filePath);
+            copySummary(conversation, stored);
+            rewriteFile(path, stored, "summary");
+            logger.info("Updated conversation with summary: {}", path);
         }
         
-        // If no existing file was found, save as a new file
-        saveConversation(conversation);
+        // Files outside the storage directory, such as ones passed with --file, are not cataloged
+        Path root = Paths.get(storageDir).toAbsolutePath().normalize();
+        Path file = path.toAbsolutePath().normalize();
+        if (file.startsWith(root)) {
+            getCatalog().updateSummary(stored, root.relativize(file).toString());
+        }
+    }
+    
+    private static void copySummary(Conversation from, Conversation to) {
+        to.setSummary(from.getSummary());
+        to.setSummarizedUntil(from.getSummarizedUntil());
+        to.setSummarizedUntilMessageId(from.getSummarizedUntilMessageId());
+    }
+    
+    /**
+     * Find the stored conversation for a room whose summary covers the most recent messages
+     * 
+     * @param roomId The room ID to look up
+     * @return The conversation with the newest summary high-water mark, or null if none exists
+     */
+    public Conversation findLatestSummarizedConversation(String roomId) throws IOException {
+        ConversationCatalog.Entry entry = getCatalog().get(roomId);
+        if (entry == null || entry.getSummaryFile() == null) {
+            return null;
+        }
+        
+        Path filePath = Paths.get(storageDir, entry.getSummaryFile());
+        if (!Files.exists(filePath)) {
+            logger.warn("Catalog points to missing summary file {} for room {}", filePath, roomId);
+            return null;
+        }
+        Conversation conversation = loadConversation(filePath.toString());
+        return conversation.getSummary() != null && conversation.getSummarizedUntil() != null ? conversation : null;
     }
-}
\ No newline at end of file
+}
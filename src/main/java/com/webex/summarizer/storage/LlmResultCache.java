@@ -0,0 +1,146 @@
+package com.webex.summarizer.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persistent, content-addressed cache for LLM results.
+ * Entries are stored as one text file per key and the cache is kept under a size limit
+ * by evicting the least recently used entries.
+ */
+public class LlmResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResultCache.class);
+    private static final String ENTRY_SUFFIX = ".txt";
+
+    // After eviction the cache is trimmed to this fraction of its limit to avoid evicting on every write
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private long currentBytes;
+
+    public LlmResultCache(String cacheDir, long maxBytes) {
+        this.cacheDir = Paths.get(cacheDir);
+        this.maxBytes = maxBytes;
+
+        File dir = this.cacheDir.toFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            logger.error("Failed to create LLM cache directory: {}", cacheDir);
+        }
+
+        this.currentBytes = Arrays.stream(listEntries()).mapToLong(File::length).sum();
+        logger.info("LLM result cache at {} ({} KB used, limit {} KB)", cacheDir, currentBytes / 1024, maxBytes / 1024);
+    }
+
+    /**
+     * Build a cache key by hashing all parts that influence the LLM result
+     */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                // Separator so that ("ab", "c") and ("a", "bc") hash differently
+                digest.update((byte) 0);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Look up a cached result
+     *
+     * @param key The key built with {@link #key(String...)}
+     * @return The cached result, or null if there is none
+     */
+    public String get(String key) {
+        Path entry = entryPath(key);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+
+        try {
+            String value = Files.readString(entry, StandardCharsets.UTF_8);
+            // Touch the entry so eviction treats it as recently used
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return value;
+        } catch (IOException e) {
+            logger.warn("Failed to read LLM cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store a result, evicting old entries if the cache grows beyond its limit
+     */
+    public synchronized void put(String key, String value) {
+        Path entry = entryPath(key);
+        try {
+            long previousSize = Files.exists(entry) ? Files.size(entry) : 0;
+
+            // Write to a temporary file first so readers never see a partial entry
+            Path tempFile = Files.createTempFile(cacheDir, key, ".tmp");
+            Files.writeString(tempFile, value, StandardCharsets.UTF_8);
+            Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            currentBytes += Files.size(entry) - previousSize;
+            if (currentBytes > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write LLM cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove least recently used entries until the cache is below its eviction target
+     */
+    private void evict() {
+        long target = (long) (maxBytes * EVICTION_TARGET_RATIO);
+        File[] entries = listEntries();
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+
+        int evicted = 0;
+        for (File entry : entries) {
+            if (currentBytes <= target) {
+                break;
+            }
+            long size = entry.length();
+            if (entry.delete()) {
+                currentBytes -= size;
+                evicted++;
+            }
+        }
+        logger.info("Evicted {} LLM cache entries ({} KB now used)", evicted, currentBytes / 1024);
+    }
+
+    private File[] listEntries() {
+        File[] entries = cacheDir.toFile().listFiles((d, name) -> name.endsWith(ENTRY_SUFFIX));
+        return entries != null ? entries : new File[0];
+    }
+
+    private Path entryPath(String key) {
+        return cacheDir.resolve(key + ENTRY_SUFFIX);
+    }
+}
@@ -0,0 +1,51 @@
+package com.webex.summarizer.storage;
+
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Messages of a conversation, read one at a time so that only the messages the caller keeps are held in memory.
+ * <p>
+ * Conversation files yield their messages in stored order, newest first. Room stores yield them newest
+ * first by creation time as well, with the newest copy of a message stored again; messages without a
+ * creation time come before the others read so far. Reading failures surface from {@link #hasNext()}
+ * and {@link #next()} as {@link java.io.UncheckedIOException}.
+ */
+public interface MessageReader extends Iterator<Message>, Closeable {
+
+    /**
+     * The conversation the messages belong to. Readers of stored conversations leave out its messages,
+     * and only set the fields stored after the messages once all messages have been read.
+     */
+    Conversation getConversation();
+
+    /**
+     * Read the messages of a conversation that is already in memory
+     */
+    static MessageReader of(Conversation conversation) {
+        Iterator<Message> messages = conversation.getMessages().iterator();
+        return new MessageReader() {
+            @Override
+            public Conversation getConversation() {
+                return conversation;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return messages.hasNext();
+            }
+
+            @Override
+            public Message next() {
+                return messages.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
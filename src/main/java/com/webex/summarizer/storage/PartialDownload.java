@@ -0,0 +1,126 @@
+package com.webex.summarizer.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webex.summarizer.api.DownloadCheckpoint;
+import com.webex.summarizer.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Download checkpoint kept in a directory per room.
+ * <p>
+ * Every completed page is written to its own file, then {@code checkpoint.json} records how many
+ * pages are complete and the cursor of the next one. Both writes are atomic, so after a crash the
+ * checkpoint never refers to a missing or truncated page; a page written after the last checkpoint
+ * update is simply downloaded and written again.
+ */
+public class PartialDownload implements DownloadCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartialDownload.class);
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+    private static final TypeReference<List<Message>> MESSAGE_LIST = new TypeReference<List<Message>>() {};
+
+    /**
+     * Contents of the checkpoint file
+     */
+    public static class State {
+        private int completedPages;
+        private String nextBeforeMessageId;
+
+        public int getCompletedPages() {
+            return completedPages;
+        }
+
+        public void setCompletedPages(int completedPages) {
+            this.completedPages = completedPages;
+        }
+
+        public String getNextBeforeMessageId() {
+            return nextBeforeMessageId;
+        }
+
+        public void setNextBeforeMessageId(String nextBeforeMessageId) {
+            this.nextBeforeMessageId = nextBeforeMessageId;
+        }
+    }
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private State state;
+
+    PartialDownload(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        this.state = Files.exists(checkpointFile)
+                ? objectMapper.readValue(checkpointFile.toFile(), State.class)
+                : new State();
+    }
+
+    @Override
+    public synchronized boolean isResumable() {
+        return state.getCompletedPages() > 0;
+    }
+
+    @Override
+    public synchronized List<Message> getCompletedMessages() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        for (int page = 0; page < state.getCompletedPages(); page++) {
+            messages.addAll(objectMapper.readValue(pageFile(page).toFile(), MESSAGE_LIST));
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized String getNextBeforeMessageId() {
+        return state.getNextBeforeMessageId();
+    }
+
+    @Override
+    public synchronized void pageCompleted(List<Message> messages, String nextBeforeMessageId) throws IOException {
+        Files.createDirectories(directory);
+        int page = state.getCompletedPages();
+        writeAtomically(pageFile(page), messages);
+
+        State next = new State();
+        next.setCompletedPages(page + 1);
+        next.setNextBeforeMessageId(nextBeforeMessageId);
+        writeAtomically(directory.resolve(CHECKPOINT_FILE), next);
+        state = next;
+    }
+
+    /**
+     * Remove the checkpoint once the downloaded conversation has been saved
+     */
+    public synchronized void delete() throws IOException {
+        if (Files.exists(directory)) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+            logger.debug("Removed download checkpoint {}", directory);
+        }
+        state = new State();
+    }
+
+    private Path pageFile(int page) {
+        return directory.resolve(String.format("page-%05d.json", page));
+    }
+
+    private void writeAtomically(Path target, Object value) throws IOException {
+        Path tempFile = Files.createTempFile(directory, "partial", ".tmp");
+        objectMapper.writeValue(tempFile.toFile(), value);
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
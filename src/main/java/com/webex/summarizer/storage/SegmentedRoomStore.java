@@ -0,0 +1,682 @@
+package com.webex.summarizer.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Conversation of one room kept as append-only segment files in a directory.
+ * <p>
+ * Messages are written one JSON document per line, oldest first, to the newest segment until it
+ * reaches its size limit, and {@code room.json} holds the rest of the conversation: the room, its
+ * summary and high-water marks. Storing new messages therefore only writes those messages, however
+ * long the history is. A message appended again replaces its earlier copy when the store is read.
+ * {@code index.json} counts the stored lines and the replaced copies among them, and once too many of
+ * them are replaced the segments are compacted into as few as the size limit allows.
+ * A segment that reached the size limit is no longer appended to, so it is compressed with the configured
+ * compression once the next one is started. The newest segment stays plain for appends.
+ */
+public class SegmentedRoomStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedRoomStore.class);
+    static final String METADATA_FILE = "room.json";
+    static final String INDEX_FILE = "index.json";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    public static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+    public static final int DEFAULT_MAX_REPLACED_PERCENT = 25;
+    private static final Comparator<Message> NEWEST_FIRST =
+            Comparator.comparing(Message::getCreated, Comparator.nullsFirst(Comparator.reverseOrder()));
+
+    /**
+     * Contents of the index file: the newest stored message, which later appends are compared against,
+     * and how many stored lines are copies replaced by a later append
+     */
+    static class Index {
+        private ZonedDateTime newestCreated;
+        private List<String> newestIds = new ArrayList<>();
+        private long lines;
+        private long replaced;
+        private Map<Integer, ZonedDateTime> segmentNewest = new HashMap<>();
+
+        /**
+         * Creation time of the newest stored message
+         */
+        public ZonedDateTime getNewestCreated() {
+            return newestCreated;
+        }
+
+        public void setNewestCreated(ZonedDateTime newestCreated) {
+            this.newestCreated = newestCreated;
+        }
+
+        /**
+         * Ids of the stored messages created at {@link #getNewestCreated()}
+         */
+        public List<String> getNewestIds() {
+            return newestIds;
+        }
+
+        public void setNewestIds(List<String> newestIds) {
+            this.newestIds = newestIds;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public void setLines(long lines) {
+            this.lines = lines;
+        }
+
+        public long getReplaced() {
+            return replaced;
+        }
+
+        public void setReplaced(long replaced) {
+            this.replaced = replaced;
+        }
+
+        /**
+         * Creation time of the newest message in each segment, by segment number. Segments missing here
+         * have to be read to know what they hold.
+         */
+        public Map<Integer, ZonedDateTime> getSegmentNewest() {
+            return segmentNewest;
+        }
+
+        public void setSegmentNewest(Map<Integer, ZonedDateTime> segmentNewest) {
+            this.segmentNewest = segmentNewest;
+        }
+
+        /**
+         * Whether a message is newer than every stored message, so it cannot have been stored yet
+         */
+        boolean isNewer(Message message) {
+            if (newestCreated == null) {
+                return true;
+            }
+            ZonedDateTime created = message.getCreated();
+            return created != null && (created.isAfter(newestCreated)
+                    || (created.isEqual(newestCreated) && !newestIds.contains(message.getId())));
+        }
+
+        /**
+         * Count a line written for a message. Messages that are not newer than the stored ones are
+         * counted as replacing a copy, which they do when edited messages are stored again.
+         */
+        void record(Message message, int segment) {
+            lines++;
+            if (message.getCreated() == null) {
+                return;
+            }
+            segmentNewest.merge(segment, message.getCreated(), (a, b) -> b.isAfter(a) ? b : a);
+            if (!isNewer(message)) {
+                replaced++;
+            } else if (newestCreated == null || message.getCreated().isAfter(newestCreated)) {
+                newestCreated = message.getCreated();
+                newestIds = new ArrayList<>(List.of(message.getId()));
+            } else {
+                newestIds.add(message.getId());
+            }
+        }
+    }
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final long segmentBytes;
+    private final int maxReplacedPercent;
+    private final Compression compression;
+    private final int compressionLevel;
+    // Read on first use
+    private Index index;
+
+    SegmentedRoomStore(Path directory, ObjectMapper objectMapper) {
+        this(directory, objectMapper, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_REPLACED_PERCENT, Compression.NONE, -1);
+    }
+
+    /**
+     * @param maxReplacedPercent Share of the stored lines that may be replaced copies before the store is compacted
+     */
+    SegmentedRoomStore(Path directory, ObjectMapper objectMapper, long segmentBytes, int maxReplacedPercent,
+                       Compression compression, int compressionLevel) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.segmentBytes = segmentBytes;
+        this.maxReplacedPercent = maxReplacedPercent;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean exists() {
+        return Files.exists(directory.resolve(METADATA_FILE));
+    }
+
+    /**
+     * Load the conversation with all stored messages, newest first
+     */
+    public synchronized Conversation load() throws IOException {
+        return load(message -> true);
+    }
+
+    /**
+     * Load the conversation with only the stored messages that pass a filter, newest first
+     */
+    public synchronized Conversation load(Predicate<Message> filter) throws IOException {
+        Conversation conversation = loadMetadata();
+        conversation.setMessages(readMessages(filter));
+        return conversation;
+    }
+
+    /**
+     * Open the store to read its messages newest first, in the order {@link #load()} returns them.
+     * Segments are read newest first, and their messages are held back until no older segment can have
+     * a newer one, which the index records per segment. Messages are mostly appended in the order they
+     * were created, so that is about one segment at a time. Only the ids of messages already read are
+     * kept, to skip their older copies. The store must not be compacted while it is being read.
+     */
+    public synchronized MessageReader openMessages() throws IOException {
+        Conversation metadata = loadMetadata();
+        List<Path> segments = listSegments();
+        Collections.reverse(segments);
+        return new SegmentReader(metadata, segments, index().getSegmentNewest());
+    }
+
+    /**
+     * Load everything about the conversation except its messages
+     */
+    public synchronized Conversation loadMetadata() throws IOException {
+        return objectMapper.readValue(directory.resolve(METADATA_FILE).toFile(), Conversation.class);
+    }
+
+    /**
+     * Store everything about a conversation except its messages
+     */
+    public synchronized void saveMetadata(Conversation conversation) throws IOException {
+        Conversation metadata = new Conversation();
+        metadata.setRoom(conversation.getRoom());
+        metadata.setDownloadDate(conversation.getDownloadDate());
+        metadata.setSummary(conversation.getSummary());
+        metadata.setSummarizedUntilMessageId(conversation.getSummarizedUntilMessageId());
+        metadata.setSummarizedUntil(conversation.getSummarizedUntil());
+
+        Files.createDirectories(directory);
+        // Write to a temporary file first so a crash never leaves truncated metadata behind
+        Path tempFile = Files.createTempFile(directory, "room", ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tempFile.toFile(), metadata);
+        Files.move(tempFile, directory.resolve(METADATA_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Append messages to the newest segment, compacting the store if too many stored lines are then replaced copies
+     *
+     * @param messages Messages to add, newest first as returned by WebEx
+     */
+    public synchronized void append(List<Message> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments();
+        int number = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+        Path segment = segments.isEmpty() ? segmentFile(number, Compression.NONE) : segments.get(segments.size() - 1);
+
+        Index stored = index();
+        List<Message> oldestFirst = new ArrayList<>(messages);
+        Collections.reverse(oldestFirst);
+        int index = 0;
+        while (index < oldestFirst.size()) {
+            if (Files.exists(segment) && (isCompressed(segment) || Files.size(segment) >= segmentBytes)) {
+                if (!isCompressed(segment)) {
+                    seal(segment, number);
+                }
+                segment = segmentFile(++number, Compression.NONE);
+            }
+            int from = index;
+            index = appendLines(segment, oldestFirst, index);
+            for (Message message : oldestFirst.subList(from, index)) {
+                stored.record(message, number);
+            }
+        }
+        saveIndex();
+        logger.debug("Appended {} messages to {}", messages.size(), directory);
+
+        if (stored.getReplaced() * 100 > stored.getLines() * maxReplacedPercent) {
+            compact();
+        }
+    }
+
+    /**
+     * Append only the messages newer than every stored message, so a download that overlaps the stored
+     * history does not need the history read to find what is new. Messages without a creation time are
+     * only stored while the store is empty.
+     *
+     * @param messages Downloaded messages, newest first
+     * @return The messages that were appended
+     */
+    public synchronized List<Message> appendNew(List<Message> messages) throws IOException {
+        Index stored = index();
+        List<Message> newMessages = messages.stream().filter(stored::isNewer).collect(Collectors.toList());
+        append(newMessages);
+        return newMessages;
+    }
+
+    /**
+     * Store a complete download of the room. Messages the store does not have, or has with other contents
+     * because they were edited, are appended, and the copies they replace count towards compaction.
+     * The stored messages are read one segment at a time and compared with the download, which is in
+     * memory already; only the ids of messages read are kept.
+     *
+     * @param messages The room's full history, newest first
+     * @return The messages that were appended
+     */
+    public synchronized List<Message> appendChanged(List<Message> messages) throws IOException {
+        Map<String, Message> changed = new HashMap<>();
+        for (Message message : messages) {
+            changed.put(message.getId(), message);
+        }
+
+        List<Path> segments = listSegments();
+        Collections.reverse(segments);
+        Set<String> readIds = new HashSet<>();
+        for (Path segment : segments) {
+            List<Message> newestFirst = readSegment(segment);
+            Collections.reverse(newestFirst);
+            for (Message stored : newestFirst) {
+                // Only the newest copy of a message is compared, older ones were replaced already
+                if (readIds.add(stored.getId())) {
+                    Message downloaded = changed.get(stored.getId());
+                    if (downloaded != null && sameContent(stored, downloaded)) {
+                        changed.remove(stored.getId());
+                    }
+                }
+            }
+        }
+
+        List<Message> appended = messages.stream()
+                .filter(message -> changed.get(message.getId()) == message)
+                .collect(Collectors.toList());
+        append(appended);
+        return appended;
+    }
+
+    /**
+     * Whether two copies of a message have the same contents. Creation times are compared as instants,
+     * since a stored copy may come back in another zone than the downloaded one.
+     */
+    private boolean sameContent(Message a, Message b) {
+        if (a.getCreated() == null ? b.getCreated() != null
+                : b.getCreated() == null || !a.getCreated().isEqual(b.getCreated())) {
+            return false;
+        }
+        ObjectNode treeA = objectMapper.valueToTree(a);
+        ObjectNode treeB = objectMapper.valueToTree(b);
+        treeA.remove("created");
+        treeB.remove("created");
+        return treeA.equals(treeB);
+    }
+
+    /**
+     * Rewrite the segments without replaced copies of messages.
+     * <p>
+     * The compacted segments are numbered after the existing ones and the old segments are only deleted
+     * once they are complete. A crash in between leaves every message stored twice, which reading
+     * resolves like any other repeated message.
+     */
+    public synchronized void compact() throws IOException {
+        List<Path> oldSegments = listSegments();
+        if (oldSegments.isEmpty()) {
+            return;
+        }
+
+        List<Message> oldestFirst = new ArrayList<>(readMessages(message -> true));
+        Collections.reverse(oldestFirst);
+        int number = segmentNumber(oldSegments.get(oldSegments.size() - 1));
+        Index compacted = new Index();
+        int index = 0;
+        while (index < oldestFirst.size()) {
+            Path tempFile = Files.createTempFile(directory, "segment", ".tmp");
+            int from = index;
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                index = writeLines(out, oldestFirst, index, 0);
+            }
+            for (Message message : oldestFirst.subList(from, index)) {
+                compacted.record(message, number + 1);
+            }
+            Path segment = segmentFile(++number, Compression.NONE);
+            Files.move(tempFile, segment, StandardCopyOption.ATOMIC_MOVE);
+            // Full segments are sealed like on append, the last one takes further appends
+            if (index < oldestFirst.size()) {
+                seal(segment, number);
+            }
+        }
+        for (Path segment : oldSegments) {
+            Files.delete(segment);
+        }
+        this.index = compacted;
+        saveIndex();
+        logger.info("Compacted {} segments of {} into {} messages", oldSegments.size(), directory, oldestFirst.size());
+    }
+
+    /**
+     * Compress a full segment, which is no longer appended to. The plain file is only deleted once the
+     * compressed one is complete; until then reading skips the messages repeated in both.
+     */
+    private void seal(Path segment, int number) throws IOException {
+        if (compression == Compression.NONE) {
+            return;
+        }
+        Path tempFile = Files.createTempFile(directory, "segment", ".tmp");
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = compression.compress(Files.newOutputStream(tempFile), compressionLevel)) {
+            in.transferTo(out);
+        }
+        Files.move(tempFile, segmentFile(number, compression), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(segment);
+    }
+
+    /**
+     * Number of segment files, which grows with the stored history
+     */
+    public synchronized int getSegmentCount() throws IOException {
+        return listSegments().size();
+    }
+
+    /**
+     * Number of stored messages, not counting replaced copies
+     */
+    public synchronized long getMessageCount() throws IOException {
+        Index stored = index();
+        return stored.getLines() - stored.getReplaced();
+    }
+
+    /**
+     * The index of the store, rebuilt from the segments if the store was written before it had one
+     */
+    private Index index() throws IOException {
+        if (index == null) {
+            Path file = directory.resolve(INDEX_FILE);
+            if (Files.exists(file)) {
+                index = objectMapper.readValue(file.toFile(), Index.class);
+            } else {
+                index = new Index();
+                List<Path> segments = listSegments();
+                if (!segments.isEmpty()) {
+                    for (Path segment : segments) {
+                        for (Message message : readSegment(segment)) {
+                            index.record(message, segmentNumber(segment));
+                        }
+                    }
+                    saveIndex();
+                    logger.info("Built index of {} from {} segments", directory, segments.size());
+                }
+            }
+        }
+        return index;
+    }
+
+    private void saveIndex() throws IOException {
+        // Write to a temporary file first so a crash never leaves a truncated index behind
+        Path tempFile = Files.createTempFile(directory, "index", ".tmp");
+        objectMapper.writeValue(tempFile.toFile(), index);
+        Files.move(tempFile, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Append messages as lines to an uncompressed segment until it reaches the segment size
+     *
+     * @return The index of the first message that was not written
+     */
+    private int appendLines(Path file, List<Message> messages, int from) throws IOException {
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        boolean tornLine = size > 0 && !endsWithNewline(file);
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (tornLine) {
+                // Keep the partial line of an interrupted append from swallowing the next message
+                out.write('\n');
+                size++;
+            }
+            return writeLines(out, messages, from, size);
+        }
+    }
+
+    /**
+     * Write messages as lines until the uncompressed size reaches the segment size
+     *
+     * @return The index of the first message that was not written
+     */
+    private int writeLines(OutputStream out, List<Message> messages, int from, long size) throws IOException {
+        int index = from;
+        while (index < messages.size() && (index == from || size < segmentBytes)) {
+            byte[] line = objectMapper.writeValueAsBytes(messages.get(index++));
+            out.write(line);
+            out.write('\n');
+            size += line.length + 1;
+        }
+        return index;
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Read every segment, keeping the last copy of each message if it passes the filter, newest first
+     */
+    private List<Message> readMessages(Predicate<Message> filter) throws IOException {
+        Map<String, Message> messagesById = new LinkedHashMap<>();
+        for (Path segment : listSegments()) {
+            for (Message message : readSegment(segment)) {
+                if (filter.test(message)) {
+                    messagesById.put(message.getId(), message);
+                } else {
+                    // A later copy that fails the filter replaces an earlier one that passed
+                    messagesById.remove(message.getId());
+                }
+            }
+        }
+
+        List<Message> messages = new ArrayList<>(messagesById.values());
+        // Segments hold messages oldest first; reversing first keeps that order among equal timestamps
+        Collections.reverse(messages);
+        messages.sort(NEWEST_FIRST);
+        return messages;
+    }
+
+    /**
+     * Read the messages of one segment, oldest first
+     */
+    private List<Message> readSegment(Path segment) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Compression.decompress(Files.newInputStream(segment)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    messages.add(objectMapper.readValue(line, Message.class));
+                } catch (IOException e) {
+                    // An append interrupted by a crash leaves a partial line; its message is downloaded again
+                    logger.warn("Skipping unreadable line in {}: {}", segment, e.getMessage());
+                }
+            }
+        }
+        return messages;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && Compression.stripExtension(name).endsWith(SEGMENT_SUFFIX);
+            }).sorted(Comparator.comparingInt(SegmentedRoomStore::segmentNumber)).collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentFile(int number, Compression segmentCompression) {
+        return directory.resolve(String.format("%s%06d%s%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX,
+                segmentCompression.getExtension()));
+    }
+
+    private static boolean isCompressed(Path segment) {
+        String name = segment.getFileName().toString();
+        return !Compression.stripExtension(name).equals(name);
+    }
+
+    private static int segmentNumber(Path segment) {
+        String name = Compression.stripExtension(segment.getFileName().toString());
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Reads the segments newest first and merges their messages by creation time
+     */
+    private class SegmentReader implements MessageReader {
+        private final Conversation metadata;
+        private final List<Path> segments;
+        // Newest creation time in the segments from each position on, where those are all indexed
+        private final ZonedDateTime[] newestFrom;
+        private final boolean[] indexedFrom;
+        private final Set<String> readIds = new HashSet<>();
+        // Messages read but not returned yet, newest first and in reading order among equal times
+        private final PriorityQueue<Pending> pending = new PriorityQueue<>(
+                Comparator.comparing((Pending p) -> p.message, NEWEST_FIRST).thenComparingLong(p -> p.sequence));
+        private long sequence;
+        private int position;
+        private Message next;
+
+        /**
+         * @param segments Segment files, newest first
+         * @param segmentNewest Newest creation time of the indexed segments, by segment number
+         */
+        SegmentReader(Conversation metadata, List<Path> segments, Map<Integer, ZonedDateTime> segmentNewest)
+                throws IOException {
+            this.metadata = metadata;
+            this.segments = segments;
+            this.newestFrom = new ZonedDateTime[segments.size() + 1];
+            this.indexedFrom = new boolean[segments.size() + 1];
+            indexedFrom[segments.size()] = true;
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                int number = segmentNumber(segments.get(i));
+                ZonedDateTime newest = segmentNewest.get(number);
+                newestFrom[i] = newestFrom[i + 1] == null || (newest != null && newest.isAfter(newestFrom[i + 1]))
+                        ? newest : newestFrom[i + 1];
+                indexedFrom[i] = indexedFrom[i + 1] && segmentNewest.containsKey(number);
+            }
+            this.next = readNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Message next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Message message = next;
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read message from " + directory, e);
+            }
+            return message;
+        }
+
+        @Override
+        public Conversation getConversation() {
+            return metadata;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private Message readNext() throws IOException {
+            while (true) {
+                Pending newest = pending.peek();
+                if (newest != null && isSettled(newest.message)) {
+                    return pending.poll().message;
+                }
+                if (position == segments.size()) {
+                    return null;
+                }
+                List<Message> newestFirst = readSegment(segments.get(position++));
+                Collections.reverse(newestFirst);
+                for (Message message : newestFirst) {
+                    if (readIds.add(message.getId())) {
+                        pending.add(new Pending(message, sequence++));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Whether none of the segments not read yet can hold a message that comes before this one
+         */
+        private boolean isSettled(Message message) {
+            if (position == segments.size() || message.getCreated() == null) {
+                return true;
+            }
+            return indexedFrom[position]
+                    && (newestFrom[position] == null || !message.getCreated().isBefore(newestFrom[position]));
+        }
+    }
+
+    private static class Pending {
+        final Message message;
+        final long sequence;
+
+        Pending(Message message, long sequence) {
+            this.message = message;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.webex.summarizer.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Serialization format of stored conversation files.
+ * <p>
+ * {@code json} is readable pretty-printed JSON. {@code smile} is Jackson's binary JSON, which is
+ * smaller and faster to parse. Files are recognized by their first bytes when loading, so a
+ * storage directory can hold both, for example while it is being migrated.
+ */
+public enum StorageFormat {
+    JSON("json", ".json"),
+    SMILE("smile", ".smile");
+
+    // Every Smile document starts with ":)\n"
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final String name;
+    private final String extension;
+
+    StorageFormat(String name, String extension) {
+        this.name = name;
+        this.extension = extension;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * File name extension of conversation files, including the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public static StorageFormat fromName(String name) {
+        for (StorageFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown storage format '" + name + "', expected json or smile");
+    }
+
+    /**
+     * Detect the format of a stored file from its first bytes, after any compression
+     */
+    public static StorageFormat detect(Path file) throws IOException {
+        try (InputStream in = Compression.decompress(Files.newInputStream(file))) {
+            return detect(in);
+        }
+    }
+
+    /**
+     * Detect the format of a stream without consuming it
+     *
+     * @param in A stream that supports mark and reset
+     */
+    public static StorageFormat detect(InputStream in) throws IOException {
+        in.mark(SMILE_HEADER.length);
+        byte[] header = in.readNBytes(SMILE_HEADER.length);
+        in.reset();
+        return Arrays.equals(header, SMILE_HEADER) ? SMILE : JSON;
+    }
+
+    ObjectMapper createMapper() {
+        ObjectMapper mapper = this == SMILE ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        return mapper;
+    }
+
+    ObjectWriter writer(ObjectMapper mapper) {
+        return this == JSON ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer();
+    }
+}
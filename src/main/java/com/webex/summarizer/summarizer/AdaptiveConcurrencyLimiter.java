@@ -0,0 +1,344 @@
+package com.webex.summarizer.summarizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelNotReadyException;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many Bedrock requests are in flight and adapts that limit to what the service accepts.
+ * <p>
+ * The limit follows AIMD: it grows by about one request per round trip while requests run at the
+ * limit and their latency stays close to the lowest recently observed latency, and it is halved when
+ * Bedrock throttles. Throttled and transient failures are retried with jittered exponential backoff.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    // Latency up to this multiple of the baseline still counts as flat
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.5;
+    // Throttles arriving together are one congestion signal, so the limit is cut at most once per window
+    private static final long DECREASE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // The latency baseline is the minimum over this many samples, so it can rise again when load changes
+    private static final int LATENCY_WINDOW_SAMPLES = 50;
+
+    /**
+     * A call against Bedrock that may fail with an IOException
+     */
+    public interface Call<T> {
+        T execute() throws IOException;
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private double limit;
+    private int inFlight;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    private long baselineLatencyNanos = Long.MAX_VALUE;
+    private long windowMinLatencyNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecreaseNanos;
+
+    private long throttledCount;
+    private long retryCount;
+    private long rejectedCount;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxRetries,
+                                      long baseBackoffMillis, long maxBackoffMillis) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - DECREASE_WINDOW_NANOS;
+    }
+
+    /**
+     * Run a blocking call within the limit, retrying throttled and transient failures
+     */
+    public <T> T execute(Call<T> call) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            acquire();
+            long start = System.nanoTime();
+            boolean atLimit = isAtLimit();
+            try {
+                T result = call.execute();
+                onSuccess(System.nanoTime() - start, atLimit);
+                return result;
+            } catch (RuntimeException | IOException e) {
+                if (!shouldRetry(e, attempt)) {
+                    throw e;
+                }
+            } finally {
+                release();
+            }
+            // Back off without holding a slot
+            sleep(backoffMillis(attempt));
+        }
+    }
+
+    /**
+     * Run a non-blocking call within the limit, retrying throttled and transient failures.
+     * Waiting for a free slot and for backoff delays does not block any thread.
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(call, 0, result);
+        return result;
+    }
+
+    private <T> void attemptAsync(Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+        acquireAsync().thenRun(() -> {
+            long start = System.nanoTime();
+            boolean atLimit = isAtLimit();
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    onSuccess(System.nanoTime() - start, atLimit);
+                    release();
+                    result.complete(value);
+                    return;
+                }
+
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                boolean retry = shouldRetry(cause, attempt);
+                release();
+                if (retry) {
+                    CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS)
+                            .execute(() -> attemptAsync(call, attempt + 1, result));
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        });
+    }
+
+    /**
+     * Record the outcome of a failed attempt and decide whether it should be retried
+     */
+    private boolean shouldRetry(Throwable error, int attempt) {
+        boolean overloaded = isOverloaded(error);
+        if (overloaded) {
+            onOverload();
+        }
+        if (!isRetryable(error)) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (attempt >= maxRetries) {
+                if (overloaded) {
+                    rejectedCount++;
+                }
+                logger.warn("Bedrock request failed after {} retries: {}", attempt, error.getMessage());
+                return false;
+            }
+            retryCount++;
+        }
+        logger.info("Bedrock request failed ({}), retrying (attempt {} of {})", error.getMessage(), attempt + 1, maxRetries);
+        return true;
+    }
+
+    private void acquire() throws IOException {
+        CompletableFuture<Void> slot = acquireAsync();
+        try {
+            slot.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(slot);
+            throw new InterruptedIOException("Interrupted while waiting for a Bedrock request slot");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed waiting for a Bedrock request slot", e.getCause());
+        }
+    }
+
+    private synchronized CompletableFuture<Void> acquireAsync() {
+        if (waiters.isEmpty() && inFlight < currentLimit()) {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> slot = new CompletableFuture<>();
+        waiters.add(slot);
+        return slot;
+    }
+
+    /**
+     * Give up a slot that is no longer wanted, whether or not it has been granted yet
+     */
+    private void abandon(CompletableFuture<Void> slot) {
+        synchronized (this) {
+            if (waiters.remove(slot)) {
+                return;
+            }
+        }
+        release();
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        admitWaiters();
+    }
+
+    /**
+     * Hand free slots to waiting requests. Waiters are completed outside the lock because their
+     * continuations start the next request on this thread.
+     */
+    private void admitWaiters() {
+        List<CompletableFuture<Void>> admitted = new ArrayList<>();
+        synchronized (this) {
+            while (!waiters.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                admitted.add(waiters.poll());
+            }
+        }
+        for (CompletableFuture<Void> slot : admitted) {
+            slot.complete(null);
+        }
+    }
+
+    private void onSuccess(long latencyNanos, boolean atLimit) {
+        synchronized (this) {
+            windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+            if (++windowSamples >= LATENCY_WINDOW_SAMPLES) {
+                baselineLatencyNanos = windowMinLatencyNanos;
+                windowMinLatencyNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            baselineLatencyNanos = Math.min(baselineLatencyNanos, latencyNanos);
+
+            // Only grow when the limit is actually being used and latency has not started queueing up
+            if (atLimit && latencyNanos <= baselineLatencyNanos * LATENCY_TOLERANCE && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        admitWaiters();
+    }
+
+    private synchronized void onOverload() {
+        throttledCount++;
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos >= DECREASE_WINDOW_NANOS) {
+            double previous = limit;
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            lastDecreaseNanos = now;
+            logger.info("Bedrock throttled requests, concurrency limit {} -> {}", currentLimit(previous), currentLimit());
+        }
+    }
+
+    private synchronized boolean isAtLimit() {
+        return inFlight >= currentLimit();
+    }
+
+    private int currentLimit() {
+        return currentLimit(limit);
+    }
+
+    private static int currentLimit(double limit) {
+        return (int) Math.floor(limit);
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay up to the capped exponential bound
+     */
+    long backoffMillis(int attempt) {
+        long bound = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private static boolean isOverloaded(Throwable error) {
+        if (error instanceof ThrottlingException) {
+            return true;
+        }
+        if (error instanceof AwsServiceException) {
+            AwsServiceException serviceException = (AwsServiceException) error;
+            return serviceException.isThrottlingException() || serviceException.statusCode() == 503;
+        }
+        return false;
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (isOverloaded(error) || error instanceof ModelNotReadyException || error instanceof SdkClientException) {
+            return true;
+        }
+        return error instanceof AwsServiceException && ((AwsServiceException) error).statusCode() >= 500;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off from Bedrock");
+        }
+    }
+
+    public synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    /**
+     * Highest limit the additive increase can reach
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Number of responses that signalled Bedrock was overloaded
+     */
+    public synchronized long getThrottledCount() {
+        return throttledCount;
+    }
+
+    public synchronized long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Number of requests that were still throttled after all retries
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("limit=%d, inFlight=%d, throttled=%d, retries=%d, rejected=%d",
+                currentLimit(), inFlight, throttledCount, retryCount, rejectedCount);
+    }
+}
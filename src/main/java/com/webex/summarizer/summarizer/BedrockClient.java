@@ -8,34 +8,88 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 public class BedrockClient {
 
     private static final Logger logger = LoggerFactory.getLogger(BedrockClient.class);
+    
+    // Maximum open connections in the shared non-blocking connection pool
+    private static final int ASYNC_MAX_CONNECTIONS = 200;
+    
+    // Netty connection pool shared by every async client, so summarizing many rooms at once
+    // multiplexes all in-flight requests over one pool and a handful of event loop threads
+    private static SdkAsyncHttpClient sharedAsyncHttpClient;
+    
+    // Adaptive limits on in-flight requests and retry settings for throttled requests
+    private static final int LIMITER_INITIAL_LIMIT = 4;
+    private static final int LIMITER_MAX_LIMIT = 64;
+    private static final int MAX_RETRIES = 6;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 20000;
+    
+    // Bedrock quotas apply per region and model, so clients for the same model share one limiter
+    // and one token budget
+    private static final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private static final Map<String, TokenBudgetScheduler> tokenBudgets = new ConcurrentHashMap<>();
+    
+    public static final int DEFAULT_MAX_OUTPUT_TOKENS = 4096;
+    // Generation limits of the legacy model families; requests above them fail validation
+    private static final int LLAMA2_MAX_OUTPUT_TOKENS = 2048;
+    private static final int TITAN_MAX_OUTPUT_TOKENS = 4096;
+    
+    /**
+     * How model requests are executed
+     */
+    public enum Engine {
+        SYNC,   // Blocking client, one thread per in-flight request
+        ASYNC   // Non-blocking client on the shared Netty connection pool
+    }
+    
     private final String awsProfile;
     private final Region awsRegion;
     private final String modelId;
     private final ObjectMapper objectMapper;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private int maxOutputTokens = DEFAULT_MAX_OUTPUT_TOKENS;
+    private TokenCounter tokenCounter = new BpeTokenCounter();
+    // Only set when a tokens-per-minute quota is configured
+    private TokenBudgetScheduler tokenBudget;
     
     private BedrockRuntimeClient runtimeClient;
+    // Used for streaming and the async engine, so it is created on first use
+    private BedrockRuntimeAsyncClient asyncClient;
 
     public BedrockClient(String awsProfile, String awsRegion, String modelId) {
         this.awsProfile = awsProfile != null ? awsProfile : "default";
         this.awsRegion = Region.of(awsRegion != null ? awsRegion : "us-east-1");
         this.modelId = modelId;
         this.objectMapper = new ObjectMapper();
+        this.limiter = limiters.computeIfAbsent(quotaKey(), key ->
+                new AdaptiveConcurrencyLimiter(LIMITER_INITIAL_LIMIT, 1, LIMITER_MAX_LIMIT, MAX_RETRIES,
+                        BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS));
         
         initializeClients();
     }
@@ -54,15 +108,127 @@ public class BedrockClient {
                     .connectionTimeout(java.time.Duration.ofMinutes(5))
                     .connectionAcquisitionTimeout(java.time.Duration.ofMinutes(5))
                     .build())
+                // Retries are handled by the limiter so that throttling also lowers the concurrency limit
                 .overrideConfiguration(config -> 
                     config.apiCallTimeout(java.time.Duration.ofMinutes(15))
-                         .apiCallAttemptTimeout(java.time.Duration.ofMinutes(10)))
+                         .apiCallAttemptTimeout(java.time.Duration.ofMinutes(10))
+                         .retryPolicy(RetryPolicy.none()))
                 .build();
                 
         logger.info("AWS Bedrock runtime client initialized with profile: {} and region: {} (socket timeout: 10 minutes, API timeout: 15 minutes)",
                    awsProfile, awsRegion);
     }
     
+    private static synchronized SdkAsyncHttpClient getSharedAsyncHttpClient() {
+        if (sharedAsyncHttpClient == null) {
+            sharedAsyncHttpClient = NettyNioAsyncHttpClient.builder()
+                    .maxConcurrency(ASYNC_MAX_CONNECTIONS)
+                    .readTimeout(java.time.Duration.ofMinutes(10))
+                    .connectionTimeout(java.time.Duration.ofMinutes(5))
+                    .connectionAcquisitionTimeout(java.time.Duration.ofMinutes(5))
+                    .build();
+            logger.info("Shared Bedrock async HTTP client initialized (max connections: {})", ASYNC_MAX_CONNECTIONS);
+        }
+        return sharedAsyncHttpClient;
+    }
+    
+    private synchronized BedrockRuntimeAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            asyncClient = BedrockRuntimeAsyncClient.builder()
+                    .region(awsRegion)
+                    .credentialsProvider(ProfileCredentialsProvider.builder()
+                        .profileName(awsProfile)
+                        .build())
+                    .httpClient(getSharedAsyncHttpClient())
+                    .overrideConfiguration(config -> 
+                        config.apiCallTimeout(java.time.Duration.ofMinutes(15))
+                             .apiCallAttemptTimeout(java.time.Duration.ofMinutes(10))
+                             .retryPolicy(RetryPolicy.none()))
+                    .build();
+            logger.info("AWS Bedrock async client initialized with profile: {} and region: {}", awsProfile, awsRegion);
+        }
+        return asyncClient;
+    }
+    
+    public String getModelId() {
+        return modelId;
+    }
+    
+    /**
+     * The limiter shared by all clients for this region and model, exposing its limit and throttling counts
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+    
+    /**
+     * Set the maximum number of tokens the model may generate per request
+     */
+    public void setMaxOutputTokens(int maxOutputTokens) {
+        this.maxOutputTokens = maxOutputTokens;
+    }
+    
+    public int getMaxOutputTokens() {
+        return maxOutputTokens;
+    }
+    
+    /**
+     * The number of tokens actually requested, capped at what this model family can generate
+     */
+    private int outputTokenLimit() {
+        if (modelId.contains("meta.llama2")) {
+            return Math.min(maxOutputTokens, LLAMA2_MAX_OUTPUT_TOKENS);
+        } else if (modelId.contains("amazon.titan")) {
+            return Math.min(maxOutputTokens, TITAN_MAX_OUTPUT_TOKENS);
+        }
+        return maxOutputTokens;
+    }
+    
+    /**
+     * Set the token counter used to estimate how much of the token budget a prompt needs
+     */
+    public void setTokenCounter(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+    
+    /**
+     * Keep requests for this region and model within a tokens-per-minute quota
+     * 
+     * @param tokensPerMinute The quota for input plus output tokens, or 0 for no limit
+     */
+    public void setTokensPerMinute(long tokensPerMinute) {
+        if (tokensPerMinute <= 0) {
+            tokenBudget = null;
+            return;
+        }
+        tokenBudget = tokenBudgets.compute(quotaKey(), (key, existing) -> {
+            if (existing == null) {
+                return new TokenBudgetScheduler(tokensPerMinute);
+            }
+            existing.setTokensPerMinute(tokensPerMinute);
+            return existing;
+        });
+        logger.info("Bedrock token budget for {}: {} tokens per minute", modelId, tokensPerMinute);
+    }
+    
+    /**
+     * The token budget shared by all clients for this region and model, or null if there is no quota
+     */
+    public TokenBudgetScheduler getTokenBudget() {
+        return tokenBudget;
+    }
+    
+    private String quotaKey() {
+        return awsRegion.id() + "/" + modelId;
+    }
+    
+    /**
+     * Tokens a completed request used: its prompt plus what was generated, or nothing if it failed
+     */
+    private long usedTokens(int inputTokens, String generatedText) {
+        return generatedText == null ? 0 : inputTokens + tokenCounter.countTokens(generatedText);
+    }
+    
     public List<Map<String, String>> listAvailableModels() {
         // Since we can't use ListFoundationModels API, we'll return a hardcoded list of common models
         List<Map<String, String>> models = new ArrayList<>();
@@ -132,6 +298,23 @@ public class BedrockClient {
     }
     
     public String generateText(String prompt) throws IOException {
+        TokenBudgetScheduler budget = tokenBudget;
+        if (budget == null) {
+            return invokeText(prompt);
+        }
+        
+        int inputTokens = tokenCounter.countTokens(prompt);
+        TokenBudgetScheduler.Reservation reservation = budget.reserve(inputTokens + outputTokenLimit());
+        String text = null;
+        try {
+            text = invokeText(prompt);
+            return text;
+        } finally {
+            budget.release(reservation, usedTokens(inputTokens, text));
+        }
+    }
+    
+    private String invokeText(String prompt) throws IOException {
         if (isModernClaudeModel(modelId)) {
             // Use Messages API for newer Claude models (Claude 3 and later)
             return generateTextWithMessagesAPI(prompt);
@@ -141,6 +324,149 @@ public class BedrockClient {
         }
     }
     
+    /**
+     * Generates text without blocking the calling thread.
+     * The request runs on the shared non-blocking connection pool.
+     * 
+     * @param prompt The prompt to send
+     * @return A future completed with the generated text, or exceptionally with an IOException
+     *         wrapped in a CompletionException
+     */
+    public CompletableFuture<String> generateTextAsync(String prompt) {
+        boolean modern = isModernClaudeModel(modelId);
+        logger.info("Using async {} API with model: {}", modern ? "Messages" : "legacy", modelId);
+        
+        InvokeModelRequest request;
+        try {
+            request = InvokeModelRequest.builder()
+                    .modelId(modelId)
+                    .contentType("application/json")
+                    .accept("application/json")
+                    .body(SdkBytes.fromUtf8String(modern ? buildMessagesApiRequestBody(prompt) : buildLegacyRequestBody(prompt)))
+                    .build();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        TokenBudgetScheduler budget = tokenBudget;
+        if (budget == null) {
+            return invokeTextAsync(request, modern);
+        }
+        
+        // Waiting for budget happens before taking a concurrency slot, so queued work holds no slot
+        int inputTokens = tokenCounter.countTokens(prompt);
+        return budget.reserveAsync(inputTokens + outputTokenLimit()).thenCompose(reservation ->
+                invokeTextAsync(request, modern).whenComplete((text, error) ->
+                        budget.release(reservation, usedTokens(inputTokens, text))));
+    }
+    
+    private CompletableFuture<String> invokeTextAsync(InvokeModelRequest request, boolean modern) {
+        return limiter.executeAsync(() -> getAsyncClient().invokeModel(request)).thenApply(response -> {
+            String responseBody = response.body().asUtf8String();
+            try {
+                return modern ? parseMessagesApiResponse(responseBody) : parseModelResponse(responseBody);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Generates text and delivers it to a callback as the model produces it.
+     * 
+     * @param prompt The prompt to send
+     * @param onText Receives each piece of generated text as it arrives
+     * @return The complete generated text
+     * @throws IOException If the request fails
+     */
+    public String generateTextStreaming(String prompt, Consumer<String> onText) throws IOException {
+        logger.info("Using streaming {} API with model: {}", isModernClaudeModel(modelId) ? "Messages" : "legacy", modelId);
+        
+        String requestBody = isModernClaudeModel(modelId)
+                ? buildMessagesApiRequestBody(prompt)
+                : buildLegacyRequestBody(prompt);
+        
+        InvokeModelWithResponseStreamRequest request = InvokeModelWithResponseStreamRequest.builder()
+                .modelId(modelId)
+                .contentType("application/json")
+                .accept("application/json")
+                .body(SdkBytes.fromUtf8String(requestBody))
+                .build();
+        
+        StringBuilder responseText = new StringBuilder();
+        InvokeModelWithResponseStreamResponseHandler handler = InvokeModelWithResponseStreamResponseHandler.builder()
+                .onResponse((InvokeModelWithResponseStreamResponse response) ->
+                    logger.debug("Streaming response started (content type: {})", response.contentType()))
+                .subscriber(InvokeModelWithResponseStreamResponseHandler.Visitor.builder()
+                    .onChunk(chunk -> {
+                        String text = parseStreamChunk(chunk.bytes().asUtf8String());
+                        if (!text.isEmpty()) {
+                            responseText.append(text);
+                            onText.accept(text);
+                        }
+                    })
+                    .build())
+                .build();
+        
+        TokenBudgetScheduler budget = tokenBudget;
+        int inputTokens = budget != null ? tokenCounter.countTokens(prompt) : 0;
+        TokenBudgetScheduler.Reservation reservation = budget != null ? budget.reserve(inputTokens + outputTokenLimit()) : null;
+        String text = null;
+        try {
+            text = limiter.execute(() -> {
+                try {
+                    getAsyncClient().invokeModelWithResponseStream(request, handler).join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof UncheckedIOException) {
+                        throw ((UncheckedIOException) cause).getCause();
+                    }
+                    // Only retry while nothing has been passed on, otherwise the text would be repeated
+                    if (cause instanceof SdkException && responseText.length() == 0) {
+                        throw (SdkException) cause;
+                    }
+                    throw new IOException("Streaming request to Bedrock failed: " + cause.getMessage(), cause);
+                }
+                return responseText.toString();
+            });
+            return text;
+        } catch (SdkException e) {
+            throw new IOException("Streaming request to Bedrock failed: " + e.getMessage(), e);
+        } finally {
+            if (budget != null) {
+                budget.release(reservation, usedTokens(inputTokens, text));
+            }
+        }
+    }
+    
+    /**
+     * Extracts the generated text from one event of a streaming response
+     */
+    private String parseStreamChunk(String chunkJson) {
+        JsonNode chunkNode;
+        try {
+            chunkNode = objectMapper.readTree(chunkJson);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse streaming response chunk", e);
+        }
+        
+        if (isModernClaudeModel(modelId)) {
+            // Messages API streams typed events; only content deltas carry text
+            if ("content_block_delta".equals(chunkNode.path("type").asText())) {
+                return chunkNode.path("delta").path("text").asText("");
+            }
+            return "";
+        } else if (modelId.contains("anthropic.claude")) {
+            return chunkNode.path("completion").asText("");
+        } else if (modelId.contains("amazon.titan")) {
+            return chunkNode.path("outputText").asText("");
+        } else if (modelId.contains("meta.llama2")) {
+            return chunkNode.path("generation").asText("");
+        } else {
+            throw new IllegalArgumentException("Unsupported model ID for response parsing: " + modelId);
+        }
+    }
+    
     /**
      * Determines if the model is a modern Claude model (Claude 3+ or newer us.anthropic format)
      * that supports the Messages API.
@@ -159,6 +485,46 @@ public class BedrockClient {
     private String generateTextWithMessagesAPI(String prompt) throws IOException {
         logger.info("Using Messages API with model: {}", modelId);
         
+        String requestBodyJson = buildMessagesApiRequestBody(prompt);
+        
+        InvokeModelRequest request = InvokeModelRequest.builder()
+                .modelId(modelId)
+                .contentType("application/json")
+                .accept("application/json")
+                .body(SdkBytes.fromUtf8String(requestBodyJson))
+                .build();
+                
+        InvokeModelResponse response = limiter.execute(() -> runtimeClient.invokeModel(request));
+        return parseMessagesApiResponse(response.body().asUtf8String());
+    }
+    
+    /**
+     * Parses a Messages API response and joins its text content
+     */
+    private String parseMessagesApiResponse(String responseBody) throws IOException {
+        // Parse the response for modern Claude models
+        JsonNode responseJson = objectMapper.readTree(responseBody);
+        
+        JsonNode contentNode = responseJson.path("content");
+        if (contentNode.isArray() && contentNode.size() > 0) {
+            StringBuilder responseText = new StringBuilder();
+            
+            for (JsonNode contentItem : contentNode) {
+                if (contentItem.has("text")) {
+                    responseText.append(contentItem.get("text").asText());
+                }
+            }
+            
+            return responseText.toString();
+        } else {
+            throw new IOException("Unexpected response format from Messages API");
+        }
+    }
+    
+    /**
+     * Builds the request body for the Messages API (Claude 3 and newer models)
+     */
+    private String buildMessagesApiRequestBody(String prompt) throws IOException {
         // Create the request body directly as JSON
         ObjectNode requestBody = objectMapper.createObjectNode();
         
@@ -186,40 +552,13 @@ public class BedrockClient {
         requestBody.put("anthropic_version", "bedrock-2023-05-31");
         requestBody.set("messages", messagesArray);
         requestBody.put("system", "You are a helpful assistant that summarizes WebEx conversations accurately and concisely.");
-        requestBody.put("max_tokens", 4096);
+        requestBody.put("max_tokens", outputTokenLimit());
         requestBody.put("temperature", 0.7);
         requestBody.put("top_p", 0.9);
         
         String requestBodyJson = objectMapper.writeValueAsString(requestBody);
         logger.debug("Request body: {}", requestBodyJson);
-        
-        InvokeModelRequest request = InvokeModelRequest.builder()
-                .modelId(modelId)
-                .contentType("application/json")
-                .accept("application/json")
-                .body(SdkBytes.fromUtf8String(requestBodyJson))
-                .build();
-                
-        InvokeModelResponse response = runtimeClient.invokeModel(request);
-        String responseBody = response.body().asUtf8String();
-        
-        // Parse the response for modern Claude models
-        JsonNode responseJson = objectMapper.readTree(responseBody);
-        
-        JsonNode contentNode = responseJson.path("content");
-        if (contentNode.isArray() && contentNode.size() > 0) {
-            StringBuilder responseText = new StringBuilder();
-            
-            for (JsonNode contentItem : contentNode) {
-                if (contentItem.has("text")) {
-                    responseText.append(contentItem.get("text").asText());
-                }
-            }
-            
-            return responseText.toString();
-        } else {
-            throw new IOException("Unexpected response format from Messages API");
-        }
+        return requestBodyJson;
     }
     
     /**
@@ -228,18 +567,7 @@ public class BedrockClient {
     private String generateTextWithLegacyAPI(String prompt) throws IOException {
         logger.info("Using legacy API with model: {}", modelId);
         
-        // Different models have different input formats
-        String requestBody;
-        
-        if (modelId.contains("anthropic.claude")) {
-            requestBody = formatClaudeRequest(prompt);
-        } else if (modelId.contains("amazon.titan")) {
-            requestBody = formatTitanRequest(prompt);
-        } else if (modelId.contains("meta.llama2")) {
-            requestBody = formatLlamaRequest(prompt);
-        } else {
-            throw new IllegalArgumentException("Unsupported model ID: " + modelId);
-        }
+        String requestBody = buildLegacyRequestBody(prompt);
         
         InvokeModelRequest request = InvokeModelRequest.builder()
                 .modelId(modelId)
@@ -248,17 +576,32 @@ public class BedrockClient {
                 .body(SdkBytes.fromUtf8String(requestBody))
                 .build();
                 
-        InvokeModelResponse response = runtimeClient.invokeModel(request);
+        InvokeModelResponse response = limiter.execute(() -> runtimeClient.invokeModel(request));
         String responseBody = response.body().asUtf8String();
         
         // Parse the response based on the model
         return parseModelResponse(responseBody);
     }
     
+    /**
+     * Builds the request body for the legacy API; different models have different input formats
+     */
+    private String buildLegacyRequestBody(String prompt) throws IOException {
+        if (modelId.contains("anthropic.claude")) {
+            return formatClaudeRequest(prompt);
+        } else if (modelId.contains("amazon.titan")) {
+            return formatTitanRequest(prompt);
+        } else if (modelId.contains("meta.llama2")) {
+            return formatLlamaRequest(prompt);
+        } else {
+            throw new IllegalArgumentException("Unsupported model ID: " + modelId);
+        }
+    }
+    
     private String formatClaudeRequest(String prompt) throws IOException {
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("prompt", "\n\nHuman: " + prompt + "\n\nAssistant:");
-        requestBody.put("max_tokens_to_sample", 4000);
+        requestBody.put("max_tokens_to_sample", outputTokenLimit());
         requestBody.put("temperature", 0.7);
         requestBody.put("top_p", 0.9);
         requestBody.put("stop_sequences", objectMapper.createArrayNode().add("\n\nHuman:"));
@@ -271,7 +614,7 @@ public class BedrockClient {
         requestBody.put("inputText", prompt);
         requestBody.put("textGenerationConfig", 
             objectMapper.createObjectNode()
-                .put("maxTokenCount", 4000)
+                .put("maxTokenCount", outputTokenLimit())
                 .put("temperature", 0.7)
                 .put("topP", 0.9));
                 
@@ -281,7 +624,7 @@ public class BedrockClient {
     private String formatLlamaRequest(String prompt) throws IOException {
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("prompt", prompt);
-        requestBody.put("max_gen_len", 4000);
+        requestBody.put("max_gen_len", outputTokenLimit());
         requestBody.put("temperature", 0.7);
         requestBody.put("top_p", 0.9);
         
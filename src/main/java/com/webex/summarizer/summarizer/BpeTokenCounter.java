@@ -0,0 +1,124 @@
+package com.webex.summarizer.summarizer;
+
+/**
+ * Local estimator that mimics how byte-pair-encoding tokenizers split text.
+ * <p>
+ * The text is first split the way BPE tokenizers pre-tokenize it: letter runs (also split at
+ * camelCase boundaries), digit groups, punctuation runs and whitespace. Each piece is then costed
+ * by the vocabulary coverage typical for its script: short Latin words are a single token, digits
+ * merge in groups of three, punctuation and symbols merge poorly, CJK text costs about one token per
+ * character and other non-Latin scripts about one token per two characters. This tracks real
+ * tokenizers far better than a characters-per-token ratio for code-heavy and non-English text,
+ * without shipping a vocabulary.
+ * <p>
+ * Without a vocabulary the estimate cannot tell common words from rare ones, so it errs on the high
+ * side: only short letter runs count as one token, longer ones (rare words, identifiers, base64 and
+ * URL segments) cost a token per four letters, and a safety margin is added to the total. Chunks are
+ * packed close to the model's limit, where counting too few tokens overflows the context while
+ * counting too many only makes chunks a little smaller.
+ */
+public class BpeTokenCounter implements TokenCounter {
+
+    // Latin letter runs up to this length are usually a single vocabulary entry
+    private static final int COMMON_WORD_LENGTH = 6;
+    // Longer runs are costed as if split like rare words
+    private static final int LATIN_CHARACTERS_PER_TOKEN = 4;
+    // Added on top of the estimate, in percent
+    private static final int SAFETY_MARGIN_PERCENT = 10;
+    private static final int DIGITS_PER_TOKEN = 3;
+    private static final int SYMBOLS_PER_TOKEN = 2;
+    private static final int NON_LATIN_CHARACTERS_PER_TOKEN = 2;
+    private static final int SPACES_PER_TOKEN = 4;
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+
+            if (isLatinLetter(codePoint)) {
+                int start = i;
+                i += Character.charCount(codePoint);
+                while (i < length) {
+                    int next = text.codePointAt(i);
+                    // A lower-to-upper case change starts a new piece, as in camelCase identifiers
+                    if (!isLatinLetter(next) || (Character.isUpperCase(next) && Character.isLowerCase(text.codePointBefore(i)))) {
+                        break;
+                    }
+                    i += Character.charCount(next);
+                }
+                int run = i - start;
+                tokens += run <= COMMON_WORD_LENGTH ? 1 : divideRoundingUp(run, LATIN_CHARACTERS_PER_TOKEN);
+            } else if (isWideCharacter(codePoint)) {
+                // CJK ideographs, kana, hangul and emoji are roughly a token each
+                tokens++;
+                i += Character.charCount(codePoint);
+            } else if (Character.isLetter(codePoint)) {
+                int start = i;
+                while (i < length && Character.isLetter(text.codePointAt(i)) && !isLatinLetter(text.codePointAt(i))
+                        && !isWideCharacter(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                tokens += divideRoundingUp(text.codePointCount(start, i), NON_LATIN_CHARACTERS_PER_TOKEN);
+            } else if (Character.isDigit(codePoint)) {
+                int start = i;
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += divideRoundingUp(i - start, DIGITS_PER_TOKEN);
+            } else if (Character.isWhitespace(codePoint)) {
+                int start = i;
+                boolean newline = false;
+                while (i < length && Character.isWhitespace(text.charAt(i))) {
+                    newline |= text.charAt(i) == '\n';
+                    i++;
+                }
+                int run = i - start;
+                // A single space is merged into the word that follows it
+                if (run == 1 && !newline && i < length) {
+                    continue;
+                }
+                tokens += newline ? 1 + run / SPACES_PER_TOKEN : divideRoundingUp(run, SPACES_PER_TOKEN);
+            } else {
+                int start = i;
+                while (i < length && isSymbol(text.charAt(i))) {
+                    i++;
+                }
+                if (i == start) {
+                    // Any other character (e.g. an unpaired surrogate) is costed on its own
+                    i += Character.charCount(codePoint);
+                }
+                tokens += divideRoundingUp(i - start, SYMBOLS_PER_TOKEN);
+            }
+        }
+
+        return Math.max(1, tokens + tokens * SAFETY_MARGIN_PERCENT / 100);
+    }
+
+    private static boolean isLatinLetter(int codePoint) {
+        return codePoint < 0x250 && Character.isLetter(codePoint);
+    }
+
+    private static boolean isWideCharacter(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                || Character.getType(codePoint) == Character.OTHER_SYMBOL;
+    }
+
+    private static boolean isSymbol(char c) {
+        return c < 0x80 && !Character.isLetterOrDigit(c) && !Character.isWhitespace(c);
+    }
+
+    private static int divideRoundingUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,18 @@
+package com.webex.summarizer.summarizer;
+
+/**
+ * Token counter using a fixed characters-per-token ratio.
+ * Cheap, but only accurate for plain English prose.
+ */
+public class HeuristicTokenCounter implements TokenCounter {
+
+    private static final int CHARACTERS_PER_TOKEN = 4; // 1 token ~= 4 chars in English
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return Math.max(1, text.length() / CHARACTERS_PER_TOKEN);
+    }
+}
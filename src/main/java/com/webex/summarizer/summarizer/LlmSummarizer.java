@@ -2,14 +2,26 @@ package com.webex.summarizer.summarizer;
 
 import com.webex.summarizer.model.Conversation;
 import com.webex.summarizer.model.Message;
+import com.webex.summarizer.storage.LlmResultCache;
+import com.webex.summarizer.util.ConfigLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for generating summaries of WebEx conversations using AWS Bedrock LLMs.
@@ -22,11 +34,42 @@ public class LlmSummarizer {
     
     // Constants for chunking and summarization
     private static final int MAX_TOKENS_PER_CHUNK = 50000; // Maximum tokens in each chunk (to stay within context limits for most models)
-    private static final int TOKENS_PER_CHARACTER = 4; // Approximate ratio of characters to tokens (1 token ~= 4 chars in English)
     private static final int CHUNK_BUFFER_TOKENS = 1000; // Buffer tokens for formatting, system messages, etc.
     
+    // Fixed reply a chunk gives when it has nothing to contribute to an answer
+    private static final String NO_RELEVANT_INFORMATION = "No relevant information about this question in this conversation part.";
+    private static final String NO_RELEVANT_INFORMATION_PREFIX = "no relevant information";
+    
+    // Bump whenever the chunk summary prompt changes so cached results from the old prompt are not reused
+    private static final String CHUNK_SUMMARY_PROMPT_VERSION = "chunk-summary-v1";
+    private static final String MERGE_SUMMARY_PROMPT_VERSION = "merge-summary-v1";
+    
+    // Approximate tokens for the "=== Summary of Part N ===" header placed before each summary
+    private static final int SUMMARY_HEADER_TOKENS = 10;
+    // Formatted messages whose token counts are kept; the least recently used are dropped first
+    private static final int MAX_MEMOIZED_TOKEN_COUNTS = 10000;
+    
+    // Default cap on chunk prompts submitted to Bedrock at the same time. The client's adaptive
+    // limiter decides how many of them are actually in flight, so the cap matches its maximum
+    // and only needs lowering to stay below an account quota.
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+    
     private final BedrockClient bedrockClient;
     private SummarizationProgressListener progressListener;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private BedrockClient.Engine engine = BedrockClient.Engine.SYNC;
+    private LlmResultCache resultCache;
+    private TextStreamListener streamListener;
+    private TokenCounter tokenCounter = new BpeTokenCounter();
+    
+    // Token count of each formatted message by its formatted text, filled on first use and
+    // cleared when the token counter changes. Guarded by its own lock.
+    private final Map<String, Integer> messageTokenCounts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_MEMOIZED_TOKEN_COUNTS;
+        }
+    };
     
     // Modes for the summarizer
     public enum Mode {
@@ -41,6 +84,22 @@ public class LlmSummarizer {
         void onSummarizationProgress(int currentChunk, int totalChunks, String status);
     }
     
+    /**
+     * Interface for receiving the final summary or answer text as the model generates it
+     */
+    public interface TextStreamListener {
+        void onText(String text);
+    }
+    
+    /**
+     * A unit of work run against a single chunk during the map phase, either a chunk of messages
+     * or a batch of summaries being merged.
+     * Model calls should go through {@link #callModel(String, Executor)} with the given executor.
+     */
+    private interface ChunkTask<T> {
+        CompletableFuture<String> process(int chunkIndex, T chunk, Executor executor);
+    }
+    
     public LlmSummarizer(String awsProfile, String awsRegion, String modelId) {
         this.bedrockClient = new BedrockClient(awsProfile, awsRegion, modelId);
         logger.info("LLM Summarizer initialized with AWS Bedrock (profile: {}, region: {}, model: {})",
@@ -54,6 +113,77 @@ public class LlmSummarizer {
         this.progressListener = listener;
     }
     
+    /**
+     * Set the maximum number of chunk prompts submitted to Bedrock concurrently.
+     * Bedrock's adaptive concurrency limiter still governs how many run at once, within this cap.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, got " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    /**
+     * Set how chunk requests are executed: on blocking worker threads or on the non-blocking client
+     */
+    public void setEngine(BedrockClient.Engine engine) {
+        this.engine = engine;
+    }
+    
+    /**
+     * Set the token counter used to size chunks
+     */
+    public void setTokenCounter(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+        this.bedrockClient.setTokenCounter(tokenCounter);
+        synchronized (messageTokenCounts) {
+            messageTokenCounts.clear();
+        }
+    }
+    
+    /**
+     * Apply the Bedrock tuning options from the configuration file
+     */
+    public void applyConfig(ConfigLoader configLoader) {
+        setMaxConcurrency(configLoader.getIntProperty("aws.bedrock.concurrency", DEFAULT_MAX_CONCURRENCY));
+        bedrockClient.setMaxOutputTokens(configLoader.getIntProperty("aws.bedrock.max-tokens", BedrockClient.DEFAULT_MAX_OUTPUT_TOKENS));
+        bedrockClient.setTokensPerMinute(configLoader.getIntProperty("aws.bedrock.tokens-per-minute", 0));
+        
+        String engineName = configLoader.getProperty("aws.bedrock.engine", "sync");
+        try {
+            setEngine(BedrockClient.Engine.valueOf(engineName.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown aws.bedrock.engine '{}', using sync", engineName);
+        }
+        
+        String tokenizerName = configLoader.getProperty("summarizer.tokenizer", "bpe");
+        try {
+            setTokenCounter(TokenCounter.forName(tokenizerName));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown summarizer.tokenizer '{}', using bpe", tokenizerName);
+        }
+    }
+    
+    /**
+     * Set a listener that receives the final summary or answer while it is being generated.
+     * Intermediate chunk results are never streamed.
+     */
+    public void setStreamListener(TextStreamListener listener) {
+        this.streamListener = listener;
+    }
+    
+    /**
+     * Set a cache for chunk summaries so unchanged chunks are not re-sent to Bedrock
+     */
+    public void setResultCache(LlmResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+    
     /**
      * Generate a summary for a conversation, splitting into chunks if necessary
      */
@@ -61,6 +191,53 @@ public class LlmSummarizer {
         return processConversation(conversation, Mode.SUMMARIZE, null);
     }
     
+    /**
+     * Update an existing summary with messages added since it was generated.
+     * The new messages are merged into the previous summary with a single reduce prompt;
+     * only when they do not fit in one chunk are they summarized on their own first.
+     * 
+     * @param conversation The conversation the summary belongs to
+     * @param previousSummary The summary covering the older messages
+     * @param newMessages The messages added since the previous summary
+     * @return The updated summary
+     * @throws IOException If an error occurs with the Bedrock API
+     */
+    public String updateSummary(Conversation conversation, String previousSummary, List<Message> newMessages) throws IOException {
+        String roomTitle = conversation.getRoom().getTitle();
+        int estimatedTokens = calculateTotalTokens(newMessages);
+        int maxTokensPerChunkWithBuffer = MAX_TOKENS_PER_CHUNK - CHUNK_BUFFER_TOKENS;
+        
+        logger.info("Updating summary with {} new messages (~{} tokens)", newMessages.size(), estimatedTokens);
+        
+        String newContent;
+        String newContentDescription;
+        if (estimatedTokens <= maxTokensPerChunkWithBuffer) {
+            newContent = formatMessages(newMessages);
+            newContentDescription = "the new messages";
+        } else {
+            logger.info("New messages exceed a single chunk, summarizing them before merging");
+            newContent = generateChunkedSummary(newMessages, roomTitle, false);
+            newContentDescription = "a summary of the new messages";
+        }
+        
+        reportProgress(1, 1, "Merging new messages into existing summary");
+        String prompt = "Below is an existing summary of a conversation from a Cisco WebEx room '" + roomTitle +
+                "', followed by " + newContentDescription + " posted since that summary was written. " +
+                "Please produce an updated summary of the whole conversation that incorporates the new information. " +
+                "Keep everything from the existing summary that is still relevant, update decisions and action items " +
+                "that changed, and add new topics, decisions and action items.\n\n" +
+                "Keep exactly the same structure and formatting as the existing summary:\n" +
+                "- Bold section headers surrounded by asterisks (e.g., **Overview**)\n" +
+                "- Clear numbering for all list items (1., 2., 3., etc.)\n" +
+                "- A visual separator line between sections using dashes (e.g., -----------)\n" +
+                "- 'Owner: [Name]' and 'Due: [Date]' on new lines for action items\n\n" +
+                "=== Existing Summary ===\n" + previousSummary + "\n\n" +
+                "=== New Messages (" + newMessages.size() + ") ===\n" + newContent;
+        
+        logger.info("Generating updated summary using AWS Bedrock...");
+        return generateResultText(prompt);
+    }
+    
     /**
      * Generate an answer to a question based on a conversation
      * 
@@ -112,7 +289,7 @@ public class LlmSummarizer {
         // For large conversations, use chunked processing
         logger.info("Large conversation detected ({} tokens), using chunked approach", estimatedTokens);
         if (mode == Mode.SUMMARIZE) {
-            return generateChunkedSummary(messages, roomTitle);
+            return generateChunkedSummary(messages, roomTitle, true);
         } else {
             return answerQuestionChunked(messages, roomTitle, question);
         }
@@ -125,41 +302,68 @@ public class LlmSummarizer {
         int totalTokens = 0;
         
         for (Message message : messages) {
-            String text = message.getText();
-            if (text != null) {
-                // Count tokens based on characters (approximate)
-                totalTokens += text.length() / TOKENS_PER_CHARACTER;
-                
-                // Add tokens for message metadata (timestamp, sender)
-                totalTokens += 20; // Approximate tokens for metadata
-            }
+            totalTokens += countMessageTokens(message);
         }
         
         return totalTokens;
     }
     
+    /**
+     * Count the tokens a message takes up in a prompt, including its timestamp and sender lines
+     */
+    private int countMessageTokens(Message message) {
+        // Keyed on exactly the text that is counted, so edited messages are counted again
+        String formatted = formatMessage(message);
+        synchronized (messageTokenCounts) {
+            Integer count = messageTokenCounts.get(formatted);
+            if (count != null) {
+                return count;
+            }
+        }
+        // Counted outside the lock so that concurrent callers do not wait on one tokenizer run
+        int count = tokenCounter.countTokens(formatted);
+        synchronized (messageTokenCounts) {
+            messageTokenCounts.put(formatted, count);
+        }
+        return count;
+    }
+    
     /**
      * Generate a summary by splitting the conversation into chunks, summarizing each chunk,
      * and then summarizing all the chunk summaries together
+     * 
+     * @param streamResult Whether the final summary is streamed to the stream listener
      */
-    private String generateChunkedSummary(List<Message> messages, String roomTitle) throws IOException {
+    private String generateChunkedSummary(List<Message> messages, String roomTitle, boolean streamResult) throws IOException {
         int messageCount = messages.size();
         
         // Calculate number of chunks needed
         int chunkCount = calculateChunkCount(messages);
         logger.info("Splitting conversation into {} chunks", chunkCount);
         
-        List<String> chunkSummaries = new ArrayList<>();
         List<List<Message>> messageChunks = splitMessagesIntoChunks(messages, chunkCount);
-        
-        // Process each chunk
-        for (int i = 0; i < messageChunks.size(); i++) {
-            List<Message> chunk = messageChunks.get(i);
-            reportProgress(i + 1, messageChunks.size(), "Processing chunk " + (i + 1) + "/" + messageChunks.size());
+        int totalChunks = messageChunks.size();
+        
+        AtomicInteger cacheHits = new AtomicInteger();
+        
+        // Summarize the chunks concurrently; results come back in chunk order
+        List<String> chunkSummaries = mapChunks(messageChunks, "Summarized", (i, chunk, executor) -> {
+            // The cache key covers the chunk's messages but not its position, so a chunk that only
+            // moved (because newer messages were added) is still a hit
+            String cacheKey = null;
+            if (resultCache != null) {
+                cacheKey = LlmResultCache.key(bedrockClient.getModelId(), CHUNK_SUMMARY_PROMPT_VERSION, formatMessages(chunk));
+                String cachedSummary = resultCache.get(cacheKey);
+                if (cachedSummary != null) {
+                    cacheHits.incrementAndGet();
+                    logger.info("Using cached summary for chunk {} of {}", i + 1, totalChunks);
+                    return CompletableFuture.completedFuture(cachedSummary);
+                }
+            }
             
-            String chunkText = formatMessageChunk(chunk, roomTitle, i + 1, messageChunks.size());
+            String chunkText = formatMessageChunk(chunk, roomTitle, i + 1, totalChunks);
             String chunkPrompt = "Please provide a detailed summary of the following part " + (i + 1) + 
-                              " of " + messageChunks.size() + " from a Cisco WebEx conversation.\n\n" +
+                              " of " + totalChunks + " from a Cisco WebEx conversation.\n\n" +
                               "Format your response with these clearly separated sections:\n" +
                               "1. A brief '**Summary**' section highlighting what this conversation part covers\n" +
                               "2. A '**Key Points**' section with numbered items for important topics\n" +
@@ -176,17 +380,26 @@ public class LlmSummarizer {
             
             int chunkTokens = calculateTotalTokens(chunk);
             logger.info("Generating summary for chunk {} of {} ({} messages, ~{} tokens)", 
-                       i + 1, messageChunks.size(), chunk.size(), chunkTokens);
-            String chunkSummary = bedrockClient.generateText(chunkPrompt);
-            chunkSummaries.add(chunkSummary);
-            int summaryTokens = chunkSummary.length() / TOKENS_PER_CHARACTER;
-            logger.info("Chunk {} summary generated ({} characters, ~{} tokens)", 
-                       i + 1, chunkSummary.length(), summaryTokens);
+                       i + 1, totalChunks, chunk.size(), chunkTokens);
+            String finalCacheKey = cacheKey;
+            return callModel(chunkPrompt, executor).thenApply(chunkSummary -> {
+                int summaryTokens = tokenCounter.countTokens(chunkSummary);
+                logger.info("Chunk {} summary generated ({} characters, ~{} tokens)", 
+                           i + 1, chunkSummary.length(), summaryTokens);
+                if (finalCacheKey != null) {
+                    resultCache.put(finalCacheKey, chunkSummary);
+                }
+                return chunkSummary;
+            });
+        });
+        
+        if (resultCache != null) {
+            logger.info("Reused {} of {} chunk summaries from cache", cacheHits.get(), totalChunks);
         }
         
         // Generate final summary from all chunk summaries
         reportProgress(chunkCount + 1, chunkCount + 1, "Creating final summary");
-        return generateFinalSummary(chunkSummaries, roomTitle, messageCount);
+        return generateFinalSummary(chunkSummaries, roomTitle, messageCount, streamResult);
     }
     
     /**
@@ -200,6 +413,110 @@ public class LlmSummarizer {
         return (int) Math.ceil((double) totalTokens / maxTokensPerChunkWithBuffer);
     }
     
+    /**
+     * Run a task against every chunk with at most {@code maxConcurrency} requests submitted at once.
+     * The cap is also bounded by the maximum of Bedrock's adaptive limiter: requests above the limiter's
+     * current limit wait inside the limiter, so it can raise the limit as long as chunks are queued.
+     * Progress is reported as chunks complete, which may be out of order, but the returned
+     * list always holds the results in the original chunk order.
+     */
+    private <T> List<String> mapChunks(List<T> chunks, String completedVerb, ChunkTask<T> task) throws IOException {
+        int totalChunks = chunks.size();
+        AdaptiveConcurrencyLimiter limiter = bedrockClient.getConcurrencyLimiter();
+        int concurrency = Math.min(Math.min(maxConcurrency, limiter.getMaxLimit()), totalChunks);
+        logger.info("Processing {} chunks with up to {} concurrent requests, {} admitted by the Bedrock limiter ({} engine)",
+                totalChunks, concurrency, limiter.getLimit(), engine);
+        
+        // The blocking engine needs one thread per in-flight request, the async engine none
+        ExecutorService executor = null;
+        if (engine == BedrockClient.Engine.SYNC) {
+            executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "llm-chunk-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<CompletableFuture<String>> futures = new ArrayList<>(totalChunks);
+        
+        try {
+            reportProgress(0, totalChunks, "Processing " + totalChunks + " chunks");
+            for (int i = 0; i < totalChunks; i++) {
+                permits.acquire();
+                if (failed.get()) {
+                    // Stop launching new chunks once one has failed
+                    permits.release();
+                    break;
+                }
+                
+                final int index = i;
+                CompletableFuture<String> future = task.process(index, chunks.get(index), executor);
+                futures.add(future.whenComplete((result, error) -> {
+                    permits.release();
+                    if (error != null) {
+                        failed.set(true);
+                        return;
+                    }
+                    synchronized (this) {
+                        int done = completed.incrementAndGet();
+                        reportProgress(done, totalChunks,
+                                completedVerb + " chunk " + (index + 1) + " (" + done + "/" + totalChunks + " done)");
+                    }
+                }));
+            }
+            
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing conversation chunks", e);
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to process conversation chunk: " + cause.getMessage(), cause);
+        } finally {
+            // Cancels any chunks still running if one of them failed
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        
+        logger.info("Bedrock concurrency after {} chunks: {}", totalChunks, bedrockClient.getConcurrencyLimiter());
+        if (bedrockClient.getTokenBudget() != null) {
+            logger.info("Bedrock token budget after {} chunks: {}", totalChunks, bedrockClient.getTokenBudget());
+        }
+        
+        List<String> results = new ArrayList<>(totalChunks);
+        for (CompletableFuture<String> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+    
+    /**
+     * Send a prompt to the model using the configured engine
+     */
+    private CompletableFuture<String> callModel(String prompt, Executor executor) {
+        if (engine == BedrockClient.Engine.ASYNC) {
+            return bedrockClient.generateTextAsync(prompt);
+        }
+        
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return bedrockClient.generateText(prompt);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+    
     /**
      * Split the list of messages into chunks based on token counts
      */
@@ -216,17 +533,16 @@ public class LlmSummarizer {
         List<Message> currentChunk = new ArrayList<>();
         int currentChunkTokens = 0;
         
-        for (Message message : messages) {
-            // Calculate tokens for this message
-            int messageTokens = 0;
-            if (message.getText() != null) {
-                messageTokens = message.getText().length() / TOKENS_PER_CHARACTER + 20; // text + metadata
-            }
+        // WebEx returns messages newest first. Packing from the oldest end keeps the boundaries of
+        // older chunks stable when new messages arrive, so their cached summaries stay valid.
+        for (int m = messages.size() - 1; m >= 0; m--) {
+            Message message = messages.get(m);
+            int messageTokens = countMessageTokens(message);
             
             // If adding this message would exceed the chunk token limit and current chunk is not empty
             // then finalize the current chunk and start a new one
             if (currentChunkTokens + messageTokens > maxTokensPerChunk && !currentChunk.isEmpty()) {
-                chunks.add(new ArrayList<>(currentChunk));
+                chunks.add(reversedCopy(currentChunk));
                 currentChunk.clear();
                 currentChunkTokens = 0;
             }
@@ -241,9 +557,12 @@ public class LlmSummarizer {
         
         // Add the final chunk if it's not empty
         if (!currentChunk.isEmpty()) {
-            chunks.add(currentChunk);
+            chunks.add(reversedCopy(currentChunk));
         }
         
+        // Restore the original message order across chunks
+        Collections.reverse(chunks);
+        
         logger.info("Split conversation into {} token-based chunks", chunks.size());
         for (int i = 0; i < chunks.size(); i++) {
             int chunkTokens = calculateTotalTokens(chunks.get(i));
@@ -254,6 +573,12 @@ public class LlmSummarizer {
         return chunks;
     }
     
+    private static List<Message> reversedCopy(List<Message> messages) {
+        List<Message> copy = new ArrayList<>(messages);
+        Collections.reverse(copy);
+        return copy;
+    }
+    
     /**
      * Format a chunk of messages for input to the summarization model
      */
@@ -263,11 +588,19 @@ public class LlmSummarizer {
         sb.append("Room: ").append(roomTitle).append("\n");
         sb.append("Chunk: ").append(chunkNum).append(" of ").append(totalChunks).append("\n");
         sb.append("Messages: ").append(messages.size()).append("\n\n");
+        sb.append(formatMessages(messages));
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Format the messages of a chunk without any chunk position information
+     */
+    private String formatMessages(List<Message> messages) {
+        StringBuilder sb = new StringBuilder();
         
         for (Message message : messages) {
-            sb.append("Time: ").append(DATE_FORMATTER.format(message.getCreated())).append("\n");
-            sb.append("From: ").append(message.getPersonEmail()).append("\n");
-            sb.append("Message: ").append(message.getText()).append("\n\n");
+            sb.append(formatMessage(message));
         }
         
         return sb.toString();
@@ -276,16 +609,16 @@ public class LlmSummarizer {
     /**
      * Generate the final summary by combining all chunk summaries
      */
-    private String generateFinalSummary(List<String> chunkSummaries, String roomTitle, int totalMessageCount) throws IOException {
+    private String generateFinalSummary(List<String> chunkSummaries, String roomTitle, int totalMessageCount,
+                                        boolean streamResult) throws IOException {
+        // Very large rooms produce more chunk summaries than fit into one prompt
+        List<String> partSummaries = reduceSummaries(chunkSummaries, roomTitle);
+        
         StringBuilder sb = new StringBuilder();
         
         sb.append("The following are summaries of different parts of a conversation from room '")
           .append(roomTitle).append("' containing ").append(totalMessageCount).append(" total messages.\n\n");
-        
-        for (int i = 0; i < chunkSummaries.size(); i++) {
-            sb.append("=== Summary of Part ").append(i + 1).append(" ===\n");
-            sb.append(chunkSummaries.get(i)).append("\n\n");
-        }
+        sb.append(formatPartSummaries(partSummaries));
         
         String finalPrompt = "Please create a comprehensive summary of this entire conversation based on " +
                            "the part summaries below. Structure your summary with these clearly formatted sections:\n\n" +
@@ -303,8 +636,118 @@ public class LlmSummarizer {
                            "- Structure information in a highly scannable format\n\n" +
                            "Focus on synthesizing across all parts to create a unified, coherent summary.\n\n" + sb.toString();
         
-        logger.info("Generating final summary from {} chunk summaries", chunkSummaries.size());
-        return bedrockClient.generateText(finalPrompt);
+        logger.info("Generating final summary from {} part summaries", partSummaries.size());
+        return streamResult ? generateResultText(finalPrompt) : bedrockClient.generateText(finalPrompt);
+    }
+    
+    /**
+     * Merge part summaries level by level until they fit into a single prompt.
+     * Each level packs consecutive summaries into batches within the chunk token budget and merges
+     * the batches in parallel, so the number of levels grows logarithmically with the room size.
+     */
+    private List<String> reduceSummaries(List<String> summaries, String roomTitle) throws IOException {
+        int maxTokensPerChunk = MAX_TOKENS_PER_CHUNK - CHUNK_BUFFER_TOKENS;
+        int level = 1;
+        
+        while (summaries.size() > 1 && countSummaryTokens(summaries) > maxTokensPerChunk) {
+            List<List<String>> batches = batchSummaries(summaries, maxTokensPerChunk);
+            if (batches.size() == summaries.size()) {
+                // Every summary needs a batch of its own, so another level would not shrink anything
+                logger.warn("Part summaries are too large to merge further, using {} summaries", summaries.size());
+                break;
+            }
+            
+            logger.info("Reduce level {}: merging {} summaries into {}", level, summaries.size(), batches.size());
+            summaries = mapChunks(batches, "Merged", (i, batch, executor) -> mergeSummaries(batch, roomTitle, executor));
+            level++;
+        }
+        
+        return summaries;
+    }
+    
+    /**
+     * Group consecutive summaries into batches that each fit within the token budget
+     */
+    private List<List<String>> batchSummaries(List<String> summaries, int maxTokens) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> currentBatch = new ArrayList<>();
+        int currentBatchTokens = 0;
+        
+        for (String summary : summaries) {
+            int summaryTokens = tokenCounter.countTokens(summary) + SUMMARY_HEADER_TOKENS;
+            if (currentBatchTokens + summaryTokens > maxTokens && !currentBatch.isEmpty()) {
+                batches.add(currentBatch);
+                currentBatch = new ArrayList<>();
+                currentBatchTokens = 0;
+            }
+            currentBatch.add(summary);
+            currentBatchTokens += summaryTokens;
+        }
+        
+        if (!currentBatch.isEmpty()) {
+            batches.add(currentBatch);
+        }
+        return batches;
+    }
+    
+    /**
+     * Merge a batch of consecutive part summaries into one summary
+     */
+    private CompletableFuture<String> mergeSummaries(List<String> batch, String roomTitle, Executor executor) {
+        if (batch.size() == 1) {
+            return CompletableFuture.completedFuture(batch.get(0));
+        }
+        
+        String cacheKey = null;
+        if (resultCache != null) {
+            List<String> keyParts = new ArrayList<>();
+            keyParts.add(bedrockClient.getModelId());
+            keyParts.add(MERGE_SUMMARY_PROMPT_VERSION);
+            keyParts.add(roomTitle);
+            keyParts.addAll(batch);
+            cacheKey = LlmResultCache.key(keyParts.toArray(new String[0]));
+            String cachedSummary = resultCache.get(cacheKey);
+            if (cachedSummary != null) {
+                return CompletableFuture.completedFuture(cachedSummary);
+            }
+        }
+        
+        String mergePrompt = "Please merge the following summaries of consecutive parts of a Cisco WebEx conversation " +
+                           "from room '" + roomTitle + "' into a single detailed summary of all these parts.\n\n" +
+                           "Format your response with these clearly separated sections:\n" +
+                           "1. A brief '**Summary**' section highlighting what these conversation parts cover\n" +
+                           "2. A '**Key Points**' section with numbered items for important topics\n" +
+                           "3. A '**Details**' section with any significant information that needs attention\n" +
+                           "4. If present, a '**Decisions**' section with numbered items\n" +
+                           "5. If present, an '**Action Items**' section with numbered tasks\n\n" +
+                           "Keep every decision, action item owner, deadline and date from the part summaries. " +
+                           "Be thorough as this will be combined with summaries of other parts.\n\n" +
+                           formatPartSummaries(batch);
+        
+        String finalCacheKey = cacheKey;
+        return callModel(mergePrompt, executor).thenApply(mergedSummary -> {
+            if (finalCacheKey != null) {
+                resultCache.put(finalCacheKey, mergedSummary);
+            }
+            return mergedSummary;
+        });
+    }
+    
+    private int countSummaryTokens(List<String> summaries) {
+        int totalTokens = 0;
+        for (String summary : summaries) {
+            totalTokens += tokenCounter.countTokens(summary) + SUMMARY_HEADER_TOKENS;
+        }
+        return totalTokens;
+    }
+    
+    private static String formatPartSummaries(List<String> summaries) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < summaries.size(); i++) {
+            sb.append("=== Summary of Part ").append(i + 1).append(" ===\n");
+            sb.append(summaries.get(i)).append("\n\n");
+        }
+        return sb.toString();
     }
     
     /**
@@ -330,7 +773,7 @@ public class LlmSummarizer {
         
         try {
             logger.info("Generating single summary using AWS Bedrock...");
-            String summary = bedrockClient.generateText(prompt);
+            String summary = generateResultText(prompt);
             logger.info("Summary generated successfully");
             return summary;
         } catch (IOException e) {
@@ -339,15 +782,34 @@ public class LlmSummarizer {
         }
     }
     
+    /**
+     * Generate the text returned to the user, streaming it to the listener if one is registered
+     */
+    private String generateResultText(String prompt) throws IOException {
+        if (streamListener != null) {
+            return bedrockClient.generateTextStreaming(prompt, streamListener::onText);
+        }
+        return bedrockClient.generateText(prompt);
+    }
+    
     /**
      * Report progress if a listener is registered
      */
-    private void reportProgress(int current, int total, String status) {
+    private synchronized void reportProgress(int current, int total, String status) {
         if (progressListener != null) {
             progressListener.onSummarizationProgress(current, total, status);
         }
     }
     
+    /**
+     * Format a single message the way it appears in a prompt
+     */
+    private String formatMessage(Message message) {
+        return "Time: " + DATE_FORMATTER.format(message.getCreated()) + "\n" +
+               "From: " + message.getPersonEmail() + "\n" +
+               "Message: " + message.getText() + "\n\n";
+    }
+    
     /**
      * Format an entire conversation for the summarizer
      */
@@ -358,9 +820,7 @@ public class LlmSummarizer {
         
         List<Message> messages = conversation.getMessages();
         for (Message message : messages) {
-            sb.append("Time: ").append(DATE_FORMATTER.format(message.getCreated())).append("\n");
-            sb.append("From: ").append(message.getPersonEmail()).append("\n");
-            sb.append("Message: ").append(message.getText()).append("\n\n");
+            sb.append(formatMessage(message));
         }
         
         return sb.toString();
@@ -393,7 +853,7 @@ public class LlmSummarizer {
         
         try {
             logger.info("Generating answer to question using AWS Bedrock...");
-            String answer = bedrockClient.generateText(prompt);
+            String answer = generateResultText(prompt);
             logger.info("Answer generated successfully");
             return answer;
         } catch (IOException e) {
@@ -418,48 +878,65 @@ public class LlmSummarizer {
         int chunkCount = calculateChunkCount(messages);
         logger.info("Splitting conversation into {} chunks for question answering", chunkCount);
         
-        List<String> chunkAnswers = new ArrayList<>();
         List<List<Message>> messageChunks = splitMessagesIntoChunks(messages, chunkCount);
+        int totalChunks = messageChunks.size();
         
-        // Process each chunk
-        for (int i = 0; i < messageChunks.size(); i++) {
-            List<Message> chunk = messageChunks.get(i);
-            reportProgress(i + 1, messageChunks.size(), "Processing chunk " + (i + 1) + "/" + messageChunks.size());
-            
-            String chunkText = formatMessageChunk(chunk, roomTitle, i + 1, messageChunks.size());
+        // Ask every chunk concurrently; answers come back in chunk order
+        List<String> rawAnswers = mapChunks(messageChunks, "Analyzed", (i, chunk, executor) -> {
+            String chunkText = formatMessageChunk(chunk, roomTitle, i + 1, totalChunks);
             String chunkPrompt = "You are an AI assistant that answers questions about Cisco WebEx conversations. " +
-                               "I will provide you with part " + (i + 1) + " of " + messageChunks.size() + 
+                               "I will provide you with part " + (i + 1) + " of " + totalChunks + 
                                " from a WebEx conversation and a question. " +
                                "Your task is to extract ANY information from this conversation part that might help answer the question. " +
                                "If this part contains information relevant to the question, provide that information in a clear, concise format. " +
-                               "If this part does not contain information relevant to the question, simply say " +
-                               "'No relevant information about this question in this conversation part.'\n\n" +
+                               "If this part does not contain information relevant to the question, reply with exactly " +
+                               "'" + NO_RELEVANT_INFORMATION + "' and nothing else.\n\n" +
                                "Focus on finding facts, dates, decisions, or statements that relate directly to the question.\n\n" +
-                               "Conversation part " + (i + 1) + " of " + messageChunks.size() + ":\n\n" + 
+                               "Conversation part " + (i + 1) + " of " + totalChunks + ":\n\n" + 
                                chunkText + "\n\n" +
                                "Question: " + question + "\n\n" +
                                "Information relevant to this question:";
             
             int chunkTokens = calculateTotalTokens(chunk);
             logger.info("Analyzing chunk {} of {} for question answering ({} messages, ~{} tokens)", 
-                       i + 1, messageChunks.size(), chunk.size(), chunkTokens);
-            String chunkAnswer = bedrockClient.generateText(chunkPrompt);
-            
-            // Only include non-empty answers
-            if (chunkAnswer != null && !chunkAnswer.trim().isEmpty() && 
-                !chunkAnswer.toLowerCase().contains("no relevant information")) {
+                       i + 1, totalChunks, chunk.size(), chunkTokens);
+            return callModel(chunkPrompt, executor);
+        });
+        
+        // Drop chunks that had nothing to contribute so the final prompt only carries useful answers
+        List<String> chunkAnswers = new ArrayList<>();
+        for (int i = 0; i < rawAnswers.size(); i++) {
+            String chunkAnswer = rawAnswers.get(i);
+            if (isRelevantChunkAnswer(chunkAnswer)) {
                 chunkAnswers.add(chunkAnswer);
                 logger.info("Chunk {} contains relevant information for the question", i + 1);
             } else {
                 logger.info("Chunk {} does not contain relevant information for the question", i + 1);
             }
         }
+        logger.info("{} of {} chunks contained relevant information", chunkAnswers.size(), totalChunks);
         
         // Generate final answer from all chunk answers
         reportProgress(chunkCount + 1, chunkCount + 1, "Creating final answer");
         return generateFinalAnswer(chunkAnswers, roomTitle, messageCount, question);
     }
     
+    /**
+     * Check whether a per-chunk answer carries anything beyond the fixed "no relevant information" reply
+     */
+    static boolean isRelevantChunkAnswer(String chunkAnswer) {
+        if (chunkAnswer == null) {
+            return false;
+        }
+        
+        // Models sometimes wrap the fixed phrase in quotes or bold markers
+        String normalized = chunkAnswer.trim().replaceAll("^[\\s'\"*]+", "").toLowerCase();
+        if (normalized.isEmpty()) {
+            return false;
+        }
+        return !normalized.startsWith(NO_RELEVANT_INFORMATION_PREFIX);
+    }
+    
     /**
      * Generate a final answer based on information from multiple chunks
      * 
@@ -502,7 +979,7 @@ public class LlmSummarizer {
                  "and what is not known based on the available information.");
         
         logger.info("Generating final answer from {} information blocks", chunkAnswers.size());
-        return bedrockClient.generateText(sb.toString());
+        return generateResultText(sb.toString());
     }
     
     public List<Map<String, String>> listAvailableModels() {
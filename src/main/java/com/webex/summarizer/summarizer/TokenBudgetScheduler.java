@@ -0,0 +1,235 @@
+package com.webex.summarizer.summarizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that keeps Bedrock requests within a tokens-per-minute quota.
+ * <p>
+ * Each request reserves its estimated input tokens plus its maximum output tokens before it is
+ * sent. Requests that would exceed the budget wait in FIFO order until enough tokens have been
+ * refilled. Once a request completes, the unused part of its reservation is returned to the bucket.
+ */
+public class TokenBudgetScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBudgetScheduler.class);
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Tokens reserved for one request
+     */
+    public static final class Reservation {
+        private final long tokens;
+
+        private Reservation(long tokens) {
+            this.tokens = tokens;
+        }
+
+        public long getTokens() {
+            return tokens;
+        }
+    }
+
+    private static final class Waiter {
+        final long tokens;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Reservation> future = new CompletableFuture<>();
+
+        Waiter(long tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    private long tokensPerMinute;
+    private double availableTokens;
+    private long lastRefillNanos;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private boolean drainScheduled;
+
+    private long admittedCount;
+    private long queuedCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public TokenBudgetScheduler(long tokensPerMinute) {
+        if (tokensPerMinute <= 0) {
+            throw new IllegalArgumentException("Tokens per minute must be positive: " + tokensPerMinute);
+        }
+        this.tokensPerMinute = tokensPerMinute;
+        this.availableTokens = tokensPerMinute;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Change the budget, keeping the tokens already used in the current minute
+     */
+    public synchronized void setTokensPerMinute(long tokensPerMinute) {
+        if (tokensPerMinute <= 0) {
+            throw new IllegalArgumentException("Tokens per minute must be positive: " + tokensPerMinute);
+        }
+        refill();
+        this.availableTokens = Math.min(tokensPerMinute, availableTokens + tokensPerMinute - this.tokensPerMinute);
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public synchronized long getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    /**
+     * Reserve tokens, blocking until the budget allows it
+     */
+    public Reservation reserve(long tokens) throws IOException {
+        CompletableFuture<Reservation> future = reserveAsync(tokens);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(future);
+            throw new InterruptedIOException("Interrupted while waiting for Bedrock token budget");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed waiting for Bedrock token budget", e.getCause());
+        }
+    }
+
+    /**
+     * Reserve tokens without blocking; the future completes once the budget allows it.
+     * A request larger than the whole budget reserves the whole budget so that it can still run.
+     */
+    public CompletableFuture<Reservation> reserveAsync(long tokens) {
+        Waiter waiter;
+        synchronized (this) {
+            long clamped = Math.max(0, Math.min(tokens, tokensPerMinute));
+            refill();
+            if (waiters.isEmpty() && availableTokens >= clamped) {
+                availableTokens -= clamped;
+                admittedCount++;
+                return CompletableFuture.completedFuture(new Reservation(clamped));
+            }
+
+            waiter = new Waiter(clamped);
+            waiters.add(waiter);
+            queuedCount++;
+            logger.debug("Queued Bedrock request for {} tokens, {} requests waiting for budget", clamped, waiters.size());
+        }
+        drain();
+        return waiter.future;
+    }
+
+    /**
+     * Settle a completed request: return the unused tokens, or take the excess if it used more than reserved
+     *
+     * @param actualTokens The tokens the request actually used, 0 if it failed before using any
+     */
+    public void release(Reservation reservation, long actualTokens) {
+        synchronized (this) {
+            refill();
+            availableTokens = Math.min(tokensPerMinute, availableTokens + reservation.tokens - actualTokens);
+        }
+        drain();
+    }
+
+    private void cancel(CompletableFuture<Reservation> future) {
+        synchronized (this) {
+            if (waiters.removeIf(waiter -> waiter.future == future)) {
+                return;
+            }
+        }
+        // Already admitted, so give the tokens back
+        release(future.join(), 0);
+    }
+
+    /**
+     * Admit waiting requests that now fit the budget, and schedule another pass for the rest.
+     * Futures are completed outside the lock because their continuations send the request.
+     */
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        long delayNanos = -1;
+        synchronized (this) {
+            refill();
+            while (!waiters.isEmpty() && availableTokens >= waiters.peek().tokens) {
+                Waiter waiter = waiters.poll();
+                availableTokens -= waiter.tokens;
+                long waitNanos = System.nanoTime() - waiter.enqueuedNanos;
+                admittedCount++;
+                totalWaitNanos += waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                admitted.add(waiter);
+            }
+
+            if (!waiters.isEmpty() && !drainScheduled) {
+                double missingTokens = waiters.peek().tokens - availableTokens;
+                delayNanos = (long) Math.ceil(missingTokens * NANOS_PER_MINUTE / tokensPerMinute);
+                drainScheduled = true;
+            }
+        }
+
+        if (delayNanos >= 0) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                drain();
+            });
+        }
+
+        for (Waiter waiter : admitted) {
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waiter.enqueuedNanos);
+            if (waitMillis >= 1000) {
+                logger.info("Bedrock request for {} tokens waited {} ms for token budget", waiter.tokens, waitMillis);
+            } else {
+                logger.debug("Bedrock request for {} tokens waited {} ms for token budget", waiter.tokens, waitMillis);
+            }
+            waiter.future.complete(new Reservation(waiter.tokens));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double refilled = (double) (now - lastRefillNanos) * tokensPerMinute / NANOS_PER_MINUTE;
+        availableTokens = Math.min(tokensPerMinute, availableTokens + refilled);
+        lastRefillNanos = now;
+    }
+
+    public synchronized long getAvailableTokens() {
+        refill();
+        return (long) availableTokens;
+    }
+
+    public synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    /**
+     * Number of requests that had to wait for budget
+     */
+    public synchronized long getQueuedCount() {
+        return queuedCount;
+    }
+
+    public synchronized long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos);
+    }
+
+    public synchronized long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("tokensPerMinute=%d, available=%d, admitted=%d, queued=%d, waiting=%d, totalWait=%dms, maxWait=%dms",
+                tokensPerMinute, (long) availableTokens, admittedCount, queuedCount, waiters.size(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+    }
+}
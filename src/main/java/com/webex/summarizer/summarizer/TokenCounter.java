@@ -0,0 +1,33 @@
+package com.webex.summarizer.summarizer;
+
+/**
+ * Counts how many model tokens a piece of text will use.
+ * Used to decide how conversations are split into chunks that fit the model's context.
+ */
+public interface TokenCounter {
+
+    /**
+     * Count the tokens in a piece of text
+     *
+     * @param text The text to count, may be null
+     * @return The number of tokens, 0 for null or empty text
+     */
+    int countTokens(String text);
+
+    /**
+     * Create a token counter by its configuration name
+     *
+     * @param name "bpe" for the local BPE-style estimator or "heuristic" for the characters-per-token rule
+     * @throws IllegalArgumentException If the name is unknown
+     */
+    static TokenCounter forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "bpe":
+                return new BpeTokenCounter();
+            case "heuristic":
+                return new HeuristicTokenCounter();
+            default:
+                throw new IllegalArgumentException("Unknown token counter: " + name);
+        }
+    }
+}
@@ -43,11 +43,28 @@ public class ConfigLoader {
         // WebEx config (only token needed with new simplified auth)
         properties.setProperty("webex.token", "YOUR_WEBEX_TOKEN");
         properties.setProperty("storage.directory", "conversations");
+        properties.setProperty("storage.backend", "snapshot");
+        properties.setProperty("storage.format", "json");
+        properties.setProperty("storage.compression", "none");
+        properties.setProperty("storage.compression.level", "-1");
+        properties.setProperty("webex.sync.workers", "4");
+        properties.setProperty("webex.http.max-requests-per-host", "4");
+        properties.setProperty("webex.http.requests-per-second", "5");
+        properties.setProperty("webex.http.max-requests", "64");
+        properties.setProperty("webex.http.max-idle-connections", "8");
+        properties.setProperty("webex.http.keep-alive-seconds", "300");
+        properties.setProperty("webex.rooms.cache-ttl-minutes", "60");
         
         // AWS Bedrock config
         properties.setProperty("aws.profile", "default");
         properties.setProperty("aws.region", "us-east-1");
         properties.setProperty("aws.bedrock.model", "anthropic.claude-v2");
+        properties.setProperty("aws.bedrock.concurrency", "64");
+        properties.setProperty("aws.bedrock.engine", "sync");
+        properties.setProperty("aws.bedrock.max-tokens", "4096");
+        properties.setProperty("aws.bedrock.tokens-per-minute", "0");
+        properties.setProperty("summarizer.tokenizer", "bpe");
+        properties.setProperty("summarizer.cache.max-mb", "256");
         
         saveProperties();
     }
@@ -69,6 +86,20 @@ public class ConfigLoader {
         return properties.getProperty(key, defaultValue);
     }
     
+    public int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid integer for {}: '{}', using default {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+    
     public void setProperty(String key, String value) {
         properties.setProperty(key, value);
     }
@@ -22,26 +22,59 @@ public class SummaryFormatter {
         }
 
         StringBuilder formattedSummary = new StringBuilder();
+        formattedSummary.append(formatHeader());
+        
+        // Process and print each line of the summary with enhanced formatting
+        LineFormatter lineFormatter = new LineFormatter();
+        for (String line : summary.split("\n")) {
+            formattedSummary.append(lineFormatter.formatLine(line));
+        }
+        
+        formattedSummary.append(formatFooter());
+        return formattedSummary.toString();
+    }
+    
+    /**
+     * Build the summary header box including the current timestamp
+     */
+    static String formatHeader() {
+        StringBuilder header = new StringBuilder();
         
         // Add current timestamp to the header
         String currentTime = java.time.LocalDateTime.now()
                 .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         
         // Display the summary with improved formatting and timestamp
-        formattedSummary.append("╔══════════════════════════════════════════════════════════════════════════════╗\n");
-        formattedSummary.append("║                       CONVERSATION SUMMARY                                 ║\n");
-        formattedSummary.append("╠══════════════════════════════════════════════════════════════════════════════╣\n");
-        formattedSummary.append("║  Generated: ").append(currentTime).append("                                     ║\n");
-        formattedSummary.append("╚══════════════════════════════════════════════════════════════════════════════╝\n");
-        
-        // Process and print each line of the summary with enhanced formatting
-        String[] summaryLines = summary.split("\n");
-        boolean inActionItems = false;
-        boolean inDecisions = false;
+        header.append("╔══════════════════════════════════════════════════════════════════════════════╗\n");
+        header.append("║                       CONVERSATION SUMMARY                                 ║\n");
+        header.append("╠══════════════════════════════════════════════════════════════════════════════╣\n");
+        header.append("║  Generated: ").append(currentTime).append("                                     ║\n");
+        header.append("╚══════════════════════════════════════════════════════════════════════════════╝\n");
+        return header.toString();
+    }
+    
+    /**
+     * Build the footer with the legend for markers
+     */
+    static String formatFooter() {
+        return "\n" + "═".repeat(76) + "\n" +
+               " Legend:  • Regular Point   ➤ Action Item   ✓ Decision\n" +
+               "═".repeat(76);
+    }
+    
+    /**
+     * Formats summary lines one at a time, remembering which section the previous lines were in.
+     * This allows a summary to be formatted while it is still being generated.
+     */
+    static class LineFormatter {
+        private boolean inActionItems = false;
+        private boolean inDecisions = false;
         
-        for (String line : summaryLines) {
+        String formatLine(String line) {
+            StringBuilder formatted = new StringBuilder();
+            
             if (line.trim().isEmpty()) {
-                formattedSummary.append("\n"); // preserve empty lines
+                formatted.append("\n"); // preserve empty lines
             } else if (line.trim().startsWith("**") && line.trim().endsWith("**")) {
                 // Track which section we're in for special formatting
                 String headerContent = line.trim().replaceAll("\\*\\*", "");
@@ -52,15 +85,15 @@ public class SummaryFormatter {
                 
                 // Create a more visually distinctive section header
                 String decoration = getHeaderDecoration(headerContent);
-                formattedSummary.append("\n");
-                formattedSummary.append(decoration).append("\n");
-                formattedSummary.append("┏━━━━━━").append("━".repeat(headerContent.length())).append("━━━━━┓\n");
-                formattedSummary.append("┃  ").append(headerContent.toUpperCase()).append("  ┃\n");
-                formattedSummary.append("┗━━━━━━").append("━".repeat(headerContent.length())).append("━━━━━┛\n");
-                formattedSummary.append(decoration).append("\n");
+                formatted.append("\n");
+                formatted.append(decoration).append("\n");
+                formatted.append("┏━━━━━━").append("━".repeat(headerContent.length())).append("━━━━━┓\n");
+                formatted.append("┃  ").append(headerContent.toUpperCase()).append("  ┃\n");
+                formatted.append("┗━━━━━━").append("━".repeat(headerContent.length())).append("━━━━━┛\n");
+                formatted.append(decoration).append("\n");
             } else if (line.trim().startsWith("---")) {
                 // Separator lines - convert to a nicer format with different styles
-                formattedSummary.append("  ∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙\n");
+                formatted.append("  ∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙∙\n");
             } else if (line.trim().matches("^\\d+\\..*")) {
                 // Numbered items with enhanced formatting based on section
                 String number = line.trim().split("\\.", 2)[0];
@@ -68,13 +101,13 @@ public class SummaryFormatter {
                 
                 if (inActionItems) {
                     // Action items get a distinctive marker and formatting
-                    formattedSummary.append("  ➤ ").append(number).append(". ").append(content).append("\n");
+                    formatted.append("  ➤ ").append(number).append(". ").append(content).append("\n");
                 } else if (inDecisions) {
                     // Decisions get a different marker
-                    formattedSummary.append("  ✓ ").append(number).append(". ").append(content).append("\n");
+                    formatted.append("  ✓ ").append(number).append(". ").append(content).append("\n");
                 } else {
                     // Regular numbered items
-                    formattedSummary.append("  • ").append(number).append(". ").append(content).append("\n");
+                    formatted.append("  • ").append(number).append(". ").append(content).append("\n");
                 }
             } else {
                 // Regular text with context-aware indentation
@@ -82,20 +115,15 @@ public class SummaryFormatter {
                     line.trim().toLowerCase().contains("owner:") ||
                     line.trim().toLowerCase().contains("due:"))) {
                     // Highlight ownership and deadlines in action items
-                    formattedSummary.append("      ↳ ").append(line.trim()).append("\n");
+                    formatted.append("      ↳ ").append(line.trim()).append("\n");
                 } else {
                     // Standard indentation for regular text
-                    formattedSummary.append("    ").append(line).append("\n");
+                    formatted.append("    ").append(line).append("\n");
                 }
             }
+            
+            return formatted.toString();
         }
-        
-        // Add footer with legend for markers
-        formattedSummary.append("\n").append("═".repeat(76)).append("\n");
-        formattedSummary.append(" Legend:  • Regular Point   ➤ Action Item   ✓ Decision\n");
-        formattedSummary.append("═".repeat(76));
-        
-        return formattedSummary.toString();
     }
     
     /**
@@ -131,4 +159,51 @@ public class SummaryFormatter {
         String formatted = formatSummary(summary);
         System.out.println(formatted);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Prints a summary with the same formatting as {@link #printFormattedSummary(String)}
+     * while its text is still arriving. Each line is formatted as soon as it is complete.
+     */
+    public static class StreamingPrinter {
+        private final LineFormatter lineFormatter = new LineFormatter();
+        private final StringBuilder pendingLine = new StringBuilder();
+        private boolean started = false;
+        
+        public synchronized void accept(String text) {
+            if (!started) {
+                // Move off any progress line before the header
+                System.out.print("\n\n" + formatHeader());
+                started = true;
+            }
+            
+            pendingLine.append(text);
+            int newline;
+            while ((newline = pendingLine.indexOf("\n")) >= 0) {
+                System.out.print(lineFormatter.formatLine(pendingLine.substring(0, newline)));
+                pendingLine.delete(0, newline + 1);
+            }
+            System.out.flush();
+        }
+        
+        /**
+         * Print the last incomplete line and the footer
+         */
+        public synchronized void finish() {
+            if (!started) {
+                return;
+            }
+            if (pendingLine.length() > 0) {
+                System.out.print(lineFormatter.formatLine(pendingLine.toString()));
+                pendingLine.setLength(0);
+            }
+            System.out.println(formatFooter());
+        }
+        
+        /**
+         * Whether any text has been printed
+         */
+        public synchronized boolean hasOutput() {
+            return started;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.webex.summarizer.api;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostConcurrencyInterceptorTest {
+
+    private static OkHttpClient client(HostConcurrencyInterceptor limiter, okhttp3.Interceptor server) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(limiter)
+                .addInterceptor(server)
+                .build();
+    }
+
+    private static Response ok(Request request) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create("{}", MediaType.get("application/json")))
+                .build();
+    }
+
+    @Test
+    void limitsConcurrentRequestsPerHost() throws Exception {
+        HostConcurrencyInterceptor limiter = new HostConcurrencyInterceptor(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        OkHttpClient client = client(limiter, chain -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return ok(chain.request());
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    Request request = new Request.Builder().url("https://webexapis.com/v1/messages").build();
+                    try (Response response = client.newCall(request).execute()) {
+                        response.body().string();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxRunning.get() <= 2, "At most 2 requests should run at once, saw " + maxRunning.get());
+        assertEquals(0, limiter.getActiveRequests("webexapis.com"));
+    }
+
+    @Test
+    void holdsSlotUntilBodyIsClosed() throws Exception {
+        HostConcurrencyInterceptor limiter = new HostConcurrencyInterceptor(1);
+        OkHttpClient client = client(limiter, chain -> ok(chain.request()));
+        Request request = new Request.Builder().url("https://webexapis.com/v1/rooms").build();
+
+        Response first = client.newCall(request).execute();
+        assertEquals(1, limiter.getActiveRequests("webexapis.com"));
+
+        // A second request has to wait until the first response has been consumed
+        CountDownLatch secondDone = new CountDownLatch(1);
+        Thread second = new Thread(() -> {
+            try (Response response = client.newCall(request).execute()) {
+                secondDone.countDown();
+            } catch (IOException ignored) {
+            }
+        });
+        second.start();
+        assertFalse(secondDone.await(100, TimeUnit.MILLISECONDS));
+
+        first.close();
+        assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+        second.join();
+        assertEquals(0, limiter.getActiveRequests("webexapis.com"));
+    }
+
+    @Test
+    void releasesSlotWhenRequestFails() {
+        HostConcurrencyInterceptor limiter = new HostConcurrencyInterceptor(1);
+        OkHttpClient client = client(limiter, chain -> {
+            throw new IOException("connection reset");
+        });
+        Request request = new Request.Builder().url("https://webexapis.com/v1/rooms").build();
+
+        assertThrows(IOException.class, () -> client.newCall(request).execute());
+        assertEquals(0, limiter.getActiveRequests("webexapis.com"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.webex.summarizer.api;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.webex.summarizer.model.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing a full 1000-message page through a string and a {@code JsonNode} tree with
+ * {@link MessagePageParser}. Run with the GC profiler to see the allocation per page:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.webex.summarizer.api.MessagePageParserBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessagePageParserBenchmark {
+
+    private static final int MESSAGES_PER_PAGE = 1000;
+
+    private ObjectMapper objectMapper;
+    private MessagePageParser pageParser;
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        pageParser = new MessagePageParser(objectMapper);
+        page = createPage(MESSAGES_PER_PAGE);
+    }
+
+    /**
+     * The previous approach: buffer the body as a string, build a tree, then bind each item
+     */
+    @Benchmark
+    public List<Message> stringAndTree() throws IOException {
+        String responseBody = new String(page, StandardCharsets.UTF_8);
+        JsonNode rootNode = objectMapper.readTree(responseBody);
+        List<Message> messages = new ArrayList<>();
+        for (JsonNode itemNode : rootNode.path("items")) {
+            messages.add(objectMapper.treeToValue(itemNode, Message.class));
+        }
+        return messages;
+    }
+
+    @Benchmark
+    public List<Message> streaming() throws IOException {
+        return pageParser.parse(new ByteArrayInputStream(page));
+    }
+
+    private static byte[] createPage(int messageCount) {
+        StringBuilder sb = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < messageCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String text = "Message " + i + " about the release plan, the failing build and who picks up the review.";
+            sb.append("{\"id\":\"Y2lzY29zcGFyazovL3VzL01FU1NBR0UvbWVzc2FnZS0").append(i).append("\",")
+                    .append("\"roomId\":\"Y2lzY29zcGFyazovL3VzL1JPT00vcm9vbS0x\",")
+                    .append("\"roomType\":\"group\",")
+                    .append("\"text\":\"").append(text).append("\",")
+                    .append("\"markdown\":\"**").append(text).append("**\",")
+                    .append("\"html\":\"<p><strong>").append(text).append("</strong></p>\",")
+                    .append("\"personId\":\"Y2lzY29zcGFyazovL3VzL1BFT1BMRS9wZXJzb24t").append(i % 20).append("\",")
+                    .append("\"personEmail\":\"person").append(i % 20).append("@example.com\",")
+                    .append("\"mentionedPeople\":[\"Y2lzY29zcGFyazovL3VzL1BFT1BMRS9wZXJzb24tMQ\"],")
+                    .append("\"created\":\"2024-03-01T10:").append(String.format("%02d", i % 60)).append(":00.000Z\",")
+                    .append("\"updated\":\"2024-03-01T10:").append(String.format("%02d", i % 60)).append(":30.000Z\"}");
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessagePageParserBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.webex.summarizer.api;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.webex.summarizer.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessagePageParserTest {
+
+    private MessagePageParser parser;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        parser = new MessagePageParser(objectMapper);
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void leavesStreamOpen() throws IOException {
+        boolean[] closed = {false};
+        InputStream in = new FilterInputStream(json("{\"items\": []}")) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        parser.parse(in);
+
+        assertFalse(closed[0], "The caller closes the response body");
+    }
+
+    @Test
+    void parsesItemsInResponseOrder() throws IOException {
+        String page = "{\"notice\": {\"nested\": [1, 2, {\"items\": []}]},"
+                + " \"items\": ["
+                + "  {\"id\": \"m2\", \"roomId\": \"r1\", \"personEmail\": \"bob@example.com\", \"text\": \"second\","
+                + "   \"created\": \"2024-03-01T10:05:00.000Z\", \"mentionedPeople\": [\"p1\"],"
+                + "   \"attachments\": [{\"contentType\": \"image/png\", \"name\": \"shot.png\", \"url\": \"https://x\"}]},"
+                + "  null,"
+                + "  {\"id\": \"m1\", \"roomId\": \"r1\", \"text\": \"first\", \"created\": \"2024-03-01T10:00:00.000Z\"}"
+                + " ],"
+                + " \"trailing\": \"ignored\"}";
+
+        List<Message> messages = parser.parse(json(page));
+
+        assertEquals(2, messages.size());
+        Message newest = messages.get(0);
+        assertEquals("m2", newest.getId());
+        assertEquals("bob@example.com", newest.getPersonEmail());
+        assertEquals("second", newest.getText());
+        assertEquals(2024, newest.getCreated().getYear());
+        assertEquals("shot.png", newest.getAttachments().get(0).getName());
+        assertEquals("m1", messages.get(1).getId());
+        assertNull(messages.get(1).getAttachments());
+    }
+
+    @Test
+    void returnsEmptyListWithoutItems() throws IOException {
+        assertTrue(parser.parse(json("{}")).isEmpty());
+        assertTrue(parser.parse(json("{\"items\": []}")).isEmpty());
+    }
+
+    @Test
+    void rejectsMalformedPages() {
+        assertThrows(IOException.class, () -> parser.parse(json("[]")));
+        assertThrows(IOException.class, () -> parser.parse(json("{\"items\": [{\"id\": \"m1\"}")));
+    }
+}
@@ -0,0 +1,42 @@
+package com.webex.summarizer.api;
+
+import com.webex.summarizer.util.ConfigLoader;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebExClientFactoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void buildsClientFromConfig() {
+        ConfigLoader configLoader = new ConfigLoader(tempDir.resolve("config.properties").toString());
+        configLoader.setProperty("webex.http.max-requests", "32");
+        configLoader.setProperty("webex.http.max-requests-per-host", "6");
+
+        OkHttpClient httpClient = new WebExClientFactory(configLoader).getHttpClient();
+
+        assertEquals(32, httpClient.dispatcher().getMaxRequests());
+        assertEquals(6, httpClient.dispatcher().getMaxRequestsPerHost());
+        assertTrue(httpClient.protocols().contains(Protocol.HTTP_2));
+        assertTrue(httpClient.interceptors().stream().anyMatch(i -> i instanceof HostConcurrencyInterceptor));
+    }
+
+    @Test
+    void defaultFactoryIsShared() {
+        WebExClientFactory factory = WebExClientFactory.getDefault();
+
+        assertSame(factory, WebExClientFactory.getDefault());
+        assertSame(factory.getHttpClient(), WebExClientFactory.getDefault().getHttpClient());
+        assertSame(factory.getObjectMapper(), WebExClientFactory.getDefault().getObjectMapper());
+    }
+}
@@ -0,0 +1,192 @@
+package com.webex.summarizer.api;
+
+import com.webex.summarizer.auth.WebExAuthenticator;
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WebExMessageServiceTest {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final ZonedDateTime START = ZonedDateTime.parse("2024-03-01T00:00:00Z");
+
+    /**
+     * Serves a room history of {@code total} messages, newest first, the way the messages API pages it
+     */
+    private static class FakeMessagesApi {
+        final int total;
+        final List<String> beforeMessageIds = Collections.synchronizedList(new ArrayList<>());
+        final List<String> beforeTimes = Collections.synchronizedList(new ArrayList<>());
+        int failOnRequest = -1;
+
+        FakeMessagesApi(int total) {
+            this.total = total;
+        }
+
+        Response serve(Request request) throws IOException {
+            if (request.url().encodedPath().startsWith("/v1/rooms/")) {
+                return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK")
+                        .body(ResponseBody.create("{\"id\":\"room\",\"title\":\"Room\"}", MediaType.get("application/json")))
+                        .build();
+            }
+
+            String before = request.url().queryParameter("beforeMessage");
+            String beforeTime = request.url().queryParameter("before");
+            beforeMessageIds.add(before);
+            beforeTimes.add(beforeTime);
+            if (beforeMessageIds.size() - 1 == failOnRequest) {
+                return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1)
+                        .code(404).message("Not Found").body(ResponseBody.create("", null)).build();
+            }
+
+            // Message i is the i-th oldest; the newest page starts at total - 1
+            int newest = total - 1;
+            if (before != null) {
+                newest = Integer.parseInt(before.substring(1)) - 1;
+            } else if (beforeTime != null) {
+                long minutes = Duration.between(START, ZonedDateTime.parse(beforeTime)).toMinutes();
+                newest = (int) Math.min(total - 1, minutes - 1);
+            }
+            StringBuilder sb = new StringBuilder("{\"items\":[");
+            for (int i = newest; i >= 0 && i > newest - PAGE_SIZE; i--) {
+                if (i != newest) {
+                    sb.append(',');
+                }
+                sb.append("{\"id\":\"m").append(i).append("\",\"text\":\"message ").append(i)
+                        .append("\",\"created\":\"").append(START.plusMinutes(i)).append("\"}");
+            }
+            sb.append("]}");
+            return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK")
+                    .body(ResponseBody.create(sb.toString(), MediaType.get("application/json"))).build();
+        }
+    }
+
+    private static WebExMessageService service(FakeMessagesApi api) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> api.serve(chain.request()))
+                .build();
+        WebExAuthenticator authenticator = new WebExAuthenticator("token");
+        WebExRateLimiter.forToken("token").setRequestsPerSecond(0);
+        WebExClientFactory clients = new WebExClientFactory(httpClient);
+        return clients.createMessageService(authenticator, clients.createRoomService(authenticator));
+    }
+
+    @Test
+    void downloadsAllPagesNewestFirst() throws IOException {
+        FakeMessagesApi api = new FakeMessagesApi(2500);
+
+        List<Message> messages = service(api).downloadMessagesSince("room", null, null);
+
+        assertEquals(2500, messages.size());
+        assertEquals("m2499", messages.get(0).getId());
+        assertEquals("m0", messages.get(2499).getId());
+        assertEquals(3, api.beforeMessageIds.size());
+        assertNull(api.beforeMessageIds.get(0));
+        assertEquals("m1500", api.beforeMessageIds.get(1));
+        assertEquals("m500", api.beforeMessageIds.get(2));
+    }
+
+    @Test
+    void stopsFetchingAtWatermark() throws IOException {
+        FakeMessagesApi api = new FakeMessagesApi(2500);
+
+        List<Message> messages = service(api).downloadMessagesSince("room", "m2400", START.plusMinutes(2400));
+
+        assertEquals(99, messages.size());
+        assertEquals("m2401", messages.get(98).getId());
+        // The watermark is on the first page, so no further page is requested
+        assertEquals(1, api.beforeMessageIds.size());
+    }
+
+    @Test
+    void downloadsOnlyRequestedRange() throws IOException {
+        FakeMessagesApi api = new FakeMessagesApi(100_000);
+
+        Conversation conversation = service(api).downloadConversation("room", START.plusMinutes(5000), START.plusMinutes(5200));
+
+        List<Message> messages = conversation.getMessages();
+        assertEquals(200, messages.size());
+        assertEquals("m5199", messages.get(0).getId());
+        assertEquals("m5000", messages.get(199).getId());
+        assertEquals(START.plusMinutes(5000), conversation.getDateFrom());
+        // The first page starts at the end of the range and already reaches its start
+        assertEquals(1, api.beforeMessageIds.size());
+        assertEquals("2024-03-04T14:40:00Z", api.beforeTimes.get(0));
+    }
+
+    /**
+     * Checkpoint kept in memory, like the file-based one kept between runs
+     */
+    private static class MemoryCheckpoint implements DownloadCheckpoint {
+        final List<Message> messages = new ArrayList<>();
+        String nextBeforeMessageId;
+
+        @Override
+        public boolean isResumable() {
+            return !messages.isEmpty();
+        }
+
+        @Override
+        public List<Message> getCompletedMessages() {
+            return new ArrayList<>(messages);
+        }
+
+        @Override
+        public String getNextBeforeMessageId() {
+            return nextBeforeMessageId;
+        }
+
+        @Override
+        public void pageCompleted(List<Message> page, String nextBeforeMessageId) {
+            messages.addAll(page);
+            this.nextBeforeMessageId = nextBeforeMessageId;
+        }
+    }
+
+    @Test
+    void resumesInterruptedDownloadFromCheckpoint() throws IOException {
+        FakeMessagesApi api = new FakeMessagesApi(3500);
+        api.failOnRequest = 2;
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+
+        assertThrows(IOException.class, () -> service(api).downloadConversation("room", checkpoint));
+        assertEquals(2000, checkpoint.messages.size());
+        assertEquals("m1500", checkpoint.nextBeforeMessageId);
+
+        FakeMessagesApi resumed = new FakeMessagesApi(3600);
+        Conversation conversation = service(resumed).downloadConversation("room", checkpoint);
+
+        assertEquals(3600, conversation.getMessages().size());
+        assertEquals("m3599", conversation.getMessages().get(0).getId());
+        assertEquals("m0", conversation.getMessages().get(3599).getId());
+        // One request for the messages posted meanwhile, then the two pages that were missing
+        assertEquals(Arrays.asList(null, "m1500", "m500"), resumed.beforeMessageIds);
+    }
+
+    @Test
+    void propagatesFailedPage() {
+        FakeMessagesApi api = new FakeMessagesApi(5000);
+        api.failOnRequest = 2;
+
+        assertThrows(IOException.class, () -> service(api).downloadMessagesSince("room", null, null));
+        assertEquals(3, api.beforeMessageIds.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.webex.summarizer.api;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebExRequestExecutorTest {
+
+    /**
+     * Answers requests with the queued status codes, then with 200
+     */
+    private static class ScriptedServer {
+        final Deque<Integer> codes;
+        final AtomicInteger requests = new AtomicInteger();
+        String retryAfter;
+
+        ScriptedServer(Integer... codes) {
+            this.codes = new ArrayDeque<>(Arrays.asList(codes));
+        }
+
+        Response serve(Request request) {
+            requests.incrementAndGet();
+            Integer code = codes.poll();
+            Response.Builder builder = new Response.Builder().request(request).protocol(Protocol.HTTP_1_1)
+                    .code(code == null ? 200 : code).message("status")
+                    .body(ResponseBody.create("{}", null));
+            if (code != null && code == 429 && retryAfter != null) {
+                builder.header("Retry-After", retryAfter);
+            }
+            return builder.build();
+        }
+    }
+
+    private static WebExRequestExecutor executor(ScriptedServer server) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> server.serve(chain.request()))
+                .build();
+        return new WebExRequestExecutor(httpClient, 3, 1, 5);
+    }
+
+    private static Request request(String token) {
+        WebExRateLimiter.forToken(token).setRequestsPerSecond(0);
+        return new Request.Builder().url("https://webexapis.com/v1/rooms").header("Authorization", "Bearer " + token).build();
+    }
+
+    @Test
+    void retriesThrottledRequestAfterRetryAfter() throws IOException {
+        ScriptedServer server = new ScriptedServer(429);
+        server.retryAfter = "1";
+        Request request = request("throttled-token");
+
+        long start = System.nanoTime();
+        try (Response response = executor(server).execute(request)) {
+            assertEquals(200, response.code());
+        }
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900), "Should wait for Retry-After");
+        assertEquals(2, server.requests.get());
+        WebExRateLimiter limiter = WebExRateLimiter.forToken("throttled-token");
+        assertEquals(1, limiter.getThrottledCount());
+        assertEquals(1, limiter.getRetryCount());
+    }
+
+    @Test
+    void retriesServerErrors() throws IOException {
+        ScriptedServer server = new ScriptedServer(500, 503);
+
+        try (Response response = executor(server).execute(request("server-error-token"))) {
+            assertEquals(200, response.code());
+        }
+
+        assertEquals(3, server.requests.get());
+        assertEquals(2, WebExRateLimiter.forToken("server-error-token").getRetryCount());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        ScriptedServer server = new ScriptedServer(404);
+
+        IOException error = assertThrows(IOException.class, () -> executor(server).execute(request("not-found-token")));
+
+        assertTrue(error.getMessage().startsWith("Unexpected code"));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        ScriptedServer server = new ScriptedServer(502, 502, 502, 502, 502);
+
+        assertThrows(IOException.class, () -> executor(server).execute(request("bad-gateway-token")));
+
+        assertEquals(4, server.requests.get());
+    }
+
+    @Test
+    void spacesRequestsPerToken() throws IOException {
+        ScriptedServer server = new ScriptedServer();
+        Request request = request("paced-token");
+        WebExRateLimiter.forToken("paced-token").setRequestsPerSecond(20);
+        WebExRequestExecutor executor = executor(server);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            executor.execute(request).close();
+        }
+
+        // The first request goes out at once, the other four wait 50 ms each
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+        assertEquals(5, WebExRateLimiter.forToken("paced-token").getRequestCount());
+    }
+}
@@ -0,0 +1,234 @@
+package com.webex.summarizer.api;
+
+import com.webex.summarizer.auth.WebExAuthenticator;
+import com.webex.summarizer.model.Room;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WebExRoomServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final ZonedDateTime NOW = ZonedDateTime.parse("2024-03-01T12:00:00Z");
+    private static final int PAGE_SIZE = 2;
+
+    /**
+     * Serves rooms r1..rN, where room ri was last active i hours ago, in pages linked by Link headers.
+     * Conditional requests for an unchanged room or room list page are answered with 304. Each list page
+     * has its own ETag, derived from the rooms on it.
+     */
+    private static class FakeRoomsApi {
+        int roomCount;
+        final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+
+        FakeRoomsApi(int roomCount) {
+            this.roomCount = roomCount;
+        }
+
+        Response serve(Request request) {
+            requests.add(request);
+            String path = request.url().encodedPath();
+            if (path.equals("/v1/rooms")) {
+                return listPage(request);
+            }
+
+            String roomId = path.substring("/v1/rooms/".length());
+            String etag = "\"" + roomId + "-v1\"";
+            if (etag.equals(request.header("If-None-Match"))) {
+                return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(304)
+                        .message("Not Modified").body(ResponseBody.create("", null)).build();
+            }
+            return ok(request, "{\"id\":\"" + roomId + "\",\"title\":\"Room " + roomId + "\"}", etag);
+        }
+
+        private Response listPage(Request request) {
+            String cursor = request.url().queryParameter("cursor");
+            int first = cursor != null ? Integer.parseInt(cursor) : 1;
+            int last = Math.min(roomCount, first + PAGE_SIZE - 1);
+
+            StringBuilder sb = new StringBuilder("{\"items\":[");
+            for (int i = first; i <= last; i++) {
+                if (i != first) {
+                    sb.append(',');
+                }
+                sb.append("{\"id\":\"r").append(i).append("\",\"title\":\"Room r").append(i)
+                        .append("\",\"lastActivity\":\"").append(NOW.minusHours(i)).append("\"}");
+            }
+            sb.append("]}");
+
+            String pageEtag = "\"page-" + sb.toString().hashCode() + "\"";
+            if (pageEtag.equals(request.header("If-None-Match"))) {
+                return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(304)
+                        .message("Not Modified").body(ResponseBody.create("", null)).build();
+            }
+            Response response = ok(request, sb.toString(), pageEtag);
+            if (last < roomCount) {
+                HttpUrl next = request.url().newBuilder().setQueryParameter("cursor", String.valueOf(last + 1)).build();
+                response = response.newBuilder().header("Link", "<" + next + ">; rel=\"next\"").build();
+            }
+            return response;
+        }
+
+        private static Response ok(Request request, String body, String etag) {
+            Response.Builder builder = new Response.Builder().request(request).protocol(Protocol.HTTP_1_1)
+                    .code(200).message("OK").body(ResponseBody.create(body, MediaType.get("application/json")));
+            if (etag != null) {
+                builder.header("ETag", etag);
+            }
+            return builder.build();
+        }
+    }
+
+    private WebExRoomService service(FakeRoomsApi api, Duration ttl) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> api.serve(chain.request()))
+                .build();
+        WebExAuthenticator authenticator = new WebExAuthenticator("token");
+        WebExRateLimiter.forToken("token").setRequestsPerSecond(0);
+        WebExClientFactory clients = new WebExClientFactory(httpClient);
+        WebExRoomService roomService = clients.createRoomService(authenticator);
+        roomService.setRoomCache(new RoomCache(tempDir.resolve(RoomCache.fileName("token")), ttl, clients.getObjectMapper()));
+        return roomService;
+    }
+
+    @Test
+    void freshRoomIsServedFromCacheAcrossRuns() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(2);
+
+        assertEquals("Room r1", service(api, Duration.ofHours(1)).getRoom("r1").getTitle());
+        // A new service reads the cache file, as the next command run would
+        assertEquals("Room r1", service(api, Duration.ofHours(1)).getRoom("r1").getTitle());
+
+        assertEquals(1, api.requests.size());
+    }
+
+    @Test
+    void staleRoomIsRevalidatedWithEtag() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(2);
+        WebExRoomService roomService = service(api, Duration.ZERO);
+
+        roomService.getRoom("r1");
+        Room room = roomService.getRoom("r1");
+
+        assertEquals("Room r1", room.getTitle());
+        assertEquals(2, api.requests.size());
+        assertNull(api.requests.get(0).header("If-None-Match"));
+        assertEquals("\"r1-v1\"", api.requests.get(1).header("If-None-Match"));
+    }
+
+    @Test
+    void listingRoomsFillsCache() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(2);
+        WebExRoomService roomService = service(api, Duration.ofHours(1));
+
+        assertEquals(2, roomService.listRooms().size());
+        assertEquals("Room r2", roomService.getRoom("r2").getTitle());
+        assertEquals(2, roomService.listRooms().size());
+
+        assertEquals(1, api.requests.size());
+    }
+
+    @Test
+    void revalidatedListingUsesEtagsWithinTtl() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(5);
+        WebExRoomService roomService = service(api, Duration.ofHours(1));
+
+        roomService.listRooms();
+        List<Room> rooms = roomService.listRooms(true);
+
+        assertEquals(5, rooms.size());
+        // Three pages for the first listing, then a 304 for each of them
+        assertEquals(6, api.requests.size());
+        for (Request request : api.requests.subList(3, 6)) {
+            assertNotNull(request.header("If-None-Match"));
+        }
+    }
+
+    @Test
+    void revalidatedListingNoticesRoomsOnLaterPages() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(5);
+        WebExRoomService roomService = service(api, Duration.ofHours(1));
+        roomService.listRooms();
+
+        // A room joined since then only shows up on the last page
+        api.roomCount = 6;
+        List<Room> rooms = roomService.listRooms(true);
+
+        assertEquals(6, rooms.size());
+        assertEquals("r6", rooms.get(5).getId());
+        // Three conditional requests, of which the last one finds a change, then the full listing again
+        assertEquals(9, api.requests.size());
+        assertEquals(6, service(api, Duration.ofHours(1)).listRooms().size(), "The cache should hold the new list");
+    }
+
+    @Test
+    void cacheFilesAreKeptPerToken() {
+        assertEquals(RoomCache.fileName("token-a"), RoomCache.fileName("token-a"));
+        assertNotEquals(RoomCache.fileName("token-a"), RoomCache.fileName("token-b"));
+        assertFalse(RoomCache.fileName("token-a").contains("token-a"));
+    }
+
+    @Test
+    void listingFollowsNextPageLinks() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(5);
+
+        List<Room> rooms = service(api, Duration.ZERO).listRooms();
+
+        assertEquals(5, rooms.size());
+        assertEquals("r5", rooms.get(4).getId());
+        assertEquals(3, api.requests.size());
+    }
+
+    @Test
+    void nextPageLinksOutsideApiHostAreNotFollowed() {
+        Request request = new Request.Builder().url("https://webexapis.com/v1/rooms").build();
+
+        assertEquals("https://webexapis.com/v1/rooms?cursor=3",
+                String.valueOf(WebExRoomService.nextPageUrl(linkResponse(request, "https://webexapis.com/v1/rooms?cursor=3"))));
+        assertNull(WebExRoomService.nextPageUrl(linkResponse(request, "https://attacker.example/v1/rooms?cursor=3")));
+        assertNull(WebExRoomService.nextPageUrl(linkResponse(request, "http://webexapis.com/v1/rooms?cursor=3")));
+    }
+
+    private static Response linkResponse(Request request, String next) {
+        return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK")
+                .header("Link", "<" + next + ">; rel=\"next\"")
+                .body(ResponseBody.create("{}", MediaType.get("application/json"))).build();
+    }
+
+    @Test
+    void deltaListingStopsAtActivityWatermark() throws IOException {
+        FakeRoomsApi api = new FakeRoomsApi(9);
+
+        List<Room> rooms = service(api, Duration.ZERO).listRoomsActiveSince(NOW.minusHours(3));
+
+        assertEquals(Arrays.asList("r1", "r2", "r3"),
+                rooms.stream().map(Room::getId).collect(Collectors.toList()));
+        assertEquals("lastactivity", api.requests.get(0).url().queryParameter("sortBy"));
+        // The room on the second page that is older than the watermark ends the listing
+        assertEquals(2, api.requests.size());
+    }
+}
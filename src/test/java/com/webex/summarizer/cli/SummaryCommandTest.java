@@ -0,0 +1,54 @@
+package com.webex.summarizer.cli;
+
+import com.webex.summarizer.model.Message;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SummaryCommand.
+ */
+public class SummaryCommandTest {
+
+    private static final ZonedDateTime BASE_TIME = ZonedDateTime.parse("2024-05-01T10:00:00Z");
+
+    @Test
+    public void testMessagesAfterHighWaterMark() {
+        List<Message> messages = List.of(
+                createMessage("msg-3", BASE_TIME.plusMinutes(3)),
+                createMessage("msg-2", BASE_TIME.plusMinutes(2)),
+                createMessage("msg-2b", BASE_TIME.plusMinutes(2)),
+                createMessage("msg-1", BASE_TIME.plusMinutes(1)));
+
+        List<Message> newMessages = SummaryCommand.messagesAfter(messages, BASE_TIME.plusMinutes(2), "msg-2");
+
+        assertEquals(2, newMessages.size());
+        assertEquals("msg-3", newMessages.get(0).getId());
+        assertEquals("msg-2b", newMessages.get(1).getId(), "Messages sharing the mark's timestamp should be included");
+    }
+
+    @Test
+    public void testMessagesWithoutIdOrCreationTime() {
+        List<Message> messages = List.of(
+                createMessage(null, BASE_TIME.plusMinutes(3)),
+                createMessage("msg-no-time", null),
+                createMessage("msg-1", BASE_TIME.plusMinutes(1)));
+
+        List<Message> newMessages = SummaryCommand.messagesAfter(messages, BASE_TIME.plusMinutes(2), "msg-2");
+
+        assertEquals(1, newMessages.size());
+        assertNull(newMessages.get(0).getId());
+        assertEquals(2, SummaryCommand.messagesAfter(messages, BASE_TIME, null).size());
+    }
+
+    private static Message createMessage(String id, ZonedDateTime created) {
+        Message message = new Message();
+        message.setId(id);
+        message.setText("Message " + id);
+        message.setCreated(created);
+        return message;
+    }
+}
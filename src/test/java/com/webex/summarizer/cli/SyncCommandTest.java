@@ -0,0 +1,19 @@
+package com.webex.summarizer.cli;
+
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SyncCommand.
+ */
+public class SyncCommandTest {
+
+    @Test
+    public void testChangedWithoutAllIsRejected() {
+        int exitCode = new CommandLine(new SyncCommand()).execute("--room", "room-1", "--changed", "--token", "token");
+
+        assertEquals(1, exitCode);
+    }
+}
@@ -142,6 +142,26 @@ public class ConversationSearchTest {
         assertTrue(results2.isEmpty());
     }
 
+    @Test
+    public void testSearchMessages_StreamingWithContext() {
+        List<ConversationSearch.Match> matches = conversationSearch.searchMessages(
+                testConversation.getMessages().iterator(), "tomorrow", null, null, 1);
+        
+        assertEquals(3, matches.size());
+        List<Message> context = matches.get(0).getContext();
+        assertEquals("3", matches.get(0).getMessage().getId());
+        assertEquals(3, context.size());
+        assertEquals("2", context.get(0).getId());
+        assertEquals("3", context.get(1).getId());
+        assertEquals("4", context.get(2).getId());
+        
+        // Context matches what is collected from the whole conversation
+        for (ConversationSearch.Match match : matches) {
+            List<Message> expected = conversationSearch.getMessageContext(testConversation, match.getMessage(), 1);
+            assertEquals(expected, match.getContext());
+        }
+    }
+
     @Test
     public void testGetMessageContext() {
         // Find a message
@@ -0,0 +1,394 @@
+package com.webex.summarizer.storage;
+
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+import com.webex.summarizer.model.Room;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConversationStorage.
+ */
+public class ConversationStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final ZonedDateTime BASE_TIME = ZonedDateTime.parse("2024-05-01T10:00:00Z");
+
+    @Test
+    public void testSaveRecordsWatermark() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        storage.saveConversation(createConversation("room-1", 3));
+
+        ConversationCatalog.Entry entry = storage.getSyncState("room-1");
+
+        assertNotNull(entry);
+        assertEquals("msg-2", entry.getLastMessageId());
+        assertTrue(BASE_TIME.plusMinutes(2).isEqual(entry.getLastMessageCreated()));
+        assertNull(storage.getSyncState("room-2"));
+    }
+
+    @Test
+    public void testMergeNewMessagesUpdatesSnapshotInPlace() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        storage.saveConversation(createConversation("room-1", 3));
+
+        // The newest stored message comes back again alongside one new message
+        List<Message> newMessages = List.of(createMessage("msg-3", 3), createMessage("msg-2", 2));
+        ConversationStorage.MergeResult merged = storage.mergeNewMessages("room-1", newMessages);
+
+        assertEquals(1, merged.getAddedMessages());
+        assertEquals(4, merged.getStoredMessages());
+        assertEquals(1, storage.listConversationFiles().length, "Sync should not write a new snapshot");
+
+        Conversation reloaded = storage.loadLatestConversation("room-1");
+        assertEquals(4, reloaded.getMessages().size());
+        assertEquals("msg-3", reloaded.getMessages().get(0).getId());
+        assertEquals("msg-3", storage.getSyncState("room-1").getLastMessageId());
+    }
+
+    @Test
+    public void testCatalogIsRebuiltForExistingStore() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        storage.saveConversation(createConversation("room-1", 2));
+        Files.delete(tempDir.resolve(".catalog.json"));
+
+        ConversationStorage reopened = new ConversationStorage(tempDir.toString());
+
+        assertEquals("msg-1", reopened.getSyncState("room-1").getLastMessageId());
+        File[] files = reopened.listConversationFiles();
+        assertEquals(1, files.length, "The catalog file should not be listed as a conversation");
+    }
+
+    @Test
+    public void testFilteredConversationDoesNotMoveWatermark() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        Conversation filtered = createConversation("room-1", 2);
+        filtered.setDateFrom(BASE_TIME);
+
+        storage.saveConversation(filtered);
+
+        assertNull(storage.getSyncState("room-1"));
+    }
+
+    @Test
+    public void testEmptyRoomIsWatermarkedByDownloadDate() throws Exception {
+        for (ConversationStorage storage : List.of(new ConversationStorage(tempDir.resolve("files").toString()),
+                new ConversationStorage(tempDir.resolve("segments").toString(), true))) {
+            Conversation empty = createConversation("room-1", 0);
+            storage.saveConversation(empty);
+
+            ConversationCatalog.Entry state = storage.getSyncState("room-1");
+            assertNotNull(state, "An empty room should not need a full download again");
+            assertNull(state.getLastMessageCreated());
+            assertTrue(empty.getDownloadDate().isEqual(state.getDownloadDate()));
+
+            ConversationStorage.MergeResult merged = storage.mergeNewMessages("room-1", List.of(createMessage("msg-0", 0)));
+            assertEquals(1, merged.getAddedMessages());
+            assertEquals("msg-0", storage.getSyncState("room-1").getLastMessageId());
+        }
+    }
+
+    @Test
+    public void testSaveSummaryUpdatesRoomFileInPlace() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        Conversation conversation = createConversation("room-1", 3);
+        String path = storage.saveConversation(conversation);
+        storage.saveConversation(createConversation("room-2", 2));
+
+        conversation.setSummarizedUntil(BASE_TIME.plusMinutes(2));
+        storage.saveSummary(conversation, "Summary of room 1", path);
+
+        assertEquals(2, storage.listConversationFiles().length, "The summary should not write a new file");
+        Conversation summarized = storage.findLatestSummarizedConversation("room-1");
+        assertEquals("Summary of room 1", summarized.getSummary());
+        assertEquals(3, summarized.getMessages().size());
+        assertNull(storage.findLatestSummarizedConversation("room-2"));
+        assertEquals("msg-2", storage.getSyncState("room-1").getLastMessageId());
+    }
+
+    @Test
+    public void testSummaryOfPartialLoadKeepsStoredMessages() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        String newest = storage.saveConversation(createConversation("room-1", 5));
+        Path older = tempDir.resolve("older.json");
+        Files.copy(Paths.get(newest), older);
+
+        // A date-filtered load of the newest snapshot
+        Conversation filtered = storage.loadConversation(newest, message -> message.getId().equals("msg-1"));
+        storage.saveSummary(filtered, "Summary of msg-1", newest);
+        assertEquals(5, storage.loadConversation(newest).getMessages().size());
+        assertEquals("Summary of msg-1", storage.loadConversation(newest).getSummary());
+
+        // An older file of the room
+        Conversation old = storage.loadConversation(older.toString());
+        old.setSummarizedUntil(BASE_TIME.plusMinutes(4));
+        storage.saveSummary(old, "Summary of older file", older.toString());
+
+        ConversationCatalog.Entry state = storage.getSyncState("room-1");
+        assertEquals(Paths.get(newest).getFileName().toString(), state.getLatestFile());
+        assertEquals("msg-4", state.getLastMessageId());
+        assertEquals("Summary of msg-1", storage.loadConversation(newest).getSummary());
+        assertEquals("Summary of older file", storage.findLatestSummarizedConversation("room-1").getSummary());
+    }
+
+    @Test
+    public void testOutdatedCatalogIsRebuilt() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        Conversation conversation = createConversation("room-1", 2);
+        conversation.setSummarizedUntil(BASE_TIME.plusMinutes(1));
+        storage.saveSummary(conversation, "Summary", null);
+        // A catalog written before summaries and files were tracked
+        File file = storage.listConversationFiles()[0];
+        Files.writeString(tempDir.resolve(".catalog.json"),
+                "{\"room-1\":{\"latestFile\":\"" + file.getName() + "\",\"lastMessageId\":\"msg-1\"}}");
+
+        ConversationStorage reopened = new ConversationStorage(tempDir.toString());
+
+        assertEquals("Summary", reopened.findLatestSummarizedConversation("room-1").getSummary());
+        assertEquals("msg-1", reopened.getSyncState("room-1").getLastMessageId());
+    }
+
+    @Test
+    public void testSegmentedStorageAppendsToRoomStore() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString(), true);
+        storage.saveConversation(createConversation("room-1", 3));
+
+        ConversationStorage.MergeResult merged = storage.mergeNewMessages("room-1",
+                List.of(createMessage("msg-3", 3), createMessage("msg-2", 2)));
+        assertEquals(1, merged.getAddedMessages());
+        assertEquals(4, merged.getStoredMessages());
+        // A later full download only adds the messages the store does not have
+        storage.saveConversation(createConversation("room-1", 5));
+
+        File[] files = storage.listConversationFiles();
+        assertEquals(1, files.length, "A room store should be listed once");
+        assertTrue(files[0].isDirectory());
+        assertEquals(5, storage.loadConversation(files[0].getAbsolutePath()).getMessages().size());
+        assertEquals("msg-4", storage.getSyncState("room-1").getLastMessageId());
+
+        Conversation latest = storage.loadLatestConversation("room-1");
+        latest.setSummarizedUntil(BASE_TIME.plusMinutes(4));
+        storage.saveSummary(latest, "Summary", files[0].getPath());
+        assertEquals("Summary", new ConversationStorage(tempDir.toString(), true)
+                .findLatestSummarizedConversation("room-1").getSummary());
+    }
+
+    @Test
+    public void testFullDownloadStoresEditedAndMissingMessages() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString(), true);
+        storage.saveConversation(createConversation("room-1", 4));
+        File store = storage.listConversationFiles()[0];
+
+        // Downloading the same history again stores nothing
+        storage.saveConversation(createConversation("room-1", 4));
+        assertEquals(List.of("segment-000000.jsonl"), segmentNames(store));
+
+        // A later full download with two edits and an older message the store was missing
+        Conversation download = createConversation("room-1", 4);
+        download.getMessages().get(1).setText("Edited msg-2");
+        download.getMessages().get(2).setText("Edited msg-1");
+        download.getMessages().add(createMessage("msg-old", -5));
+        storage.saveConversation(download);
+
+        List<Message> messages = storage.loadConversation(store.getPath()).getMessages();
+        assertEquals(5, messages.size());
+        assertEquals("Edited msg-2", messages.get(1).getText());
+        assertEquals("Edited msg-1", messages.get(2).getText());
+        assertEquals("msg-old", messages.get(4).getId());
+        // Three replaced lines of seven are past the compaction threshold
+        assertEquals(List.of("segment-000001.jsonl"), segmentNames(store));
+        assertEquals("msg-3", storage.getSyncState("room-1").getLastMessageId());
+    }
+
+    private static List<String> segmentNames(File store) {
+        List<String> names = new ArrayList<>();
+        for (File file : store.listFiles()) {
+            if (file.getName().startsWith("segment-")) {
+                names.add(file.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testSavingRoomStoreAgainKeepsSummary() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString(), true);
+        Conversation conversation = createConversation("room-1", 3);
+        String path = storage.saveConversation(conversation);
+        conversation.setSummarizedUntil(BASE_TIME.plusMinutes(2));
+        conversation.setSummarizedUntilMessageId("msg-2");
+        storage.saveSummary(conversation, "Summary", path);
+
+        // The next download of the room, as summarize --incremental does before looking up the summary
+        storage.saveConversation(createConversation("room-1", 4));
+
+        Conversation summarized = storage.findLatestSummarizedConversation("room-1");
+        assertNotNull(summarized);
+        assertEquals("Summary", summarized.getSummary());
+        assertEquals("msg-2", summarized.getSummarizedUntilMessageId());
+        assertEquals(4, summarized.getMessages().size());
+    }
+
+    @Test
+    public void testSmileFilesAreDetectedAndMigrated() throws Exception {
+        ConversationStorage jsonStorage = new ConversationStorage(tempDir.toString());
+        jsonStorage.saveConversation(createConversation("room-1", 3));
+        ConversationStorage storage = new ConversationStorage(tempDir.toString(), false, StorageFormat.SMILE);
+        storage.saveConversation(createConversation("room-2", 2));
+
+        assertEquals(1, storage.migrate(StorageFormat.SMILE));
+
+        File[] files = storage.listConversationFiles();
+        assertEquals(2, files.length);
+        for (File file : files) {
+            assertTrue(file.getName().endsWith(".smile"));
+            assertEquals(StorageFormat.SMILE, StorageFormat.detect(file.toPath()));
+        }
+        Conversation migrated = storage.loadLatestConversation("room-1");
+        assertEquals(3, migrated.getMessages().size());
+        assertTrue(BASE_TIME.plusMinutes(2).isEqual(migrated.getMessages().get(0).getCreated()));
+        assertEquals("msg-1", new ConversationStorage(tempDir.toString()).getSyncState("room-2").getLastMessageId());
+    }
+
+    @Test
+    public void testCompressedFilesAreDetectedOnLoad() throws Exception {
+        new ConversationStorage(tempDir.toString(), false, StorageFormat.JSON, Compression.GZIP, 9)
+                .saveConversation(createConversation("room-1", 50));
+        new ConversationStorage(tempDir.toString(), false, StorageFormat.SMILE, Compression.LZ4, -1)
+                .saveConversation(createConversation("room-2", 50));
+
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        File[] files = storage.listConversationFiles();
+        assertEquals(2, files.length);
+        for (File file : files) {
+            Compression expected = file.getName().endsWith(".json.gz") ? Compression.GZIP : Compression.LZ4;
+            assertEquals(expected, Compression.detect(file.toPath()));
+            assertEquals(50, storage.loadConversation(file.getAbsolutePath()).getMessages().size());
+        }
+        assertEquals("msg-49", storage.getSyncState("room-2").getLastMessageId());
+
+        // Migrating to uncompressed JSON brings back the plain files
+        assertEquals(2, storage.migrate(StorageFormat.JSON));
+        for (File file : storage.listConversationFiles()) {
+            assertTrue(file.getName().endsWith(".json"));
+            assertEquals(Compression.NONE, Compression.detect(file.toPath()));
+        }
+    }
+
+    @Test
+    public void testMessagesAreReadOneAtATime() throws Exception {
+        new ConversationStorage(tempDir.toString()).saveConversation(createConversation("room-1", 4));
+        new ConversationStorage(tempDir.toString(), false, StorageFormat.SMILE, Compression.GZIP, -1)
+                .saveConversation(createConversation("room-2", 4));
+
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        for (File file : storage.listConversationFiles()) {
+            Conversation conversation = storage.loadConversation(file.getAbsolutePath());
+            storage.saveSummary(conversation, "Summary", file.getAbsolutePath());
+
+            List<String> ids = new ArrayList<>();
+            try (MessageReader reader = storage.openMessages(file.getAbsolutePath())) {
+                reader.forEachRemaining(message -> ids.add(message.getId()));
+                Conversation metadata = reader.getConversation();
+                assertEquals(conversation.getRoom().getId(), metadata.getRoom().getId());
+                assertEquals("Summary", metadata.getSummary(), "Fields after the messages should be read too");
+                assertNull(metadata.getMessages());
+            }
+            assertEquals(List.of("msg-3", "msg-2", "msg-1", "msg-0"), ids);
+        }
+    }
+
+    @Test
+    public void testLoadConversationKeepsOnlyFilteredMessages() throws Exception {
+        new ConversationStorage(tempDir.toString()).saveConversation(createConversation("room-1", 5));
+        new ConversationStorage(tempDir.toString(), true).saveConversation(createConversation("room-2", 5));
+
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        File[] files = storage.listConversationFiles();
+        assertEquals(2, files.length);
+        for (File file : files) {
+            Conversation filtered = storage.loadConversation(file.getAbsolutePath(),
+                    message -> message.getCreated().isAfter(BASE_TIME.plusMinutes(2)));
+            assertEquals(2, filtered.getMessages().size());
+            assertEquals("msg-4", filtered.getMessages().get(0).getId());
+
+            Conversation metadata = storage.loadConversation(file.getAbsolutePath(), message -> false);
+            assertTrue(metadata.getMessages().isEmpty());
+            assertNotNull(metadata.getRoom());
+        }
+    }
+
+    @Test
+    public void testPartialDownloadSurvivesReopen() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        PartialDownload download = storage.openPartialDownload("Y2lz/room+1=");
+        assertFalse(download.isResumable());
+
+        download.pageCompleted(List.of(createMessage("msg-5", 5), createMessage("msg-4", 4)), "msg-4");
+        download.pageCompleted(List.of(createMessage("msg-3", 3), createMessage("msg-2", 2)), "msg-2");
+
+        PartialDownload reopened = storage.openPartialDownload("Y2lz/room+1=");
+        assertTrue(reopened.isResumable());
+        assertEquals("msg-2", reopened.getNextBeforeMessageId());
+        List<Message> completed = reopened.getCompletedMessages();
+        assertEquals(4, completed.size());
+        assertEquals("msg-5", completed.get(0).getId());
+        assertEquals("msg-2", completed.get(3).getId());
+        assertEquals(0, storage.listConversationFiles().length, "Checkpoints are not conversations");
+
+        reopened.delete();
+        assertFalse(storage.openPartialDownload("Y2lz/room+1=").isResumable());
+        assertFalse(Files.exists(tempDir.resolve(".partial").resolve("WTJsei9yb29tKzE9")));
+    }
+
+    @Test
+    public void testPartialDownloadsOfSimilarRoomIdsAreKeptApart() throws Exception {
+        ConversationStorage storage = new ConversationStorage(tempDir.toString());
+        PartialDownload plus = storage.openPartialDownload("room+1");
+        plus.pageCompleted(List.of(createMessage("msg-2", 2)), "msg-2");
+
+        PartialDownload equals = storage.openPartialDownload("room=1");
+        assertFalse(equals.isResumable(), "Room IDs differing only in unsafe characters must not share a checkpoint");
+        assertTrue(storage.openPartialDownload("room+1").isResumable());
+    }
+
+    private static Conversation createConversation(String roomId, int messageCount) {
+        Room room = new Room();
+        room.setId(roomId);
+        room.setTitle("Room " + roomId);
+
+        // Newest first, as returned by WebEx
+        List<Message> messages = new ArrayList<>();
+        for (int i = messageCount - 1; i >= 0; i--) {
+            messages.add(createMessage("msg-" + i, i));
+        }
+
+        Conversation conversation = new Conversation();
+        conversation.setRoom(room);
+        conversation.setMessages(messages);
+        return conversation;
+    }
+
+    private static Message createMessage(String id, int minutes) {
+        Message message = new Message();
+        message.setId(id);
+        message.setPersonEmail("user@example.com");
+        message.setText("Message " + id);
+        message.setCreated(BASE_TIME.plusMinutes(minutes));
+        return message;
+    }
+}
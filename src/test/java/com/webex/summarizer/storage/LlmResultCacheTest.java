@@ -0,0 +1,60 @@
+package com.webex.summarizer.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LlmResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testPutAndGet() {
+        LlmResultCache cache = new LlmResultCache(tempDir.toString(), 1024 * 1024);
+        String key = LlmResultCache.key("model", "v1", "chunk text");
+
+        assertNull(cache.get(key), "Cache should start empty");
+
+        cache.put(key, "summary");
+        assertEquals("summary", cache.get(key));
+
+        // A new instance over the same directory sees the persisted entry
+        LlmResultCache reopened = new LlmResultCache(tempDir.toString(), 1024 * 1024);
+        assertEquals("summary", reopened.get(key));
+    }
+
+    @Test
+    public void testKeyDependsOnEveryPart() {
+        String key = LlmResultCache.key("model", "v1", "chunk text");
+
+        assertEquals(key, LlmResultCache.key("model", "v1", "chunk text"));
+        assertNotEquals(key, LlmResultCache.key("other-model", "v1", "chunk text"));
+        assertNotEquals(key, LlmResultCache.key("model", "v2", "chunk text"));
+        assertNotEquals(key, LlmResultCache.key("model", "v1", "changed chunk text"));
+        assertNotEquals(LlmResultCache.key("ab", "c"), LlmResultCache.key("a", "bc"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        LlmResultCache cache = new LlmResultCache(tempDir.toString(), 250);
+        String value = "x".repeat(100);
+
+        String first = LlmResultCache.key("first");
+        String second = LlmResultCache.key("second");
+        String third = LlmResultCache.key("third");
+
+        cache.put(first, value);
+        new File(tempDir.toFile(), first + ".txt").setLastModified(System.currentTimeMillis() - 60000);
+        cache.put(second, value);
+        cache.put(third, value);
+
+        assertNull(cache.get(first), "Oldest entry should have been evicted");
+        assertEquals(value, cache.get(second));
+        assertEquals(value, cache.get(third));
+    }
+}
@@ -0,0 +1,247 @@
+package com.webex.summarizer.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.webex.summarizer.model.Conversation;
+import com.webex.summarizer.model.Message;
+import com.webex.summarizer.model.Room;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SegmentedRoomStore.
+ */
+public class SegmentedRoomStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final ZonedDateTime BASE_TIME = ZonedDateTime.parse("2024-05-01T10:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    public void testAppendedMessagesLoadNewestFirst() throws Exception {
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 3));
+        store.append(createMessages(3, 5));
+
+        Conversation loaded = store.load();
+
+        assertEquals("room-1", loaded.getRoom().getId());
+        assertEquals(5, loaded.getMessages().size());
+        assertEquals("msg-4", loaded.getMessages().get(0).getId());
+        assertEquals("msg-0", loaded.getMessages().get(4).getId());
+    }
+
+    @Test
+    public void testSegmentsRollAndCompact() throws Exception {
+        // Segments of about one message each, compacted once more than a quarter of the lines are replaced
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper, 10, 25, Compression.NONE, -1);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 3));
+        assertEquals(3, store.getSegmentCount());
+
+        Message edited = createMessage("msg-1", 1);
+        edited.setText("Edited");
+        store.append(List.of(edited));
+        assertEquals(4, store.getSegmentCount(), "One replaced line of four should not compact yet");
+
+        Message editedAgain = createMessage("msg-0", 0);
+        editedAgain.setText("Edited again");
+        store.append(List.of(editedAgain));
+
+        Conversation loaded = store.load();
+        assertEquals(3, store.getSegmentCount(), "Compaction should drop the replaced copies");
+        assertEquals(3, loaded.getMessages().size());
+        assertEquals("Edited", loaded.getMessages().get(1).getText());
+        assertEquals("Edited again", loaded.getMessages().get(2).getText());
+    }
+
+    @Test
+    public void testAppendsWithoutReplacedCopiesAreNotCompacted() throws Exception {
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper, 300, 25, Compression.NONE, -1);
+        store.saveMetadata(createConversation());
+        for (int i = 0; i < 40; i++) {
+            store.append(createMessages(i, i + 1));
+        }
+
+        // Each segment is filled before the next one starts, and none were rewritten by compaction
+        int segments = store.getSegmentCount();
+        assertTrue(segments <= 20, "Expected segments of several messages, got " + segments);
+        assertTrue(Files.exists(tempDir.resolve("segment-000000.jsonl")));
+        assertTrue(Files.exists(tempDir.resolve(String.format("segment-%06d.jsonl", segments - 1))));
+        assertEquals(40, store.load().getMessages().size());
+    }
+
+    @Test
+    public void testOnlyMessagesPastTheIndexAreAppended() throws Exception {
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper);
+        store.saveMetadata(createConversation());
+        assertEquals(5, store.appendNew(createMessages(0, 5)).size());
+
+        // A download overlapping the stored history, read by a new instance as the next sync would
+        List<Message> added = new SegmentedRoomStore(tempDir, objectMapper).appendNew(createMessages(3, 7));
+        assertEquals(List.of("msg-6", "msg-5"), added.stream().map(Message::getId).collect(Collectors.toList()));
+
+        // Stores written before they had an index build it from their segments
+        Files.delete(tempDir.resolve(SegmentedRoomStore.INDEX_FILE));
+        SegmentedRoomStore reopened = new SegmentedRoomStore(tempDir, objectMapper);
+        assertEquals(1, reopened.appendNew(createMessages(6, 8)).size());
+        assertEquals(8, reopened.getMessageCount());
+        assertEquals(8, reopened.load().getMessages().size());
+    }
+
+    @Test
+    public void testFullSegmentsAreCompressedWhenTheyRoll() throws Exception {
+        // Segments of about one message each
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper, 10,
+                SegmentedRoomStore.DEFAULT_MAX_REPLACED_PERCENT, Compression.GZIP, -1);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 3));
+        store.append(createMessages(3, 4));
+
+        assertEquals(Compression.GZIP, Compression.detect(tempDir.resolve("segment-000000.jsonl.gz")));
+        assertEquals(Compression.GZIP, Compression.detect(tempDir.resolve("segment-000002.jsonl.gz")));
+        assertFalse(Files.exists(tempDir.resolve("segment-000002.jsonl")));
+        assertTrue(Files.exists(tempDir.resolve("segment-000003.jsonl")), "The newest segment should stay plain");
+        assertEquals(4, store.getSegmentCount());
+        assertEquals(4, store.load().getMessages().size());
+    }
+
+    @Test
+    public void testCompactionKeepsTheNewestSegmentPlain() throws Exception {
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper, 10,
+                SegmentedRoomStore.DEFAULT_MAX_REPLACED_PERCENT, Compression.GZIP, -1);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 3));
+        store.compact();
+
+        assertEquals(Compression.GZIP, Compression.detect(tempDir.resolve("segment-000003.jsonl.gz")));
+        assertEquals(Compression.GZIP, Compression.detect(tempDir.resolve("segment-000004.jsonl.gz")));
+        assertTrue(Files.exists(tempDir.resolve("segment-000005.jsonl")));
+
+        // Appending continues in the plain segment instead of starting a new one
+        SegmentedRoomStore large = new SegmentedRoomStore(tempDir.resolve("large"), objectMapper,
+                SegmentedRoomStore.DEFAULT_SEGMENT_BYTES, SegmentedRoomStore.DEFAULT_MAX_REPLACED_PERCENT, Compression.GZIP, -1);
+        large.saveMetadata(createConversation());
+        large.append(createMessages(0, 3));
+        large.compact();
+        large.append(createMessages(3, 4));
+        assertEquals(1, large.getSegmentCount());
+        List<Message> messages = large.load().getMessages();
+        assertEquals(4, messages.size());
+        assertEquals("msg-3", messages.get(0).getId());
+    }
+
+    @Test
+    public void testInterruptedAppendIsSkipped() throws Exception {
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 2));
+        Files.write(tempDir.resolve("segment-000000.jsonl"), "{\"id\":\"msg-2\",\"te".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        assertEquals(2, store.load().getMessages().size());
+
+        store.append(createMessages(2, 3));
+        assertEquals(3, store.load().getMessages().size());
+    }
+
+    @Test
+    public void testMessagesAreReadNewestFirst() throws Exception {
+        // Segments of about one message each, never compacted
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper, 10, 100, Compression.NONE, -1);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 3));
+        Message edited = createMessage("msg-1", 1);
+        edited.setText("Edited");
+        store.append(List.of(edited));
+
+        List<Message> messages = readAll(store);
+
+        assertEquals(3, messages.size(), "Older copies of a message should be skipped");
+        assertEquals("msg-2", messages.get(0).getId());
+        assertEquals("Edited", messages.get(1).getText(), "An edited message should keep its place in time");
+        assertEquals("msg-0", messages.get(2).getId());
+
+        // A filtered load drops a message whose newest copy no longer passes the filter
+        Conversation filtered = store.load(message -> !"Edited".equals(message.getText()));
+        assertEquals(2, filtered.getMessages().size());
+        assertEquals("msg-2", filtered.getMessages().get(0).getId());
+    }
+
+    @Test
+    public void testReadingMatchesLoadAcrossEditedSegments() throws Exception {
+        SegmentedRoomStore store = new SegmentedRoomStore(tempDir, objectMapper, 10, 100, Compression.NONE, -1);
+        store.saveMetadata(createConversation());
+        store.append(createMessages(0, 4));
+        // A segment holding only an edit of an old message, followed by newer messages
+        Message edited = createMessage("msg-0", 0);
+        edited.setText("Edited");
+        store.append(List.of(edited));
+        store.append(createMessages(4, 6));
+        Message editedAgain = createMessage("msg-4", 4);
+        editedAgain.setText("Edited again");
+        store.append(List.of(editedAgain));
+
+        List<String> expected = store.load().getMessages().stream().map(Message::getId).collect(Collectors.toList());
+        assertEquals(List.of("msg-5", "msg-4", "msg-3", "msg-2", "msg-1", "msg-0"), expected);
+        assertEquals(expected, readAll(store).stream().map(Message::getId).collect(Collectors.toList()));
+
+        // Stores written before the index recorded segments are read the same way
+        Files.delete(tempDir.resolve(SegmentedRoomStore.INDEX_FILE));
+        List<Message> rebuilt = readAll(new SegmentedRoomStore(tempDir, objectMapper, 10, 100, Compression.NONE, -1));
+        assertEquals(expected, rebuilt.stream().map(Message::getId).collect(Collectors.toList()));
+        assertEquals("Edited again", rebuilt.get(1).getText());
+    }
+
+    private static List<Message> readAll(SegmentedRoomStore store) throws Exception {
+        List<Message> messages = new ArrayList<>();
+        try (MessageReader reader = store.openMessages()) {
+            reader.forEachRemaining(messages::add);
+            assertEquals("room-1", reader.getConversation().getRoom().getId());
+        }
+        return messages;
+    }
+
+    private static Conversation createConversation() {
+        Room room = new Room();
+        room.setId("room-1");
+        room.setTitle("Room 1");
+        Conversation conversation = new Conversation();
+        conversation.setRoom(room);
+        return conversation;
+    }
+
+    /**
+     * Messages {@code from} (inclusive) to {@code to} (exclusive), newest first
+     */
+    private static List<Message> createMessages(int from, int to) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = to - 1; i >= from; i--) {
+            messages.add(createMessage("msg-" + i, i));
+        }
+        return messages;
+    }
+
+    private static Message createMessage(String id, int minutes) {
+        Message message = new Message();
+        message.setId(id);
+        message.setText("Message " + id);
+        message.setCreated(BASE_TIME.plusMinutes(minutes));
+        return message;
+    }
+}
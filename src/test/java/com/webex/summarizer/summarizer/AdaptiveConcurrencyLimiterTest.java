@@ -0,0 +1,154 @@
+package com.webex.summarizer.summarizer;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+import software.amazon.awssdk.services.bedrockruntime.model.ValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AdaptiveConcurrencyLimiter.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static ThrottlingException throttled() {
+        return ThrottlingException.builder().message("Too many requests").statusCode(429).build();
+    }
+
+    @Test
+    public void testRetriesThrottledCallsAndLowersLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16, 3, 1, 5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = limiter.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw throttled();
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, limiter.getThrottledCount());
+        assertEquals(2, limiter.getRetryCount());
+        assertEquals(0, limiter.getRejectedCount());
+        // Both throttles arrive within one window, so the limit is only halved once
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 16, 2, 1, 5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ThrottlingException.class, () -> limiter.execute(() -> {
+            attempts.incrementAndGet();
+            throw throttled();
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testDoesNotRetryClientErrors() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 16, 3, 1, 5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ValidationException.class, () -> limiter.execute(() -> {
+            attempts.incrementAndGet();
+            throw ValidationException.builder().message("Prompt too long").statusCode(400).build();
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, limiter.getThrottledCount());
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitGrowsWhileRunningAtLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 16, 0, 1, 5);
+
+        // With a limit of one every call runs at the limit, and latency stays flat
+        for (int i = 0; i < 10; i++) {
+            limiter.execute(() -> "ok");
+        }
+
+        assertTrue(limiter.getLimit() > 1, "Limit should grow, was " + limiter.getLimit());
+    }
+
+    @Test
+    public void testBlockingCallsStayWithinLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, 0, 1, 5);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(executor.submit(() -> limiter.execute(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    return "ok";
+                })));
+            }
+            for (Future<String> future : futures) {
+                assertEquals("ok", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxInFlight.get() <= 2, "At most 2 calls should run at once, saw " + maxInFlight.get());
+    }
+
+    @Test
+    public void testAsyncCallsQueueForSlotsAndRetry() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 2, 1, 5);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        AtomicInteger secondAttempts = new AtomicInteger();
+
+        CompletableFuture<String> first = limiter.executeAsync(() -> blocker);
+        CompletableFuture<String> second = limiter.executeAsync(() -> {
+            secondStarted.countDown();
+            if (secondAttempts.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(throttled());
+            }
+            return CompletableFuture.completedFuture("second");
+        });
+
+        // The second call waits for the only slot without blocking a thread
+        assertFalse(secondStarted.await(50, TimeUnit.MILLISECONDS));
+        blocker.complete("first");
+
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, secondAttempts.get());
+        assertEquals(0, limiter.getInFlight());
+
+        CompletableFuture<String> failing = limiter.executeAsync(() ->
+                CompletableFuture.failedFuture(new CompletionException(throttled())));
+        Exception e = assertThrows(Exception.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ThrottlingException);
+    }
+}
@@ -70,4 +70,43 @@ public class BedrockClientTest {
         assertTrue(details.contains(testModelId), 
                   "Model details should contain the specified model ID");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseStreamChunk() throws Exception {
+        java.lang.reflect.Method method = BedrockClient.class.getDeclaredMethod("parseStreamChunk", String.class);
+        method.setAccessible(true);
+        
+        // Messages API: only content deltas carry text
+        BedrockClient modernClient = new BedrockClient("default", "us-east-1", "anthropic.claude-3-haiku-20240307-v1:0");
+        assertEquals("Hello", method.invoke(modernClient,
+                "{\"type\":\"content_block_delta\",\"index\":0,\"delta\":{\"type\":\"text_delta\",\"text\":\"Hello\"}}"));
+        assertEquals("", method.invoke(modernClient,
+                "{\"type\":\"message_start\",\"message\":{\"role\":\"assistant\"}}"));
+        
+        // Legacy Claude streams completion fragments
+        BedrockClient legacyClient = new BedrockClient("default", "us-east-1", "anthropic.claude-v2");
+        assertEquals(" world", method.invoke(legacyClient, "{\"completion\":\" world\",\"stop_reason\":null}"));
+    }
+
+    @Test
+    public void testLegacyRequestsStayWithinModelOutputLimits() throws Exception {
+        java.lang.reflect.Method method = BedrockClient.class.getDeclaredMethod("buildLegacyRequestBody", String.class);
+        method.setAccessible(true);
+        com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+        
+        // Llama 2 rejects a max_gen_len above 2048, so the default is capped
+        BedrockClient llama = new BedrockClient("default", "us-east-1", "meta.llama2-70b-chat-v1");
+        assertEquals(2048, mapper.readTree((String) method.invoke(llama, "Hi")).get("max_gen_len").asInt());
+        llama.setMaxOutputTokens(1000);
+        assertEquals(1000, mapper.readTree((String) method.invoke(llama, "Hi")).get("max_gen_len").asInt());
+        
+        BedrockClient titan = new BedrockClient("default", "us-east-1", "amazon.titan-text-express-v1");
+        titan.setMaxOutputTokens(8192);
+        assertEquals(4096, mapper.readTree((String) method.invoke(titan, "Hi"))
+                .get("textGenerationConfig").get("maxTokenCount").asInt());
+        
+        BedrockClient claude = new BedrockClient("default", "us-east-1", "anthropic.claude-v2");
+        assertEquals(BedrockClient.DEFAULT_MAX_OUTPUT_TOKENS,
+                mapper.readTree((String) method.invoke(claude, "Hi")).get("max_tokens_to_sample").asInt());
+    }
+}
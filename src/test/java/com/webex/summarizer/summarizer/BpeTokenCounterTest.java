@@ -0,0 +1,72 @@
+package com.webex.summarizer.summarizer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BpeTokenCounter.
+ */
+public class BpeTokenCounterTest {
+
+    private final BpeTokenCounter counter = new BpeTokenCounter();
+
+    @Test
+    public void testEmptyText() {
+        assertEquals(0, counter.countTokens(null));
+        assertEquals(0, counter.countTokens(""));
+    }
+
+    @Test
+    public void testEnglishProse() {
+        // Short words with their leading space are one token each
+        assertEquals(9, counter.countTokens("The quick brown fox jumps over the lazy dog"));
+        assertEquals(2, counter.countTokens("Hello."));
+    }
+
+    @Test
+    public void testNumbersMergeInGroupsOfThree() {
+        assertEquals(1, counter.countTokens("404"));
+        assertEquals(2, counter.countTokens("2024"));
+        assertEquals(2, counter.countTokens("123456"));
+        assertEquals(3, counter.countTokens("1234567"));
+    }
+
+    @Test
+    public void testCodeCostsMoreThanHeuristic() {
+        String code = "if (userId != null && !userIds.contains(userId)) { userIds.add(userId); }";
+        int bpeTokens = counter.countTokens(code);
+        int heuristicTokens = new HeuristicTokenCounter().countTokens(code);
+        assertTrue(bpeTokens > heuristicTokens,
+                "Code should cost more tokens than the 4-chars heuristic (" + bpeTokens + " vs " + heuristicTokens + ")");
+    }
+
+    @Test
+    public void testCjkTextCostsAboutOneTokenPerCharacter() {
+        String text = "会議の議事録を要約してください";
+        int characters = text.codePointCount(0, text.length());
+        // One token per character plus the safety margin
+        assertEquals(characters + characters / 10, counter.countTokens(text));
+        assertTrue(counter.countTokens(text) > new HeuristicTokenCounter().countTokens(text));
+    }
+
+    @Test
+    public void testLongLetterRunsAreCountedConservatively() {
+        // Rare words and identifiers are split into many vocabulary entries, so long runs cost more
+        assertEquals(1, counter.countTokens("report"));
+        assertEquals(5, counter.countTokens("internationalization"));
+
+        String roomId = "Y2lzY29zcGFyazovL3VzL1JPT00vYmJjZWI1NjAtMmY0Ni0xMWVjLWE0ZjgtZmQ3MjgyNTk2NjY3";
+        assertTrue(counter.countTokens(roomId) >= roomId.length() / 3,
+                "Base64 ids should cost at least a token per three characters, got " + counter.countTokens(roomId));
+        String url = "https://webexapis.com/v1/messages?roomId=" + roomId + "&max=1000";
+        assertTrue(counter.countTokens(url) >= url.length() / 3);
+    }
+
+    @Test
+    public void testForName() {
+        assertTrue(TokenCounter.forName("bpe") instanceof BpeTokenCounter);
+        assertTrue(TokenCounter.forName(" Heuristic ") instanceof HeuristicTokenCounter);
+        assertThrows(IllegalArgumentException.class, () -> TokenCounter.forName("tiktoken"));
+    }
+}
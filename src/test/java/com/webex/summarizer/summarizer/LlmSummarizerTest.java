@@ -3,13 +3,24 @@ package com.webex.summarizer.summarizer;
 import com.webex.summarizer.model.Conversation;
 import com.webex.summarizer.model.Message;
 import com.webex.summarizer.model.Room;
+import com.webex.summarizer.storage.LlmResultCache;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,6 +30,9 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 public class LlmSummarizerTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     public void testProgressReporting() throws Exception {
         // Create test data - a conversation with messages
@@ -116,8 +130,8 @@ public class LlmSummarizerTest {
         conversation.setRoom(room);
         conversation.setMessages(messages);
         
-        // Track calls to BedrockClient.generateText
-        List<String> generatedTexts = new ArrayList<>();
+        // Track calls to BedrockClient.generateText (chunks are processed concurrently)
+        List<String> generatedTexts = Collections.synchronizedList(new ArrayList<>());
         
         // Create a test implementation of BedrockClient that records calls
         class TracingBedrockClient extends BedrockClient {
@@ -176,4 +190,422 @@ public class LlmSummarizerTest {
         // Verify the result
         assertEquals("Chunk summary", result);
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testParallelChunksKeepOrderForFinalSummary() throws Exception {
+        Conversation conversation = createLargeConversation(5);
+        
+        Pattern partPattern = Pattern.compile("following part (\\d+) of (\\d+)");
+        List<String> finalPrompts = Collections.synchronizedList(new ArrayList<>());
+        
+        // Earlier chunks take longer, so chunks complete in reverse order
+        class OutOfOrderBedrockClient extends BedrockClient {
+            public OutOfOrderBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                Matcher matcher = partPattern.matcher(prompt);
+                if (!matcher.find()) {
+                    finalPrompts.add(prompt);
+                    return "Final summary";
+                }
+                int part = Integer.parseInt(matcher.group(1));
+                int total = Integer.parseInt(matcher.group(2));
+                try {
+                    Thread.sleep((total - part) * 50L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "CHUNK-" + part;
+            }
+        }
+        
+        List<Integer> completedCounts = Collections.synchronizedList(new ArrayList<>());
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new OutOfOrderBedrockClient());
+        summarizer.setMaxConcurrency(5);
+        summarizer.setProgressListener((current, total, status) -> {
+            if (status.startsWith("Summarized chunk")) {
+                completedCounts.add(current);
+            }
+        });
+        
+        String result = summarizer.generateSummary(conversation);
+        
+        assertEquals("Final summary", result);
+        assertEquals(1, finalPrompts.size(), "Final summary should be generated exactly once");
+        
+        // Chunk summaries must appear in chunk order regardless of completion order
+        String finalPrompt = finalPrompts.get(0);
+        int previous = -1;
+        for (int part = 1; part <= 5; part++) {
+            int position = finalPrompt.indexOf("CHUNK-" + part);
+            assertTrue(position > previous, "Chunk " + part + " should follow the previous chunk in the final prompt");
+            previous = position;
+        }
+        
+        // Completion progress counts up once per chunk even though chunks finish out of order
+        assertEquals(List.of(1, 2, 3, 4, 5), completedCounts);
+    }
+    
+    @Test
+    public void testChunkedAnswerDropsIrrelevantChunks() throws Exception {
+        Conversation conversation = createLargeConversation(4);
+        
+        Pattern partPattern = Pattern.compile("part (\\d+) of (\\d+) from a WebEx conversation");
+        List<String> finalPrompts = Collections.synchronizedList(new ArrayList<>());
+        
+        // Only the second chunk knows anything about the question
+        class SelectiveBedrockClient extends BedrockClient {
+            public SelectiveBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                Matcher matcher = partPattern.matcher(prompt);
+                if (!matcher.find()) {
+                    finalPrompts.add(prompt);
+                    return "**Answer**: Launch is in June";
+                }
+                if (Integer.parseInt(matcher.group(1)) == 2) {
+                    return "The launch was moved to June.";
+                }
+                return "'No relevant information about this question in this conversation part.'";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new SelectiveBedrockClient());
+        
+        String answer = summarizer.answerQuestion(conversation, "When is the launch?");
+        
+        assertEquals("**Answer**: Launch is in June", answer);
+        assertEquals(1, finalPrompts.size());
+        String finalPrompt = finalPrompts.get(0);
+        assertTrue(finalPrompt.contains("The launch was moved to June."));
+        assertTrue(finalPrompt.contains("--- Information Block 1 ---"));
+        assertFalse(finalPrompt.contains("--- Information Block 2 ---"),
+                   "Irrelevant chunks should not reach the final prompt");
+    }
+    
+    @Test
+    public void testRelevantChunkAnswerDetection() {
+        assertFalse(LlmSummarizer.isRelevantChunkAnswer(null));
+        assertFalse(LlmSummarizer.isRelevantChunkAnswer("   "));
+        assertFalse(LlmSummarizer.isRelevantChunkAnswer("No relevant information about this question in this conversation part."));
+        assertFalse(LlmSummarizer.isRelevantChunkAnswer("**No relevant information** in this part"));
+        assertTrue(LlmSummarizer.isRelevantChunkAnswer("Alice said the launch is in June."));
+    }
+    
+    @Test
+    public void testCachedChunksAreNotResent() throws Exception {
+        Conversation conversation = createLargeConversation(3);
+        
+        List<String> chunkPrompts = Collections.synchronizedList(new ArrayList<>());
+        class CountingBedrockClient extends BedrockClient {
+            public CountingBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                if (prompt.startsWith("Please provide a detailed summary")) {
+                    chunkPrompts.add(prompt);
+                }
+                return "Summary";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new CountingBedrockClient());
+        summarizer.setResultCache(new LlmResultCache(tempDir.toString(), 1024 * 1024));
+        
+        summarizer.generateSummary(conversation);
+        assertEquals(3, chunkPrompts.size(), "First run should summarize every chunk");
+        
+        // A new message at the head of the room only changes the newest chunk
+        Message newest = new Message();
+        newest.setId("msg-new");
+        newest.setPersonEmail("new@example.com");
+        newest.setText("x".repeat(240000));
+        newest.setCreated(ZonedDateTime.now().plusMinutes(1));
+        List<Message> updated = new ArrayList<>(conversation.getMessages());
+        updated.add(0, newest);
+        conversation.setMessages(updated);
+        
+        chunkPrompts.clear();
+        summarizer.generateSummary(conversation);
+        assertEquals(1, chunkPrompts.size(), "Only the new chunk should be sent to Bedrock");
+        assertTrue(chunkPrompts.get(0).contains("new@example.com"));
+    }
+    
+    @Test
+    public void testUpdateSummaryMergesDeltaWithSingleCall() throws Exception {
+        Room room = new Room();
+        room.setId("test-room-id");
+        room.setTitle("Test Room");
+        
+        Message newMessage = new Message();
+        newMessage.setId("msg-new");
+        newMessage.setPersonEmail("alice@example.com");
+        newMessage.setText("We agreed to ship on Friday");
+        newMessage.setCreated(ZonedDateTime.now());
+        
+        Conversation conversation = new Conversation();
+        conversation.setRoom(room);
+        conversation.setMessages(List.of(newMessage));
+        
+        List<String> prompts = Collections.synchronizedList(new ArrayList<>());
+        class RecordingBedrockClient extends BedrockClient {
+            public RecordingBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                prompts.add(prompt);
+                return "Updated summary";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new RecordingBedrockClient());
+        
+        String result = summarizer.updateSummary(conversation, "**Overview**\nOld summary", List.of(newMessage));
+        
+        assertEquals("Updated summary", result);
+        assertEquals(1, prompts.size(), "A small delta should be merged with a single call");
+        assertTrue(prompts.get(0).contains("Old summary"));
+        assertTrue(prompts.get(0).contains("We agreed to ship on Friday"));
+    }
+    
+    @Test
+    public void testOnlyFinalSummaryIsStreamed() throws Exception {
+        Conversation conversation = createLargeConversation(3);
+        
+        class StreamingBedrockClient extends BedrockClient {
+            public StreamingBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                return "Chunk summary";
+            }
+            
+            @Override
+            public String generateTextStreaming(String prompt, java.util.function.Consumer<String> onText) {
+                onText.accept("Final ");
+                onText.accept("summary");
+                return "Final summary";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new StreamingBedrockClient());
+        
+        StringBuilder streamed = new StringBuilder();
+        summarizer.setStreamListener(streamed::append);
+        
+        String result = summarizer.generateSummary(conversation);
+        
+        assertEquals("Final summary", result);
+        assertEquals("Final summary", streamed.toString(), "Chunk summaries should not be streamed");
+    }
+    
+    @Test
+    public void testAsyncEngineLimitsInFlightRequests() throws Exception {
+        Conversation conversation = createLargeConversation(6);
+        
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<String> blockingPrompts = Collections.synchronizedList(new ArrayList<>());
+        
+        class AsyncBedrockClient extends BedrockClient {
+            public AsyncBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public CompletableFuture<String> generateTextAsync(String prompt) {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    return "Chunk summary";
+                });
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                blockingPrompts.add(prompt);
+                return "Final summary";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new AsyncBedrockClient());
+        summarizer.setEngine(BedrockClient.Engine.ASYNC);
+        summarizer.setMaxConcurrency(2);
+        
+        String result = summarizer.generateSummary(conversation);
+        
+        assertEquals("Final summary", result);
+        assertEquals(1, blockingPrompts.size(), "Only the final summary should use the blocking call");
+        assertTrue(maxInFlight.get() <= 2, "At most 2 chunk requests should be in flight, saw " + maxInFlight.get());
+    }
+    
+    @Test
+    public void testDefaultConcurrencyLeavesRoomForTheAdaptiveLimiter() throws Exception {
+        Conversation conversation = createLargeConversation(8);
+        
+        // Chunks only finish once six of them are running, which the old cap of four never allowed
+        CountDownLatch running = new CountDownLatch(6);
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        
+        class ConcurrentBedrockClient extends BedrockClient {
+            public ConcurrentBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                if (!prompt.startsWith("Please provide a detailed summary")) {
+                    return "Final summary";
+                }
+                running.countDown();
+                try {
+                    if (!running.await(10, TimeUnit.SECONDS)) {
+                        timedOut.set(true);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "Chunk summary";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new ConcurrentBedrockClient());
+        
+        assertEquals("Final summary", summarizer.generateSummary(conversation));
+        assertFalse(timedOut.get(), "More chunks than the limiter's initial limit should be submitted at once");
+    }
+    
+    @Test
+    public void testOversizedChunkSummariesAreReducedInLevels() throws Exception {
+        Conversation conversation = createLargeConversation(5);
+        
+        // Each chunk summary is large enough that all five together overflow the final prompt
+        String largeSummary = "y".repeat(54000);
+        AtomicInteger mergeCount = new AtomicInteger();
+        List<String> finalPrompts = Collections.synchronizedList(new ArrayList<>());
+        
+        class LargeSummaryBedrockClient extends BedrockClient {
+            public LargeSummaryBedrockClient() {
+                super("default", "us-east-1", "anthropic.claude-v2");
+            }
+            
+            @Override
+            public String generateText(String prompt) {
+                if (prompt.startsWith("Please provide a detailed summary")) {
+                    return largeSummary;
+                }
+                if (prompt.startsWith("Please merge")) {
+                    return "MERGED-" + mergeCount.incrementAndGet();
+                }
+                finalPrompts.add(prompt);
+                return "Final summary";
+            }
+        }
+        
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        java.lang.reflect.Field clientField = LlmSummarizer.class.getDeclaredField("bedrockClient");
+        clientField.setAccessible(true);
+        clientField.set(summarizer, new LargeSummaryBedrockClient());
+        summarizer.setMaxConcurrency(1);
+        
+        String result = summarizer.generateSummary(conversation);
+        
+        assertEquals("Final summary", result);
+        assertEquals(2, mergeCount.get(), "Five oversized summaries should be merged in two batches");
+        assertEquals(1, finalPrompts.size());
+        String finalPrompt = finalPrompts.get(0);
+        assertFalse(finalPrompt.contains(largeSummary), "Unmerged chunk summaries should not reach the final prompt");
+        assertTrue(finalPrompt.indexOf("MERGED-1") < finalPrompt.indexOf("MERGED-2"), "Merged summaries keep part order");
+    }
+    
+    @Test
+    public void testChangingTokenCounterRecountsMessages() {
+        Conversation conversation = createLargeConversation(3);
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        
+        summarizer.setTokenCounter(text -> 1);
+        assertEquals(1, summarizer.calculateChunkCount(conversation.getMessages()));
+        
+        // Counts memoized with the previous counter must not be reused
+        summarizer.setTokenCounter(text -> 40000);
+        assertEquals(3, summarizer.calculateChunkCount(conversation.getMessages()));
+    }
+
+    @Test
+    public void testEditedMessageIsRecountedWhenTextHashesCollide() {
+        Conversation conversation = createLargeConversation(3);
+        LlmSummarizer summarizer = new LlmSummarizer("default", "us-east-1", "anthropic.claude-v2");
+        summarizer.setTokenCounter(text -> text.contains("Message: BB") ? 40000 : 1);
+
+        conversation.getMessages().forEach(message -> message.setText("Aa"));
+        assertEquals(1, summarizer.calculateChunkCount(conversation.getMessages()));
+
+        // "Aa" and "BB" have the same hash code, but the edit still has to be counted again
+        conversation.getMessages().forEach(message -> message.setText("BB"));
+        assertEquals(3, summarizer.calculateChunkCount(conversation.getMessages()));
+    }
+
+    /**
+     * Build a conversation whose messages are each large enough to land in their own chunk
+     */
+    private static Conversation createLargeConversation(int messageCount) {
+        Room room = new Room();
+        room.setId("test-room-id");
+        room.setTitle("Test Room");
+        
+        String largeText = "x".repeat(110000);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            Message message = new Message();
+            message.setId("msg-" + i);
+            message.setPersonEmail("user" + i + "@example.com");
+            message.setText(largeText);
+            message.setCreated(ZonedDateTime.now().minusMinutes(i));
+            messages.add(message);
+        }
+        
+        Conversation conversation = new Conversation();
+        conversation.setRoom(room);
+        conversation.setMessages(messages);
+        return conversation;
+    }
+}
@@ -0,0 +1,69 @@
+package com.webex.summarizer.summarizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TokenBudgetScheduler.
+ */
+public class TokenBudgetSchedulerTest {
+
+    @Test
+    public void testAdmitsImmediatelyWithinBudget() throws Exception {
+        TokenBudgetScheduler scheduler = new TokenBudgetScheduler(10000);
+
+        TokenBudgetScheduler.Reservation first = scheduler.reserve(4000);
+        TokenBudgetScheduler.Reservation second = scheduler.reserve(4000);
+
+        assertEquals(4000, first.getTokens());
+        assertEquals(4000, second.getTokens());
+        assertEquals(0, scheduler.getQueuedCount());
+        assertTrue(scheduler.getAvailableTokens() < 2100);
+    }
+
+    @Test
+    public void testQueuesWorkBeyondBudgetUntilRefilled() throws Exception {
+        // 60000 tokens per minute refills 1000 tokens per second
+        TokenBudgetScheduler scheduler = new TokenBudgetScheduler(60000);
+        scheduler.reserve(60000);
+
+        long start = System.nanoTime();
+        CompletableFuture<TokenBudgetScheduler.Reservation> queued = scheduler.reserveAsync(100);
+        assertFalse(queued.isDone(), "Request should wait while the budget is used up");
+        assertEquals(1, scheduler.getQueueLength());
+
+        queued.get(5, TimeUnit.SECONDS);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMillis >= 80, "Request should wait for about 100 ms of refill, waited " + waitedMillis);
+        assertEquals(1, scheduler.getQueuedCount());
+        assertEquals(0, scheduler.getQueueLength());
+        assertTrue(scheduler.getMaxWaitMillis() >= 80);
+    }
+
+    @Test
+    public void testReleaseRefundsUnusedTokens() throws Exception {
+        TokenBudgetScheduler scheduler = new TokenBudgetScheduler(60000);
+        TokenBudgetScheduler.Reservation reservation = scheduler.reserve(60000);
+
+        CompletableFuture<TokenBudgetScheduler.Reservation> queued = scheduler.reserveAsync(30000);
+        assertFalse(queued.isDone());
+
+        // The first request only used half its reservation, which makes room for the queued one
+        scheduler.release(reservation, 30000);
+        assertTrue(queued.isDone(), "Refunded tokens should admit the queued request");
+    }
+
+    @Test
+    public void testOversizedRequestReservesWholeBudget() throws Exception {
+        TokenBudgetScheduler scheduler = new TokenBudgetScheduler(1000);
+
+        TokenBudgetScheduler.Reservation reservation = scheduler.reserve(5000);
+
+        assertEquals(1000, reservation.getTokens());
+    }
+}